@@ -0,0 +1,134 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.DFAFile;
+import core.DFAMatcher;
+import core.MappedDFAMatcher;
+import core.Matchers;
+import core.RegEx;
+
+/**
+ * The Class DFAFileBenchmark.
+ * A plain timing harness comparing the compilation of a rule set into a
+ * tagged minimum DFA with loading the same DFA from a DFA file, and the
+ * matching speed of the array table with the one of the mapped table.
+ *
+ */
+public class DFAFileBenchmark {
+
+    /** The numbers of rules. */
+    static final int[] SIZES = { 100, 400, 1000 };
+
+    /** The letters of rules and inputs. */
+    static final String LETTERS = "abcdefgh";
+
+    /** The number of inputs. */
+    static final int INPUTS = 100000;
+
+    /** The number of patterns matched, so that runs are not optimized out. */
+    static long sink;
+
+    /** The logger of the pipeline, kept so that its level sticks. */
+    static final Logger LOGGER = Logger.getLogger(RegEx.class.getName());
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws IOException if the DFA file can not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+
+        LOGGER.setLevel(Level.OFF);
+
+        Random random = new Random(19);
+        Path path = Files.createTempFile("rules", ".dfa");
+
+        System.out.println("rules\tstates\tfile_kb\tcompile_ms\tload_ms"
+                + "\tarray_ns\tmapped_ns\tagree");
+
+        try {
+
+            for (int size : SIZES) {
+
+                ArrayList<String> regexes = new ArrayList<String>();
+                for (int i = 0; i < size; i++)
+                    regexes.add(DFAFileBenchmark.word(random) + "("
+                            + DFAFileBenchmark.word(random) + ")*"
+                            + DFAFileBenchmark.word(random));
+
+                String[] inputs = new String[INPUTS];
+                for (int i = 0; i < INPUTS; i++) {
+
+                    String regex = regexes.get(random.nextInt(size));
+                    inputs[i] = (i % 2 == 0) ? regex.replace("(", "")
+                            .replace(")*", "") : DFAFileBenchmark.word(random)
+                            + DFAFileBenchmark.word(random);
+                }
+
+                long t0 = System.nanoTime();
+                DFAMatcher compiled = Matchers.compileAll(regexes);
+                double compile = (System.nanoTime() - t0) / 1e6;
+
+                DFAFile.write(compiled, path);
+
+                t0 = System.nanoTime();
+                MappedDFAMatcher mapped = DFAFile.load(path);
+                double load = (System.nanoTime() - t0) / 1e6;
+
+                boolean agree = true;
+                for (String input : inputs)
+                    agree &= compiled.matchingPatterns(input)
+                            .equals(mapped.matchingPatterns(input));
+
+                long bestArray = Long.MAX_VALUE;
+                long bestMapped = Long.MAX_VALUE;
+                for (int run = 0; run < 5; run++) {
+
+                    t0 = System.nanoTime();
+                    for (String input : inputs)
+                        sink += compiled.matchingPatterns(input).size();
+
+                    long t1 = System.nanoTime();
+                    for (String input : inputs)
+                        sink += mapped.matchingPatterns(input).size();
+
+                    long t2 = System.nanoTime();
+                    bestArray = Math.min(bestArray, t1 - t0);
+                    bestMapped = Math.min(bestMapped, t2 - t1);
+                }
+
+                System.out.printf("%d\t%d\t%d\t%.1f\t%.2f\t%.1f\t%.1f\t%b%n",
+                        size, compiled.stateCount(), Files.size(path) / 1024,
+                        compile, load, (double) bestArray / INPUTS,
+                        (double) bestMapped / INPUTS, agree);
+            }
+        }
+        finally {
+
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * Generates a random word.
+     *
+     * @param random the random generator
+     * @return a word of 2 to 5 letters
+     */
+    static String word(Random random) {
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 2 + random.nextInt(4); i > 0; i--)
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+
+        return word.toString();
+    }
+}
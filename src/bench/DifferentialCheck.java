@@ -0,0 +1,1022 @@
+package bench;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import core.AutomatonCache;
+import core.BitParallelMatcher;
+import core.ChannelScanner;
+import core.CompactTransitionMatrix;
+import core.CompiledAutomaton;
+import core.DFA;
+import core.DFAFile;
+import core.DFAMatcher;
+import core.LazyDFAMatcher;
+import core.MappedDFAMatcher;
+import core.Matcher;
+import core.Matchers;
+import core.Minimization;
+import core.NFA;
+import core.RegEx;
+import core.TsvMatrixEmitter;
+
+/**
+ * The Class DifferentialCheck.
+ * A runnable check of the parser, the minimizers, the matchers and the
+ * DFA file format against java.util.regex.Pattern and against each
+ * other, on random regular expressions and inputs.
+ *
+ * Every RegEx is generated twice, once in the syntax of this project and
+ * once in the syntax of Pattern. The checks are:
+ * matchers, the DFA, lazy DFA, bit parallel and compiled matchers against
+ * Pattern on matches, lookingAt, find and matchEnd;
+ * minimizers, Moore, Hopcroft and the parallel one giving the same DFA;
+ * file, a DFA written and mapped back matching as the DFA it was built
+ * from, and broken files being rejected;
+ * utf8, the DFA over the bytes of UTF-8 against Pattern on code points
+ * outside of ASCII, in arrays, heap and direct buffers;
+ * patterns, the tags of several RegExes compiled together against every
+ * RegEx on its own;
+ * scanner, the match ends ChannelScanner reports against Pattern, read
+ * a few bytes at a time, mapped and in parallel chunks of a few bytes;
+ * lazy, the lazy DFA matcher against Pattern with so few cached states
+ * that it flushes its cache and falls back to the NFA;
+ * cache, threads looking the same RegExes up at once in an
+ * AutomatonCache, which compiles every RegEx once;
+ * shared, threads matching with the same compiled automata at once;
+ * tsv, the TSV form of the NFAs and minimum DFAs read back.
+ *
+ * Prints the number of cases and mismatches of every check and exits
+ * with status 1 if there is any mismatch.
+ *
+ */
+public class DifferentialCheck {
+
+    /** The number of RegExes per check. */
+    static final int REGEXES = 300;
+
+    /** The number of inputs per RegEx. */
+    static final int INPUTS = 100;
+
+    /** The maximum length of an input, in code points. */
+    static final int LENGTH = 16;
+
+    /** The maximum depth of a generated RegEx. */
+    static final int DEPTH = 4;
+
+    /** The number of threads of the parallel minimizer and scan. */
+    static final int THREADS = 4;
+
+    /** The maximum length of a scanned input, in bytes. */
+    static final int SCANNED = 256;
+
+    /** The sizes of the reads and chunks of the scans. */
+    static final int[] CHUNKS = { 1, 3, 7, 64 };
+
+    /** The capacities of the lazy DFA matchers. */
+    static final int[] CAPACITIES = { 2, 5 };
+
+    /** The number of mismatches reported in full. */
+    static final int REPORTED = 10;
+
+    /** The letters of the ASCII RegExes. */
+    static final int[] LETTERS = { 'a', 'b', 'c', 'd' };
+
+    /** The code points of the ASCII inputs, x being in no RegEx. */
+    static final int[] TEXT = { 'a', 'b', 'c', 'd', 'x' };
+
+    /** The code points of the UTF-8 RegExes and inputs. */
+    static final int[] UNICODE = { 'a', 'z', 0x7F, 0x80, 0xE9, 0x7FF, 0x800,
+            0x4E2D, 0xD7FF, 0xE000, 0xFFFD, 0xFFFF, 0x10000, 0x1F600,
+            0x1F602, 0x10FFFF };
+
+    /** The logger of the pipeline, kept so that its level sticks. */
+    static final Logger LOGGER = Logger.getLogger(RegEx.class.getName());
+
+    /** The number of cases of the current check. */
+    static int cases;
+
+    /** The number of mismatches of the current check. */
+    static int mismatches;
+
+    /** The number of mismatches of all the checks. */
+    static int total;
+
+    /**
+     * Runs the checks.
+     *
+     * @param args the number of RegExes per check and the seed, optional
+     * @throws IOException if a temporary file cannot be written
+     * @throws InterruptedException if a thread is interrupted
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+
+        LOGGER.setLevel(Level.OFF);
+
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : REGEXES;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+
+        String[][] ascii = new String[count][];
+        String[][] unicode = new String[count][];
+        for (int i = 0; i < count; i++) {
+
+            ascii[i] = DifferentialCheck.regex(random, LETTERS, DEPTH);
+            unicode[i] = DifferentialCheck.regex(random, UNICODE, DEPTH - 1);
+        }
+
+        System.out.println("check\tcases\tmismatches");
+
+        DifferentialCheck.matchers(ascii, random);
+        DifferentialCheck.report("matchers");
+
+        DifferentialCheck.minimizers(ascii);
+        DifferentialCheck.report("minimizers");
+
+        DifferentialCheck.file(ascii, unicode, random);
+        DifferentialCheck.report("file");
+
+        DifferentialCheck.utf8(unicode, random);
+        DifferentialCheck.report("utf8");
+
+        DifferentialCheck.patterns(ascii, random);
+        DifferentialCheck.report("patterns");
+
+        DifferentialCheck.scanner(ascii, random);
+        DifferentialCheck.report("scanner");
+
+        DifferentialCheck.lazy(ascii, random);
+        DifferentialCheck.report("lazy");
+
+        DifferentialCheck.cache(ascii, random);
+        DifferentialCheck.report("cache");
+
+        DifferentialCheck.shared(ascii, random);
+        DifferentialCheck.report("shared");
+
+        DifferentialCheck.tsv(ascii);
+        DifferentialCheck.report("tsv");
+
+        if (total > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Checks the matchers against Pattern.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     */
+    static void matchers(String[][] regexes, Random random) {
+
+        for (String[] regex : regexes) {
+
+            Pattern pattern = Pattern.compile(regex[1]);
+
+            NFA nfa = new NFA();
+            nfa.build(regex[0]);
+            NFA lazy = new NFA();
+            lazy.build(regex[0]);
+
+            ArrayList<Matcher> matchers = new ArrayList<Matcher>();
+            matchers.add(nfa.createMinimumDFA().matcher());
+            matchers.add(new LazyDFAMatcher(lazy));
+            matchers.add(Matchers.compile(regex[0]));
+            try {
+
+                matchers.add(new BitParallelMatcher(regex[0]));
+            }
+            catch (IllegalArgumentException e) {
+
+                /** Too many positions, the compiled matcher is lazy then. */
+            }
+
+            for (int k = 0; k < INPUTS; k++) {
+
+                String input = DifferentialCheck.input(random, TEXT);
+                int from = random.nextInt(input.length() + 1);
+
+                java.util.regex.Matcher reference = pattern.matcher(input);
+                boolean matches = reference.matches();
+                int found = reference.find(from) ? reference.start() : -1;
+                reference.region(from, input.length());
+                boolean lookingAt = reference.lookingAt();
+                int end = DifferentialCheck.matchEnd(pattern, input, from);
+
+                for (Matcher matcher : matchers) {
+
+                    DifferentialCheck.check(matcher.matches(input) == matches
+                            && matcher.find(input, from) == found
+                            && matcher.lookingAt(input, from) == lookingAt
+                            && matcher.matchEnd(input, from) == end,
+                            matcher.getClass().getSimpleName(), regex[0],
+                            input);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the minimizers give the same DFA.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     */
+    static void minimizers(String[][] regexes) {
+
+        for (String[] regex : regexes) {
+
+            String expected = null;
+            for (Minimization strategy : Minimization.values()) {
+
+                NFA nfa = new NFA();
+                nfa.build(regex[0]);
+                DFA dfa = new DFA();
+                dfa.build(nfa);
+                dfa.makeMin(strategy, THREADS);
+
+                String result = dfa.getStartState() + " "
+                        + dfa.getFinalStates() + " "
+                        + Arrays.toString(dfa.getCompactMinMatrix().toDense());
+
+                if (expected == null)
+                    expected = result;
+                else
+                    DifferentialCheck.check(result.equals(expected),
+                            strategy.name(), regex[0], "");
+            }
+        }
+    }
+
+    /**
+     * Checks that a DFA written to a file matches as the DFA it was built
+     * from, and that broken files are rejected.
+     *
+     * @param ascii the RegExes run over chars, each in both syntaxes
+     * @param unicode the RegExes run over bytes, each in both syntaxes
+     * @param random the source of the inputs
+     * @throws IOException if the file cannot be written
+     */
+    static void file(String[][] ascii, String[][] unicode, Random random)
+            throws IOException {
+
+        Path path = Files.createTempFile("check", ".dfa");
+        try {
+
+            for (String[] regex : ascii) {
+
+                NFA nfa = new NFA();
+                nfa.build(regex[0]);
+                DFAMatcher matcher = new DFAMatcher(nfa.createMinimumDFA());
+                DFAFile.write(matcher, path);
+                MappedDFAMatcher mapped = DFAFile.load(path);
+
+                DifferentialCheck.check(
+                        mapped.stateCount() == matcher.stateCount()
+                        && mapped.classCount() == matcher.classCount(),
+                        "counts", regex[0], "");
+
+                for (int k = 0; k < INPUTS; k++) {
+
+                    String input = DifferentialCheck.input(random, TEXT);
+                    int from = random.nextInt(input.length() + 1);
+
+                    DifferentialCheck.check(
+                            mapped.matches(input) == matcher.matches(input)
+                            && mapped.find(input, from)
+                                    == matcher.find(input, from)
+                            && mapped.matchEnd(input, from)
+                                    == matcher.matchEnd(input, from),
+                            "chars", regex[0], input);
+                }
+            }
+
+            for (String[] regex : unicode) {
+
+                DFAMatcher matcher = Matchers.compileUtf8(regex[0]);
+                DFAFile.write(matcher, path);
+                MappedDFAMatcher mapped = DFAFile.load(path);
+
+                for (int k = 0; k < INPUTS; k++) {
+
+                    byte[] input = DifferentialCheck.input(random, UNICODE)
+                            .getBytes(StandardCharsets.UTF_8);
+                    int n = input.length;
+
+                    DifferentialCheck.check(
+                            mapped.matches(input, 0, n)
+                                    == matcher.matches(input, 0, n)
+                            && mapped.find(input, 0, n)
+                                    == matcher.find(input, 0, n)
+                            && mapped.matchEnd(input, 0, n)
+                                    == matcher.matchEnd(input, 0, n),
+                            "bytes", regex[0], Arrays.toString(input));
+                }
+            }
+
+            byte[] bytes = Files.readAllBytes(path);
+            DifferentialCheck.rejected(path,
+                    Arrays.copyOf(bytes, bytes.length - 4), "truncated");
+            DifferentialCheck.rejected(path, new byte[] { 1, 2, 3 }, "magic");
+
+            /** The first interval, after the 8 ints of the header, is 0. */
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(4 * 8, 5);
+            DifferentialCheck.rejected(path, bytes, "intervals");
+        }
+        finally {
+
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Checks that a broken DFA file is rejected.
+     *
+     * @param path the file
+     * @param bytes the broken content
+     * @param what the kind of damage
+     * @throws IOException if the file cannot be written
+     */
+    static void rejected(Path path, byte[] bytes, String what)
+            throws IOException {
+
+        Files.write(path, bytes);
+        boolean rejected = false;
+        try {
+
+            DFAFile.load(path);
+        }
+        catch (IOException e) {
+
+            rejected = true;
+        }
+        DifferentialCheck.check(rejected, "rejected", what, "");
+    }
+
+    /**
+     * Checks the DFA over the bytes of UTF-8 against Pattern.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     */
+    static void utf8(String[][] regexes, Random random) {
+
+        for (String[] regex : regexes) {
+
+            Pattern pattern = Pattern.compile(regex[1]);
+            DFAMatcher matcher = Matchers.compileUtf8(regex[0]);
+
+            for (int k = 0; k < INPUTS; k++) {
+
+                String input = DifferentialCheck.input(random, UNICODE);
+                byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+                int n = bytes.length;
+
+                java.util.regex.Matcher reference = pattern.matcher(input);
+                boolean matches = reference.matches();
+                int found = reference.find(0) ? input.substring(0,
+                        reference.start()).getBytes(StandardCharsets.UTF_8)
+                        .length : -1;
+
+                /** A direct buffer whose content starts at position 3. */
+                ByteBuffer direct = ByteBuffer.allocateDirect(n + 3);
+                direct.position(3);
+                direct.put(bytes);
+                direct.position(3);
+
+                DifferentialCheck.check(matcher.matches(bytes, 0, n) == matches
+                        && matcher.find(bytes, 0, n) == found
+                        && matcher.matches(ByteBuffer.wrap(bytes)) == matches
+                        && matcher.find(ByteBuffer.wrap(bytes)) == found
+                        && matcher.matches(direct) == matches
+                        && matcher.find(direct) == ((found < 0) ? -1
+                                : found + 3),
+                        "utf8", regex[0], input);
+            }
+        }
+    }
+
+    /**
+     * Checks the tags of RegExes compiled together against every RegEx
+     * on its own, three RegExes at a time.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     */
+    static void patterns(String[][] regexes, Random random) {
+
+        for (int i = 0; i + 3 <= regexes.length; i += 3) {
+
+            ArrayList<String> group = new ArrayList<String>();
+            Pattern[] patterns = new Pattern[3];
+            for (int k = 0; k < 3; k++) {
+
+                group.add(regexes[i + k][0]);
+                patterns[k] = Pattern.compile(regexes[i + k][1]);
+            }
+            DFAMatcher matcher = Matchers.compileAll(group);
+
+            for (int k = 0; k < INPUTS; k++) {
+
+                String input = DifferentialCheck.input(random, TEXT);
+
+                List<Integer> expected = new ArrayList<Integer>();
+                for (int id = 0; id < 3; id++)
+                    if (patterns[id].matcher(input).matches())
+                        expected.add(id);
+
+                DifferentialCheck.check(
+                        matcher.matchingPatterns(input).equals(expected),
+                        "patterns", group.toString(), input);
+            }
+        }
+    }
+
+    /**
+     * Checks the match ends of ChannelScanner against Pattern. The input
+     * is read a few bytes at a time, mapped, and scanned in parallel
+     * chunks of a few bytes.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     * @throws IOException if the file cannot be written
+     */
+    static void scanner(String[][] regexes, Random random)
+            throws IOException {
+
+        Path path = Files.createTempFile("check", ".txt");
+        try {
+
+            for (String[] regex : regexes) {
+
+                /** A match ends at i if a match of the input up to i does. */
+                Pattern pattern = Pattern.compile("(?s:.)*(?:" + regex[1]
+                        + ")");
+                NFA nfa = new NFA();
+                nfa.build(regex[0]);
+                ChannelScanner scanner = new ChannelScanner(nfa.compile());
+
+                StringBuilder text = new StringBuilder();
+                for (int i = random.nextInt(SCANNED + 1); i > 0; i--)
+                    text.appendCodePoint(TEXT[random.nextInt(TEXT.length)]);
+                String input = text.toString();
+                Files.write(path, input.getBytes(StandardCharsets.US_ASCII));
+
+                ArrayList<Long> expected = new ArrayList<Long>();
+                java.util.regex.Matcher reference = pattern.matcher(input);
+                for (int end = 0; end <= input.length(); end++) {
+
+                    reference.region(0, end);
+                    if (reference.matches())
+                        expected.add((long) end);
+                }
+
+                for (int chunk : CHUNKS) {
+
+                    ArrayList<Long> ends = new ArrayList<Long>();
+                    scanner.scan(new Trickle(input, chunk), ends::add);
+                    DifferentialCheck.check(ends.equals(expected),
+                            "scan " + chunk, regex[0], input);
+
+                    for (int threads : new int[] { 1, THREADS }) {
+
+                        ends.clear();
+                        try (FileChannel channel = FileChannel.open(path)) {
+
+                            scanner.scanParallel(channel, ends::add, threads,
+                                    chunk);
+                        }
+                        DifferentialCheck.check(ends.equals(expected),
+                                "scanParallel " + chunk + " " + threads,
+                                regex[0], input);
+                    }
+                }
+
+                ArrayList<Long> ends = new ArrayList<Long>();
+                try (FileChannel channel = FileChannel.open(path)) {
+
+                    scanner.scanMapped(channel, ends::add);
+                }
+                DifferentialCheck.check(ends.equals(expected), "scanMapped",
+                        regex[0], input);
+            }
+        }
+        finally {
+
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Checks lazy DFA matchers with tiny caches against Pattern, and that
+     * the caches were flushed and the NFA was fallen back to.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     */
+    static void lazy(String[][] regexes, Random random) {
+
+        for (int capacity : CAPACITIES) {
+
+            long flushes = 0;
+            long fallbacks = 0;
+
+            for (String[] regex : regexes) {
+
+                Pattern pattern = Pattern.compile(regex[1]);
+                NFA nfa = new NFA();
+                nfa.build(regex[0]);
+                LazyDFAMatcher matcher = nfa.createLazyMatcher(capacity);
+
+                for (int k = 0; k < INPUTS; k++) {
+
+                    String input = DifferentialCheck.input(random, TEXT);
+                    int from = random.nextInt(input.length() + 1);
+
+                    java.util.regex.Matcher reference = pattern.matcher(input);
+                    boolean matches = reference.matches();
+                    int found = reference.find(from) ? reference.start() : -1;
+
+                    DifferentialCheck.check(matcher.matches(input) == matches
+                            && matcher.find(input, from) == found
+                            && matcher.matchEnd(input, from)
+                                    == DifferentialCheck.matchEnd(pattern,
+                                            input, from),
+                            "capacity " + capacity, regex[0], input);
+                }
+                flushes += matcher.getFlushes();
+                fallbacks += matcher.getFallbacks();
+            }
+
+            DifferentialCheck.check(flushes > 0, "flushes",
+                    "capacity " + capacity, "");
+            DifferentialCheck.check(fallbacks > 0, "fallbacks",
+                    "capacity " + capacity, "");
+        }
+    }
+
+    /**
+     * Checks that threads looking the same RegExes up at once in a cache
+     * all get the same automaton, compiled once, which matches as
+     * Pattern.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     * @throws InterruptedException if a thread is interrupted
+     */
+    static void cache(String[][] regexes, Random random)
+            throws InterruptedException {
+
+        AutomatonCache cache = new AutomatonCache(regexes.length);
+        String[] inputs = DifferentialCheck.inputs(random);
+        int[][] expected = DifferentialCheck.found(regexes, inputs);
+
+        /** Every thread looks the RegExes up from another one on. */
+        List<CompiledAutomaton[]> results = DifferentialCheck.inThreads(
+                thread -> {
+
+                    CompiledAutomaton[] automata =
+                            new CompiledAutomaton[regexes.length];
+                    for (int n = 0; n < regexes.length; n++) {
+
+                        int i = (n + thread * regexes.length / THREADS)
+                                % regexes.length;
+                        automata[i] = cache.get(regexes[i][0]);
+                    }
+                    return automata;
+                });
+
+        for (CompiledAutomaton[] automata : results) {
+
+            for (int i = 0; i < regexes.length; i++) {
+
+                DifferentialCheck.check(automata[i] == results.get(0)[i]
+                        && Arrays.equals(DifferentialCheck.found(
+                                automata[i].matcher(), inputs),
+                                expected[i]),
+                        "cache", regexes[i][0], "");
+            }
+        }
+
+        DifferentialCheck.check(cache.getMisses() <= regexes.length
+                && cache.getHits() + cache.getMisses()
+                        == (long) THREADS * regexes.length,
+                "counts", cache.getHits() + " hits, " + cache.getMisses()
+                        + " misses", "");
+    }
+
+    /**
+     * Checks threads matching with the same compiled automata at once
+     * against Pattern.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param random the source of the inputs
+     * @throws InterruptedException if a thread is interrupted
+     */
+    static void shared(String[][] regexes, Random random)
+            throws InterruptedException {
+
+        String[] inputs = DifferentialCheck.inputs(random);
+        int[][] expected = DifferentialCheck.found(regexes, inputs);
+
+        CompiledAutomaton[] automata = new CompiledAutomaton[regexes.length];
+        for (int i = 0; i < regexes.length; i++) {
+
+            NFA nfa = new NFA();
+            nfa.build(regexes[i][0]);
+            automata[i] = nfa.compile();
+        }
+
+        List<int[][]> results = DifferentialCheck.inThreads(thread -> {
+
+            int[][] found = new int[regexes.length][];
+            for (int i = 0; i < regexes.length; i++)
+                found[i] = DifferentialCheck.found(automata[i].matcher(),
+                        inputs);
+            return found;
+        });
+
+        for (int[][] found : results)
+            for (int i = 0; i < regexes.length; i++)
+                DifferentialCheck.check(Arrays.equals(found[i], expected[i]),
+                        "shared", regexes[i][0], "");
+    }
+
+    /**
+     * Checks that the TSV form of the NFA and of the minimum DFA of every
+     * RegEx reads back as the matrix it was written from.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @throws IOException if the output fails
+     */
+    static void tsv(String[][] regexes) throws IOException {
+
+        for (String[] regex : regexes) {
+
+            NFA nfa = new NFA();
+            nfa.build(regex[0]);
+            CompactTransitionMatrix nfaMatrix = nfa.getCompactMatrix();
+            StringWriter out = new StringWriter();
+            nfaMatrix.toMatrix().print(nfa.getStartState(),
+                    nfa.getFinalStates(), new TsvMatrixEmitter(out));
+
+            DifferentialCheck.check(out.toString().equals(
+                    DifferentialCheck.tsv(nfaMatrix, nfa.getStartState(),
+                            nfa.getFinalStates())),
+                    "nfa", regex[0], "");
+
+            CompiledAutomaton dfa = nfa.compile();
+            out = new StringWriter();
+            dfa.print(new TsvMatrixEmitter(out));
+
+            DifferentialCheck.check(out.toString().equals(
+                    DifferentialCheck.tsv(dfa.getMatrix(),
+                            dfa.getStartState(), dfa.getFinalStates())),
+                    "dfa", regex[0], "");
+        }
+    }
+
+    /**
+     * Writes a matrix as TSV the plain way, see TsvMatrixEmitter.
+     *
+     * @param matrix the matrix
+     * @param start the start state
+     * @param finals the final states
+     * @return the TSV lines
+     */
+    static String tsv(CompactTransitionMatrix matrix, int start,
+            List<Integer> finals) {
+
+        StringBuilder tsv = new StringBuilder("start\t" + start + "\nfinal");
+        for (int state : finals)
+            tsv.append('\t').append(state);
+
+        tsv.append("\nstate");
+        for (int column = 0; column < matrix.symbolCount(); column++)
+            tsv.append('\t').append(matrix.letter(column));
+        tsv.append('\n');
+
+        for (int row = 0; row < matrix.stateCount(); row++) {
+
+            tsv.append(matrix.stateId(row));
+            for (int column = 0; column < matrix.symbolCount(); column++) {
+
+                tsv.append('\t');
+                for (int e = matrix.start(row, column);
+                        e < matrix.end(row, column); e++) {
+
+                    if (e > matrix.start(row, column))
+                        tsv.append(',');
+                    tsv.append(matrix.stateId(matrix.target(e)));
+                }
+            }
+            tsv.append('\n');
+        }
+        return tsv.toString();
+    }
+
+    /**
+     * Generates the inputs of the threaded checks.
+     *
+     * @param random the source of the inputs
+     * @return the inputs
+     */
+    static String[] inputs(Random random) {
+
+        String[] inputs = new String[INPUTS];
+        for (int k = 0; k < INPUTS; k++)
+            inputs[k] = DifferentialCheck.input(random, TEXT);
+
+        return inputs;
+    }
+
+    /**
+     * Finds the first match of every RegEx in every input with Pattern.
+     *
+     * @param regexes the RegExes, each in both syntaxes
+     * @param inputs the inputs
+     * @return the start of the first match, -1 if there is none, by RegEx
+     *         and input
+     */
+    static int[][] found(String[][] regexes, String[] inputs) {
+
+        int[][] found = new int[regexes.length][inputs.length];
+        for (int i = 0; i < regexes.length; i++) {
+
+            Pattern pattern = Pattern.compile(regexes[i][1]);
+            for (int k = 0; k < inputs.length; k++) {
+
+                java.util.regex.Matcher reference = pattern.matcher(inputs[k]);
+                found[i][k] = reference.find() ? reference.start() : -1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the first match of a matcher in every input.
+     *
+     * @param matcher the matcher
+     * @param inputs the inputs
+     * @return the start of the first match, -1 if there is none, by input
+     */
+    static int[] found(Matcher matcher, String[] inputs) {
+
+        int[] found = new int[inputs.length];
+        for (int k = 0; k < inputs.length; k++)
+            found[k] = matcher.find(inputs[k], 0);
+
+        return found;
+    }
+
+    /**
+     * Runs a task in THREADS threads at once and waits for all of them.
+     *
+     * @param <T> the type of the results
+     * @param task the task, given the number of its thread
+     * @return the results of the threads, in order
+     * @throws InterruptedException if the thread is interrupted
+     */
+    static <T> List<T> inThreads(IntFunction<T> task)
+            throws InterruptedException {
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        ArrayList<Future<T>> futures = new ArrayList<Future<T>>();
+        ArrayList<T> results = new ArrayList<T>();
+
+        try {
+
+            for (int thread = 0; thread < THREADS; thread++) {
+
+                int number = thread;
+                Callable<T> call = () -> {
+
+                    start.await();
+                    return task.apply(number);
+                };
+                futures.add(pool.submit(call));
+            }
+            start.countDown();
+
+            for (Future<T> future : futures)
+                results.add(future.get());
+        }
+        catch (ExecutionException e) {
+
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+
+            pool.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Gets the end of the longest match starting at an index, the hard
+     * way.
+     *
+     * @param pattern the pattern
+     * @param input the input
+     * @param start the start of the match
+     * @return the end of the match, -1 if there is none
+     */
+    static int matchEnd(Pattern pattern, String input, int start) {
+
+        java.util.regex.Matcher matcher = pattern.matcher(input);
+        for (int end = input.length(); end >= start; end--) {
+
+            matcher.region(start, end);
+            if (matcher.matches())
+                return end;
+        }
+        return -1;
+    }
+
+    /**
+     * Generates a RegEx in both syntaxes.
+     *
+     * @param random the source of the RegEx
+     * @param letters the code points the operands are made of
+     * @param depth the maximum depth of the operators
+     * @return the RegEx of this project, then the one of Pattern
+     */
+    static String[] regex(Random random, int[] letters, int depth) {
+
+        int kind = (depth <= 0) ? 0 : random.nextInt(4);
+        if (kind == 0)
+            return DifferentialCheck.operand(random, letters);
+
+        String[] left = DifferentialCheck.regex(random, letters, depth - 1);
+        if (kind == 1)
+            return new String[] { "(" + left[0] + ")*",
+                    "(?:" + left[1] + ")*" };
+
+        String[] right = DifferentialCheck.regex(random, letters, depth - 1);
+        if (kind == 2)
+            return new String[] { "(" + left[0] + "|" + right[0] + ")",
+                    "(?:" + left[1] + "|" + right[1] + ")" };
+
+        return new String[] { "(" + left[0] + ")(" + right[0] + ")",
+                "(?:" + left[1] + ")(?:" + right[1] + ")" };
+    }
+
+    /**
+     * Generates an operand in both syntaxes: a letter, a range, a negated
+     * range or the wildcard.
+     *
+     * @param random the source of the operand
+     * @param letters the code points the operand is made of
+     * @return the operand of this project, then the one of Pattern
+     */
+    static String[] operand(Random random, int[] letters) {
+
+        int first = letters[random.nextInt(letters.length)];
+        int last = letters[random.nextInt(letters.length)];
+        String low = new String(Character.toChars(Math.min(first, last)));
+        String high = new String(Character.toChars(Math.max(first, last)));
+
+        switch (random.nextInt(6)) {
+
+        case 0:
+            return new String[] { "[" + low + "-" + high + "]",
+                    "[" + low + "-" + high + "]" };
+
+        case 1:
+            return new String[] { "[^" + low + "-" + high + "]",
+                    "[^" + low + "-" + high + "]" };
+
+        case 2:
+            return new String[] { "(.)", "(?s:.)" };
+
+        default:
+            return new String[] { low, low };
+        }
+    }
+
+    /**
+     * Generates an input.
+     *
+     * @param random the source of the input
+     * @param text the code points the input is made of
+     * @return the input
+     */
+    static String input(Random random, int[] text) {
+
+        StringBuilder input = new StringBuilder();
+        for (int i = random.nextInt(LENGTH + 1); i > 0; i--)
+            input.appendCodePoint(text[random.nextInt(text.length)]);
+
+        return input.toString();
+    }
+
+    /**
+     * Counts a case, and reports it if it is a mismatch.
+     *
+     * @param ok whether the case agrees
+     * @param what what is checked
+     * @param regex the RegEx
+     * @param input the input
+     */
+    static void check(boolean ok, String what, String regex, String input) {
+
+        cases++;
+        if (ok)
+            return;
+
+        if (mismatches++ < REPORTED)
+            System.err.println("mismatch: " + what + " " + regex + " / "
+                    + input);
+    }
+
+    /**
+     * Prints the counts of a check and starts the next one.
+     *
+     * @param check the name of the check
+     */
+    static void report(String check) {
+
+        System.out.println(check + "\t" + cases + "\t" + mismatches);
+        total += mismatches;
+        cases = 0;
+        mismatches = 0;
+    }
+
+    /**
+     * The Class Trickle.
+     * A channel over a String of ASCII which gives at most a few bytes a
+     * read.
+     *
+     */
+    static final class Trickle implements ReadableByteChannel {
+
+        /** The bytes. */
+        private final byte[] bytes;
+
+        /** The most bytes a read gives. */
+        private final int step;
+
+        /** The next byte to read. */
+        private int position;
+
+        /**
+         * Instantiates a new trickle.
+         *
+         * @param input the input, in ASCII
+         * @param step the most bytes a read gives
+         */
+        Trickle(String input, int step) {
+
+            this.bytes = input.getBytes(StandardCharsets.US_ASCII);
+            this.step = step;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer) {
+
+            if (this.position == this.bytes.length)
+                return -1;
+
+            int length = Math.min(this.step, Math.min(buffer.remaining(),
+                    this.bytes.length - this.position));
+            buffer.put(this.bytes, this.position, length);
+            this.position += length;
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+
+            return true;
+        }
+
+        @Override
+        public void close() {
+
+            /** Nothing to release. */
+        }
+    }
+}
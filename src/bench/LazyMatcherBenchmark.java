@@ -0,0 +1,101 @@
+package bench;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.BitParallelMatcher;
+import core.DFA;
+import core.LazyDFAMatcher;
+import core.NFA;
+import core.RegEx;
+import entries.RegExEntry;
+import utils.Tasks;
+
+/**
+ * The Class LazyMatcherBenchmark.
+ * A plain timing harness for (a|b)*a(a|b)...(a|b), whose DFA has
+ * 2^(k+1) states for k trailing (a|b). Compares the full DFA build and
+ * match with the lazy DFA matcher and the bit parallel matcher.
+ *
+ */
+public class LazyMatcherBenchmark {
+
+    /** The numbers of trailing (a|b). */
+    static final int[] SIZES = { 4, 8, 12, 16, 20 };
+
+    /** The largest size for which the full DFA is built. */
+    static final int MAX_FULL = 12;
+
+    /** The number of inputs. */
+    static final int INPUTS = 1000;
+
+    /** The length of every input. */
+    static final int LENGTH = 256;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the cache capacity, optional
+     */
+    public static void main(String[] args) {
+
+        Logger.getLogger(RegEx.class.getName()).setLevel(Level.OFF);
+
+        int capacity = (args.length > 0) ? Integer.parseInt(args[0]) :
+            LazyDFAMatcher.DEFAULT_CAPACITY;
+
+        String[] inputs = MatcherBenchmark.inputs("ab", LENGTH);
+
+        System.out.println("k\tfull_ms\tlazy_ms\tbit_ms\thits\tmisses"
+                + "\tflushes\tfallbacks\tagree");
+
+        for (int k : SIZES) {
+
+            StringBuilder regex = new StringBuilder("(a|b)*a");
+            for (int i = 0; i < k; i++)
+                regex.append("(a|b)");
+
+            RegExEntry entry = new RegExEntry();
+            entry.setInput(regex.toString());
+            entry.setTask(Tasks.DFA);
+            NFA nfa = new RegEx(entry).createNFA();
+
+            int[] expected = null;
+            double full = Double.NaN;
+            if (k <= MAX_FULL) {
+
+                long t0 = System.nanoTime();
+                DFA dfa = nfa.createMinimumDFA();
+                core.Matcher matcher = dfa.matcher();
+                expected = new int[inputs.length];
+                for (int i = 0; i < inputs.length; i++)
+                    expected[i] = matcher.find(inputs[i], 0);
+                full = (System.nanoTime() - t0) / 1e6;
+            }
+
+            long t0 = System.nanoTime();
+            LazyDFAMatcher lazy = nfa.createLazyMatcher(capacity);
+            boolean agree = true;
+            for (int i = 0; i < inputs.length; i++) {
+
+                int found = lazy.find(inputs[i], 0);
+                agree &= (expected == null) || found == expected[i];
+            }
+            double lazyTime = (System.nanoTime() - t0) / 1e6;
+
+            t0 = System.nanoTime();
+            BitParallelMatcher bit = new BitParallelMatcher(regex.toString());
+            for (int i = 0; i < inputs.length; i++) {
+
+                int found = bit.find(inputs[i], 0);
+                agree &= (expected == null) || found == expected[i];
+            }
+            double bitTime = (System.nanoTime() - t0) / 1e6;
+
+            System.out.printf("%d\t%.1f\t%.1f\t%.1f\t%d\t%d\t%d\t%d\t%b%n",
+                    k, full, lazyTime, bitTime, lazy.getHits(),
+                    lazy.getMisses(), lazy.getFlushes(), lazy.getFallbacks(),
+                    agree);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package bench;
+
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import core.BitParallelMatcher;
+import core.Matcher;
+import core.NFA;
+import core.RegEx;
+import entries.RegExEntry;
+import utils.Chars;
+import utils.Tasks;
+
+/**
+ * The Class MatcherBenchmark.
+ * A plain timing harness comparing the table driven DFA matcher and the
+ * bit parallel matcher with java.util.regex.Pattern on the regular
+ * expressions of docs/test_1.txt.
+ * Inputs are random strings over the letters of each expression.
+ *
+ */
+public class MatcherBenchmark {
+
+    /** The number of inputs per expression. */
+    static final int INPUTS = 10000;
+
+    /** The length of every input. */
+    static final int LENGTH = 64;
+
+    /** The number of measured runs per case. */
+    static final int RUNS = 5;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the input length, optional
+     */
+    public static void main(String[] args) {
+
+        Logger.getLogger(RegEx.class.getName()).setLevel(Level.OFF);
+
+        int length = (args.length > 0) ? Integer.parseInt(args[0]) : LENGTH;
+
+        System.out.println("regex\tdfa_matches_ns\tbit_matches_ns"
+                + "\tpattern_matches_ns\tdfa_find_ns\tbit_find_ns"
+                + "\tpattern_find_ns\tagree");
+
+        for (String regex : PipelineBenchmark.TESTS) {
+
+            RegExEntry entry = new RegExEntry();
+            entry.setInput(regex);
+            entry.setTask(Tasks.DFA);
+            NFA nfa = new RegEx(entry).createNFA();
+            Matcher dfa = nfa.createMinimumDFA().matcher();
+            Matcher bit = new BitParallelMatcher(regex);
+
+            /** Java has no explicit concatenation operator. */
+            Pattern pattern = Pattern.compile(regex.replace(
+                    String.valueOf(Chars.concatenation), ""));
+
+            String[] inputs = MatcherBenchmark.inputs(regex, length);
+
+            boolean agree = true;
+            for (String input : inputs) {
+
+                java.util.regex.Matcher reference = pattern.matcher(input);
+                int found = reference.find(0) ? reference.start() : -1;
+                agree &= dfa.matches(input) == reference.matches();
+                agree &= bit.matches(input) == reference.matches();
+                agree &= dfa.find(input, 0) == found;
+                agree &= bit.find(input, 0) == found;
+            }
+
+            long[] best = new long[6];
+            java.util.Arrays.fill(best, Long.MAX_VALUE);
+            java.util.regex.Matcher reference = pattern.matcher("");
+
+            for (int run = 0; run <= RUNS; run++) {
+
+                long sink = 0;
+                long[] t = new long[7];
+                t[0] = System.nanoTime();
+                for (String input : inputs)
+                    sink += dfa.matches(input) ? 1 : 0;
+                t[1] = System.nanoTime();
+                for (String input : inputs)
+                    sink += bit.matches(input) ? 1 : 0;
+                t[2] = System.nanoTime();
+                for (String input : inputs)
+                    sink += reference.reset(input).matches() ? 1 : 0;
+                t[3] = System.nanoTime();
+                for (String input : inputs)
+                    sink += dfa.find(input, 0);
+                t[4] = System.nanoTime();
+                for (String input : inputs)
+                    sink += bit.find(input, 0);
+                t[5] = System.nanoTime();
+                for (String input : inputs)
+                    sink += reference.reset(input).find() ?
+                            reference.start() : -1;
+                t[6] = System.nanoTime();
+
+                /** The first run is the warm up. */
+                if (run == 0 || sink == Long.MIN_VALUE)
+                    continue;
+
+                for (int i = 0; i < best.length; i++)
+                    best[i] = Math.min(best[i], t[i + 1] - t[i]);
+            }
+
+            System.out.print(regex);
+            for (long time : best)
+                System.out.printf("\t%.1f", (double) time / inputs.length);
+            System.out.printf("\t%b%n", agree);
+        }
+    }
+
+    /**
+     * Generates random inputs over the letters of a regular expression.
+     *
+     * @param regex the regex
+     * @param length the length of every input
+     * @return the inputs
+     */
+    static String[] inputs(String regex, int length) {
+
+        StringBuilder letters = new StringBuilder();
+        for (char ch : regex.toCharArray()) {
+
+            if (Character.isLetterOrDigit(ch) && letters.indexOf(
+                    String.valueOf(ch)) < 0)
+                letters.append(ch);
+        }
+
+        Random random = new Random(length);
+        String[] inputs = new String[INPUTS];
+        char[] input = new char[length];
+        for (int i = 0; i < INPUTS; i++) {
+
+            for (int j = 0; j < length; j++)
+                input[j] = letters.charAt(random.nextInt(letters.length()));
+            inputs[i] = new String(input);
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,106 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.DFAMatcher;
+import core.Matcher;
+import core.Matchers;
+import core.RegEx;
+
+/**
+ * The Class MultiPatternBenchmark.
+ * A plain timing harness comparing one tagged DFA for a set of patterns
+ * with one matcher per pattern. Patterns are random words with a starred
+ * group, inputs are random lines over the same letters.
+ *
+ */
+public class MultiPatternBenchmark {
+
+    /** The numbers of patterns. */
+    static final int[] SIZES = { 10, 100, 400 };
+
+    /** The letters of patterns and inputs. */
+    static final String LETTERS = "abcdefgh";
+
+    /** The number of inputs. */
+    static final int INPUTS = 10000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+
+        Logger.getLogger(RegEx.class.getName()).setLevel(Level.OFF);
+
+        Random random = new Random(12);
+        System.out.println("patterns\tcompile_ms\tdfa_states\ttagged_ms"
+                + "\tseparate_ms\tagree");
+
+        for (int size : SIZES) {
+
+            ArrayList<String> regexes = new ArrayList<String>();
+            for (int i = 0; i < size; i++)
+                regexes.add(MultiPatternBenchmark.word(random) + "("
+                        + MultiPatternBenchmark.word(random) + ")*"
+                        + MultiPatternBenchmark.word(random));
+
+            String[] inputs = new String[INPUTS];
+            for (int i = 0; i < INPUTS; i++) {
+
+                /** Every other input is one of the patterns. */
+                String regex = regexes.get(random.nextInt(size));
+                inputs[i] = (i % 2 == 0) ? regex.replace("(", "")
+                        .replace(")*", "") : MultiPatternBenchmark.word(random)
+                        + MultiPatternBenchmark.word(random);
+            }
+
+            long t0 = System.nanoTime();
+            DFAMatcher tagged = Matchers.compileAll(regexes);
+            double compile = (System.nanoTime() - t0) / 1e6;
+
+            Matcher[] separate = new Matcher[size];
+            for (int i = 0; i < size; i++)
+                separate[i] = Matchers.compile(regexes.get(i));
+
+            long matched = 0;
+            t0 = System.nanoTime();
+            for (String input : inputs)
+                matched += tagged.matchingPatterns(input).size();
+            double taggedTime = (System.nanoTime() - t0) / 1e6;
+
+            long expected = 0;
+            t0 = System.nanoTime();
+            for (String input : inputs) {
+
+                for (Matcher matcher : separate)
+                    expected += matcher.matches(input) ? 1 : 0;
+            }
+            double separateTime = (System.nanoTime() - t0) / 1e6;
+
+            System.out.printf("%d\t%.1f\t%d\t%.1f\t%.1f\t%b%n", size, compile,
+                    tagged.stateCount(), taggedTime, separateTime,
+                    matched == expected);
+        }
+    }
+
+    /**
+     * Generates a random word of two to four letters.
+     *
+     * @param random the random generator
+     * @return the word
+     */
+    static String word(Random random) {
+
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(3);
+        for (int i = 0; i < length; i++)
+            word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+
+        return word.toString();
+    }
+}
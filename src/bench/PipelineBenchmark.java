@@ -0,0 +1,133 @@
+package bench;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.DFA;
+import core.NFA;
+import core.RegEx;
+import entries.RegExEntry;
+import utils.Tasks;
+
+/**
+ * The Class PipelineBenchmark.
+ * A plain timing harness for the RegEx to minimum DFA pipeline.
+ * The regular expressions of docs/test_1.txt are scaled up by
+ * concatenating them with themselves.
+ *
+ */
+public class PipelineBenchmark {
+
+    /** The regular expressions of docs/test_1.txt. */
+    static final String[] TESTS = {
+            "ab((a|b))*bc(a)*",
+            "ab((a|b))*bc(a)*aaa(a|b)a(b)*",
+            "(a|b)(ab)*",
+            "(a)*",
+            "(abc)*ab",
+            "(a|(b)*|c)*a"
+    };
+
+    /** The scales which are applied to every expression. */
+    static final int[] SCALES = { 1, 2, 4, 8 };
+
+    /** The number of measured runs per case. */
+    static final int RUNS = 5;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the scales to run, optional
+     */
+    public static void main(String[] args) {
+
+        Logger.getLogger(RegEx.class.getName()).setLevel(Level.OFF);
+
+        int[] scales = SCALES;
+        if (args.length > 0) {
+
+            scales = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                scales[i] = Integer.parseInt(args[i]);
+        }
+
+        System.out.println("regex\tscale\tnfa_ms\tdfa_ms\tmin_states");
+
+        for (String regex : TESTS) {
+
+            for (int scale : scales) {
+
+                String scaled = PipelineBenchmark.scale(regex, scale);
+
+                /** Warm up once, then keep the best of the runs. */
+                PipelineBenchmark.run(scaled);
+
+                long bestNFA = Long.MAX_VALUE;
+                long bestDFA = Long.MAX_VALUE;
+                int states = 0;
+
+                for (int i = 0; i < RUNS; i++) {
+
+                    long[] times = new long[2];
+                    states = PipelineBenchmark.run(scaled, times);
+                    bestNFA = Math.min(bestNFA, times[0]);
+                    bestDFA = Math.min(bestDFA, times[1]);
+                }
+
+                System.out.printf("%s\t%d\t%.3f\t%.3f\t%d%n", regex, scale,
+                        bestNFA / 1e6, bestDFA / 1e6, states);
+            }
+        }
+    }
+
+    /**
+     * Concatenates a regular expression with itself.
+     *
+     * @param regex the regex
+     * @param scale the number of copies
+     * @return the scaled regex
+     */
+    static String scale(String regex, int scale) {
+
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < scale; i++)
+            str.append(regex);
+
+        return str.toString();
+    }
+
+    /**
+     * Runs the pipeline once without timing.
+     *
+     * @param regex the regex
+     */
+    static void run(String regex) {
+
+        PipelineBenchmark.run(regex, new long[2]);
+    }
+
+    /**
+     * Runs the pipeline once.
+     *
+     * @param regex the regex
+     * @param times receives the NFA and the DFA build times in ns
+     * @return the number of states of the minimum DFA
+     */
+    static int run(String regex, long[] times) {
+
+        RegExEntry entry = new RegExEntry();
+        entry.setInput(regex);
+        entry.setTask(Tasks.DFA);
+
+        long start = System.nanoTime();
+        NFA nfa = new RegEx(entry).createNFA();
+        long built = System.nanoTime();
+        DFA dfa = nfa.createMinimumDFA();
+        long end = System.nanoTime();
+
+        times[0] = built - start;
+        times[1] = end - built;
+
+        return dfa.getCompactMinMatrix().stateCount();
+    }
+}
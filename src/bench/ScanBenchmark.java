@@ -0,0 +1,143 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.ChannelScanner;
+import core.DFA;
+import core.RegEx;
+import entries.RegExEntry;
+import utils.Tasks;
+
+/**
+ * The Class ScanBenchmark.
+ * A plain throughput harness for ChannelScanner on a generated log file,
+ * with channel reads, with memory mapping and with parallel chunks.
+ *
+ */
+public class ScanBenchmark {
+
+    /** The regular expressions to scan for. */
+    static final String[] TESTS = {
+            "error",
+            "(a|b)*abb",
+            "warn(ing)*(x|y|z)"
+    };
+
+    /** The default size of the file in MB. */
+    static final int SIZE_MB = 256;
+
+    /** The number of measured runs per case. */
+    static final int RUNS = 3;
+
+    /** The logger of the pipeline, kept so that its level sticks. */
+    static final Logger LOGGER = Logger.getLogger(RegEx.class.getName());
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the size of the file in MB, optional
+     * @throws IOException if the file can not be written or read
+     */
+    public static void main(String[] args) throws IOException {
+
+        LOGGER.setLevel(Level.OFF);
+
+        long size = ((args.length > 0) ? Integer.parseInt(args[0]) : SIZE_MB)
+                * (1L << 20);
+        Path file = Files.createTempFile("scan", ".log");
+        file.toFile().deleteOnExit();
+        ScanBenchmark.generate(file, size);
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        System.out.println("regex\tstates\tmatches\tread_gbps\tmmap_gbps\t"
+                + "parallel_gbps (" + threads + " threads)");
+
+        for (String regex : TESTS) {
+
+            RegExEntry entry = new RegExEntry();
+            entry.setInput(regex);
+            entry.setTask(Tasks.DFA);
+            DFA dfa = new RegEx(entry).createNFA().createMinimumDFA();
+            ChannelScanner scanner = new ChannelScanner(dfa);
+
+            long[] matches = new long[1];
+            double bestRead = 0;
+            double bestMapped = 0;
+            double bestParallel = 0;
+
+            for (int run = 0; run <= RUNS; run++) {
+
+                matches[0] = 0;
+                long t0 = System.nanoTime();
+                try (FileChannel channel = FileChannel.open(file)) {
+                    scanner.scan(channel, end -> matches[0]++);
+                }
+                long t1 = System.nanoTime();
+                try (FileChannel channel = FileChannel.open(file)) {
+                    scanner.scanMapped(channel, end -> matches[0]++);
+                }
+                long t2 = System.nanoTime();
+                try (FileChannel channel = FileChannel.open(file)) {
+                    scanner.scanParallel(channel, end -> matches[0]++,
+                            threads);
+                }
+                long t3 = System.nanoTime();
+
+                /** The first run is the warm up. */
+                if (run == 0)
+                    continue;
+
+                bestRead = Math.max(bestRead, (double) size / (t1 - t0));
+                bestMapped = Math.max(bestMapped, (double) size / (t2 - t1));
+                bestParallel = Math.max(bestParallel,
+                        (double) size / (t3 - t2));
+            }
+
+            System.out.printf("%s\t%d\t%d\t%.2f\t%.2f\t%.2f%n", regex,
+                    scanner.stateCount(), matches[0] / 3, bestRead,
+                    bestMapped, bestParallel);
+        }
+    }
+
+    /**
+     * Writes a file of random log like lines.
+     *
+     * @param file the file
+     * @param size the size in bytes
+     * @throws IOException if the file can not be written
+     */
+    static void generate(Path file, long size) throws IOException {
+
+        String[] words = { "error", "warning", "info", "abba", "abb", "x",
+                "warn", "debug", "ok", "y" };
+        Random random = new Random(13);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE)) {
+
+            long written = 0;
+            while (written < size) {
+
+                buffer.clear();
+                while (buffer.remaining() > 16) {
+
+                    buffer.put(words[random.nextInt(words.length)].getBytes());
+                    buffer.put((byte) (random.nextInt(8) == 0 ? '\n' : ' '));
+                }
+
+                buffer.flip();
+                buffer.limit((int) Math.min(buffer.limit(), size - written));
+                written += channel.write(buffer);
+            }
+        }
+    }
+}
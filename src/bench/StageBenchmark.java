@@ -0,0 +1,327 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.DFA;
+import core.Minimization;
+import core.NFA;
+import core.RegEx;
+
+/**
+ * The Class StageBenchmark.
+ * A timing harness which measures every stage of the RegEx to minimum DFA
+ * pipeline on its own, over parameterized families of RegExes and the
+ * cases of docs/test_1.txt.
+ *
+ * Every stage gets its input prepared outside of the measurement, so a
+ * stage is timed alone. After a warm up, a stage is run until the time
+ * budget is spent, and its throughput is reported in ops/s together
+ * with the bytes it allocates per op, as counted by the allocation
+ * counter of the thread.
+ *
+ * Arguments, all optional: the families to run (nested, union, concat,
+ * blowup, tests), then the measured milliseconds per case and stage.
+ *
+ */
+public class StageBenchmark {
+
+    /** The letters of the generated RegExes. */
+    static final String LETTERS = "abcdefgh";
+
+    /** The warm up time per case and stage, in ms. */
+    static final long WARMUP_MS = 200;
+
+    /** The default measured time per case and stage, in ms. */
+    static final long MEASURE_MS = 1000;
+
+    /** The least number of measured ops. */
+    static final int MIN_OPS = 3;
+
+    /** The results of the stages, so that runs are not optimized out. */
+    static long sink;
+
+    /** The logger of the pipeline, kept so that its level sticks. */
+    static final Logger LOGGER = Logger.getLogger(RegEx.class.getName());
+
+    /** The allocation counter of the threads. */
+    static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean)
+            ManagementFactory.getThreadMXBean();
+
+    /**
+     * The Enum Stage.
+     * A stage of the pipeline, with the preparation of its input.
+     */
+    enum Stage {
+
+        /** RegEx to NFA, parsing included. */
+        NFA_BUILD {
+
+            @Override
+            Object prepare(String regex) {
+
+                return regex;
+            }
+
+            @Override
+            int run(Object input) {
+
+                NFA nfa = new NFA();
+                nfa.build((String) input);
+                return nfa.getFinalStates().get(0);
+            }
+        },
+
+        /** NFA to DFA, the subset construction. */
+        DFA_BUILD {
+
+            @Override
+            Object prepare(String regex) {
+
+                NFA nfa = new NFA();
+                nfa.build(regex);
+                return nfa;
+            }
+
+            @Override
+            int run(Object input) {
+
+                DFA dfa = new DFA();
+                dfa.build((NFA) input);
+                return dfa.getFinalStates().size();
+            }
+        },
+
+        /** DFA to minimum DFA, Moore's refinement by makeNextPartitioning. */
+        MIN_MOORE {
+
+            @Override
+            Object prepare(String regex) {
+
+                return Stage.subsetDFA(regex);
+            }
+
+            @Override
+            int run(Object input) {
+
+                ((DFA) input).makeMin(Minimization.MOORE);
+                return ((DFA) input).getFinalStates().size();
+            }
+        },
+
+        /** DFA to minimum DFA, Hopcroft's algorithm. */
+        MIN_HOPCROFT {
+
+            @Override
+            Object prepare(String regex) {
+
+                return Stage.subsetDFA(regex);
+            }
+
+            @Override
+            int run(Object input) {
+
+                ((DFA) input).makeMin(Minimization.HOPCROFT);
+                return ((DFA) input).getFinalStates().size();
+            }
+        };
+
+        /**
+         * Prepares the input of one op.
+         *
+         * @param regex the regex
+         * @return the input
+         */
+        abstract Object prepare(String regex);
+
+        /**
+         * Runs one op.
+         *
+         * @param input the input
+         * @return a value of the result
+         */
+        abstract int run(Object input);
+
+        /**
+         * Builds the subset DFA of a RegEx.
+         *
+         * @param regex the regex
+         * @return the DFA, not minimized
+         */
+        static DFA subsetDFA(String regex) {
+
+            NFA nfa = new NFA();
+            nfa.build(regex);
+            DFA dfa = new DFA();
+            dfa.build(nfa);
+            return dfa;
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the families to run and the measured ms, optional
+     */
+    public static void main(String[] args) {
+
+        LOGGER.setLevel(Level.OFF);
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        ArrayList<String> families = new ArrayList<String>();
+        long measure = MEASURE_MS;
+        for (String arg : args) {
+
+            if (arg.matches("[0-9]+"))
+                measure = Long.parseLong(arg);
+            else
+                families.add(arg);
+        }
+        if (families.isEmpty()) {
+
+            families.add("nested");
+            families.add("union");
+            families.add("concat");
+            families.add("blowup");
+            families.add("tests");
+        }
+
+        System.out.println("family\tn\tstage\tops_per_s\tbytes_per_op"
+                + "\tmin_states");
+
+        for (String family : families) {
+
+            for (String[] test : StageBenchmark.cases(family)) {
+
+                DFA min = Stage.subsetDFA(test[1]);
+                min.makeMin();
+                int states = min.compile().stateCount();
+
+                for (Stage stage : Stage.values()) {
+
+                    StageBenchmark.measure(stage, test[1], WARMUP_MS);
+                    double[] result = StageBenchmark.measure(stage, test[1],
+                            measure);
+
+                    System.out.printf("%s\t%s\t%s\t%.1f\t%.0f\t%d%n", family,
+                            test[0], stage.name().toLowerCase(), result[0],
+                            result[1], states);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a stage until a time budget is spent.
+     *
+     * @param stage the stage
+     * @param regex the regex
+     * @param budget the time budget, in ms
+     * @return the ops per second and the allocated bytes per op
+     */
+    static double[] measure(Stage stage, String regex, long budget) {
+
+        long time = 0;
+        long allocated = 0;
+        long ops = 0;
+
+        /** The cost of reading the counters, taken off every op. */
+        long overhead = THREADS.getCurrentThreadAllocatedBytes();
+        overhead = THREADS.getCurrentThreadAllocatedBytes() - overhead;
+
+        while (time < budget * 1000000L || ops < MIN_OPS) {
+
+            Object input = stage.prepare(regex);
+
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            sink += stage.run(input);
+            long end = System.nanoTime();
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - bytes
+                    - overhead;
+
+            time += end - start;
+            ops++;
+        }
+
+        return new double[] { ops * 1e9 / time, (double) allocated / ops };
+    }
+
+    /**
+     * Generates the RegExes of a family.
+     *
+     * @param family the family
+     * @return the parameter and the RegEx of every case
+     * @throws IllegalArgumentException if the family is unknown
+     */
+    static ArrayList<String[]> cases(String family) {
+
+        ArrayList<String[]> cases = new ArrayList<String[]>();
+
+        switch (family) {
+
+        case "nested":
+            /** ((((a)*b)*a)*b)* with n stars. */
+            for (int n : new int[] { 4, 16, 64 }) {
+
+                String regex = "a";
+                for (int i = 0; i < n; i++)
+                    regex = "(" + regex + ")*" + LETTERS.charAt(i % 2);
+                cases.add(new String[] { String.valueOf(n), regex });
+            }
+            break;
+
+        case "union":
+            /** (w1|w2|...|wn) with words of 3 letters. */
+            for (int n : new int[] { 16, 64, 256 }) {
+
+                StringBuilder regex = new StringBuilder("(");
+                for (int i = 0; i < n; i++) {
+
+                    if (i > 0)
+                        regex.append('|');
+                    regex.append(LETTERS.charAt(i % 8))
+                            .append(LETTERS.charAt(i / 8 % 8))
+                            .append(LETTERS.charAt(i / 64 % 8));
+                }
+                cases.add(new String[] { String.valueOf(n),
+                        regex.append(')').toString() });
+            }
+            break;
+
+        case "concat":
+            /** A word of n letters. */
+            for (int n : new int[] { 32, 128, 512 }) {
+
+                StringBuilder regex = new StringBuilder();
+                for (int i = 0; i < n; i++)
+                    regex.append(LETTERS.charAt(i % LETTERS.length()));
+                cases.add(new String[] { String.valueOf(n),
+                        regex.toString() });
+            }
+            break;
+
+        case "blowup":
+            /** (a|b)*a(a|b)^n, whose minimum DFA has 2^(n+1) states. */
+            for (int n : new int[] { 4, 7, 10 }) {
+
+                cases.add(new String[] { String.valueOf(n), "(a|b)*a"
+                        + PipelineBenchmark.scale("(a|b)", n) });
+            }
+            break;
+
+        case "tests":
+            for (int i = 0; i < PipelineBenchmark.TESTS.length; i++)
+                cases.add(new String[] { String.valueOf(i + 1),
+                        PipelineBenchmark.TESTS[i] });
+            break;
+
+        default:
+            throw new IllegalArgumentException("unknown family: " + family);
+        }
+        return cases;
+    }
+}
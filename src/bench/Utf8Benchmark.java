@@ -0,0 +1,131 @@
+package bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import core.DFAMatcher;
+import core.Matchers;
+import core.NFA;
+import core.RegEx;
+
+/**
+ * The Class Utf8Benchmark.
+ * A plain timing harness comparing a DFA compiled over the bytes of
+ * UTF-8 with decoding every line into a String and running a DFA
+ * compiled over chars.
+ * Inputs are random lines of Latin, Cyrillic and CJK words.
+ *
+ */
+public class Utf8Benchmark {
+
+    /** The regular expressions, with ranges outside of ASCII. */
+    static final String[] TESTS = {
+            "\u043E\u0448\u0438\u0431\u043A\u0430",
+            "[\u0430-\u044F]*(\u043A\u0430|\u043E\u043A)",
+            "\u65E5\u672C(\u8A9E|\u4EBA)",
+            "[^ ]*@[a-z]*",
+            "(.)*\uD83D\uDE00"
+    };
+
+    /** The words the lines are made of. */
+    static final String[] WORDS = { "error",
+            "\u043E\u0448\u0438\u0431\u043A\u0430",
+            "\u65E5\u672C\u8A9E", "\u65E5\u672C\u4EBA", "user@host",
+            "caf\u00E9", "\uD83D\uDE00", "\u043E\u043A",
+            "\u0441\u0442\u0440\u043E\u043A\u0430", "data" };
+
+    /** The number of lines. */
+    static final int LINES = 20000;
+
+    /** The number of measured runs per case. */
+    static final int RUNS = 5;
+
+    /** The number of lines found, so that the runs are not optimized out. */
+    static long sink;
+
+    /** The logger of the pipeline, kept so that its level sticks. */
+    static final Logger LOGGER = Logger.getLogger(RegEx.class.getName());
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     */
+    public static void main(String[] args) {
+
+        LOGGER.setLevel(Level.OFF);
+
+        byte[][] lines = Utf8Benchmark.lines();
+
+        System.out.println("regex\tutf8_states\tutf8_classes\tbytes_find_ns"
+                + "\tdecode_find_ns\tagree");
+
+        for (String regex : TESTS) {
+
+            DFAMatcher bytes = Matchers.compileUtf8(regex);
+            NFA nfa = new NFA();
+            nfa.build(regex);
+            DFAMatcher chars = new DFAMatcher(nfa.createMinimumDFA());
+
+            boolean agree = true;
+            for (byte[] line : lines) {
+
+                String decoded = new String(line, StandardCharsets.UTF_8);
+                agree &= (bytes.find(line, 0, line.length) >= 0)
+                        == (chars.find(decoded, 0) >= 0);
+            }
+
+            long bestBytes = Long.MAX_VALUE;
+            long bestDecode = Long.MAX_VALUE;
+
+            for (int run = 0; run <= RUNS; run++) {
+
+                long t0 = System.nanoTime();
+                for (byte[] line : lines)
+                    sink += (bytes.find(line, 0, line.length) >= 0) ? 1 : 0;
+
+                long t1 = System.nanoTime();
+                for (byte[] line : lines)
+                    sink += (chars.find(new String(line,
+                            StandardCharsets.UTF_8), 0) >= 0) ? 1 : 0;
+
+                long t2 = System.nanoTime();
+
+                /** The first run is the warm up. */
+                if (run == 0)
+                    continue;
+
+                bestBytes = Math.min(bestBytes, t1 - t0);
+                bestDecode = Math.min(bestDecode, t2 - t1);
+            }
+
+            System.out.printf("%s\t%d\t%d\t%.1f\t%.1f\t%b%n", regex,
+                    bytes.stateCount(), bytes.classCount(),
+                    (double) bestBytes / LINES, (double) bestDecode / LINES,
+                    agree);
+        }
+    }
+
+    /**
+     * Generates the lines.
+     *
+     * @return the UTF-8 form of every line
+     */
+    static byte[][] lines() {
+
+        Random random = new Random(17);
+        byte[][] lines = new byte[LINES][];
+
+        for (int i = 0; i < LINES; i++) {
+
+            StringBuilder line = new StringBuilder();
+            for (int w = random.nextInt(8); w >= 0; w--)
+                line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+
+            lines[i] = line.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return lines;
+    }
+}
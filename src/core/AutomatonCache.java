@@ -0,0 +1,280 @@
+package core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The Class AutomatonCache.
+ * A thread safe, size bounded cache of minimum DFAs, so that a RegEx seen
+ * again is not compiled again.
+ *
+ * RegExes are keyed by their normalized form, the postfix form of the
+ * parser together with the chars every letter stands for. Implicit and
+ * explicit concatenation, redundant parentheses and equal character
+ * classes written in different ways therefore share an entry.
+ *
+ * The least recently used entry is evicted when the cache is full. A RegEx
+ * is compiled outside of the lock, once: threads asking for it while it is
+ * compiled wait for the same result. The cached automata are immutable,
+ * see CompiledAutomaton, so they are shared between the callers as is.
+ *
+ */
+public final class AutomatonCache {
+
+    /** The default number of cached RegExes. */
+    public static final int DEFAULT_CAPACITY = 512;
+
+    /** The maximum number of cached RegExes. */
+    private final int capacity;
+
+    /** The entries by key, in access order. */
+    private final LinkedHashMap<String,
+            CompletableFuture<CompiledAutomaton>> entries;
+
+    /** The number of lookups served from the cache. */
+    private long hits;
+
+    /** The number of lookups which compiled their RegEx. */
+    private long misses;
+
+    /** The number of evicted entries. */
+    private long evictions;
+
+    /**
+     * Instantiates a new automaton cache of the default capacity.
+     */
+    public AutomatonCache() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new automaton cache.
+     *
+     * @param capacity the maximum number of cached RegExes
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public AutomatonCache(int capacity) {
+
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity: " + capacity);
+
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String,
+                CompletableFuture<CompiledAutomaton>>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,
+                    CompletableFuture<CompiledAutomaton>> eldest) {
+
+                if (this.size() <= AutomatonCache.this.capacity)
+                    return false;
+
+                AutomatonCache.this.evictions++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets the minimum DFA of a RegEx, compiling it on a miss.
+     *
+     * @param regex the input RegEx
+     * @return the shared minimum DFA
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    public CompiledAutomaton get(String regex) {
+
+        return this.lookup(regex, Encoding.UTF16);
+    }
+
+    /**
+     * Gets the minimum DFA of a RegEx over chars or over the bytes of
+     * UTF-8, compiling it on a miss.
+     *
+     * @param regex the input RegEx
+     * @param encoding the units the letters are made of
+     * @return the shared minimum DFA
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    public CompiledAutomaton get(String regex, Encoding encoding) {
+
+        return this.lookup(regex, encoding);
+    }
+
+    /**
+     * Gets the matcher of a RegEx, compiling it on a miss.
+     *
+     * @param regex the input RegEx
+     * @return the shared matcher
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    public DFAMatcher matcher(String regex) {
+
+        return this.lookup(regex, Encoding.UTF16).matcher();
+    }
+
+    /**
+     * Gets the matcher of a RegEx over chars or over the bytes of UTF-8,
+     * compiling it on a miss.
+     *
+     * @param regex the input RegEx
+     * @param encoding the units the letters are made of
+     * @return the shared matcher
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    public DFAMatcher matcher(String regex, Encoding encoding) {
+
+        return this.lookup(regex, encoding).matcher();
+    }
+
+    /**
+     * Looks a RegEx up, compiling it on a miss.
+     *
+     * @param regex the input RegEx
+     * @param encoding the units the letters are made of
+     * @return the shared minimum DFA
+     */
+    private CompiledAutomaton lookup(String regex, Encoding encoding) {
+
+        Postfix postfix = RegExParser.parse(encoding, regex);
+        String key = AutomatonCache.key(postfix, encoding);
+
+        CompletableFuture<CompiledAutomaton> future;
+        boolean owner = false;
+
+        synchronized (this) {
+
+            future = this.entries.get(key);
+            if (future == null) {
+
+                future = new CompletableFuture<CompiledAutomaton>();
+                this.entries.put(key, future);
+                this.misses++;
+                owner = true;
+            }
+            else
+                this.hits++;
+        }
+
+        if (owner) {
+
+            try {
+
+                NFA nfa = new NFA();
+                nfa.build(postfix);
+                future.complete(nfa.compile());
+            }
+            catch (RuntimeException | Error e) {
+
+                /** A failed RegEx is not cached, the waiters fail too. */
+                synchronized (this) {
+
+                    this.entries.remove(key, future);
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+
+            return future.join();
+        }
+        catch (CompletionException e) {
+
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the normalized key of a parsed RegEx.
+     *
+     * @param postfix the postfix form of the RegEx
+     * @param encoding the units the letters are made of
+     * @return the key
+     */
+    static String key(Postfix postfix, Encoding encoding) {
+
+        StringBuilder key = new StringBuilder(encoding.name());
+
+        for (int symbol : postfix.forms[0])
+            key.append(' ').append(symbol);
+
+        /** The letters are named after their chars, the ranges tell which. */
+        LetterRanges letters = postfix.letters;
+        key.append(" /");
+        for (int i = 0; i < letters.intervalCount(); i++) {
+
+            key.append(' ').append(letters.start(i)).append(':')
+                    .append(letters.letter(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Removes every entry. The statistics are kept.
+     */
+    public synchronized void clear() {
+
+        this.entries.clear();
+    }
+
+    /**
+     * Gets the number of cached RegExes, the ones being compiled included.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+
+        return this.entries.size();
+    }
+
+    /**
+     * Gets the maximum number of cached RegExes.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+
+        return this.capacity;
+    }
+
+    /**
+     * Gets the number of lookups served from the cache.
+     *
+     * @return the hits
+     */
+    public synchronized long getHits() {
+
+        return this.hits;
+    }
+
+    /**
+     * Gets the number of lookups which compiled their RegEx.
+     *
+     * @return the misses
+     */
+    public synchronized long getMisses() {
+
+        return this.misses;
+    }
+
+    /**
+     * Gets the number of evicted entries.
+     *
+     * @return the evictions
+     */
+    public synchronized long getEvictions() {
+
+        return this.evictions;
+    }
+}
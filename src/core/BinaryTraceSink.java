@@ -0,0 +1,87 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * The Class BinaryTraceSink.
+ * A trace sink which writes every event as a fixed size binary record,
+ * without the text of the automata, so tracing a production compile costs
+ * a few buffered writes per event.
+ *
+ * The stream starts with the magic number "TRC1", then every record is,
+ * big endian: the System.nanoTime of the event (long), the ordinal of the
+ * TraceEvent (int), then its two counts (long, long).
+ *
+ */
+public final class BinaryTraceSink implements TraceSink, Closeable {
+
+    /** The magic number, "TRC1" in ASCII. */
+    static final int MAGIC = 0x54524331;
+
+    /** The size of a record in bytes. */
+    public static final int RECORD_SIZE = 28;
+
+    /** The output. */
+    private final DataOutputStream out;
+
+    /** The first write error, null if there is none. */
+    private IOException error;
+
+    /**
+     * Instantiates a new binary trace sink.
+     *
+     * @param out the output stream, buffered by the sink
+     * @throws IOException if the magic number can not be written
+     */
+    public BinaryTraceSink(OutputStream out) throws IOException {
+
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+    }
+
+    @Override
+    public synchronized void record(TraceEvent event, long first,
+            long second, Supplier<String> detail) {
+
+        if (this.error != null)
+            return;
+
+        try {
+
+            this.out.writeLong(System.nanoTime());
+            this.out.writeInt(event.ordinal());
+            this.out.writeLong(first);
+            this.out.writeLong(second);
+        }
+        catch (IOException e) {
+
+            /** The compilation goes on, the error is reported on close. */
+            this.error = e;
+        }
+    }
+
+    /**
+     * Flushes the records written so far.
+     *
+     * @throws IOException if a record could not be written
+     */
+    public synchronized void flush() throws IOException {
+
+        if (this.error != null)
+            throw this.error;
+        this.out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+
+        this.out.close();
+        if (this.error != null)
+            throw this.error;
+    }
+}
@@ -0,0 +1,466 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The Class BitParallelMatcher.
+ * A matcher which runs the Glushkov automaton of a RegEx with one bit per
+ * position, a position being an occurrence of a letter in the RegEx.
+ *
+ * The Glushkov automaton has no epsilon transitions and every transition
+ * into a position reads the letter of that position. So a step is the
+ * union of the follow sets of the active positions, masked by the
+ * positions of the letter read. The union is looked up one byte of the
+ * active set at a time in precomputed tables.
+ *
+ * Bit 0 is the initial position. Up to 63 letter positions fit in a
+ * single long, a few more words are handled by the multi word path.
+ *
+ * find adds the initial position to the active set at every step, which
+ * runs all the starts in one pass. The leftmost start is then found by
+ * bisecting the last start allowed, in O(log n) passes.
+ *
+ */
+public final class BitParallelMatcher implements Matcher {
+
+    /** The largest number of positions, the initial one included. */
+    public static final int MAX_POSITIONS = 256;
+
+    /** The number of long words per set of positions. */
+    private final int words;
+
+    /** The follow tables, (byte * 256 + value) * words + word. */
+    private final long[] follow;
+
+    /** The positions of every class, class * words + word. */
+    private final long[] masks;
+
+    /** The class of every char. */
+    private final SymbolClasses symbols;
+
+    /** The positions which end a match. */
+    private final long[] last;
+
+    /**
+     * Instantiates a new bit parallel matcher.
+     *
+     * @param regex the input RegEx
+     * @throws IllegalArgumentException if the RegEx is malformed or has
+     *         too many positions
+     */
+    public BitParallelMatcher(String regex) {
+
+        this(RegExParser.parse(regex));
+    }
+
+    /**
+     * Instantiates a new bit parallel matcher.
+     *
+     * @param postfix the postfix form of the RegEx
+     */
+    BitParallelMatcher(Postfix postfix) {
+
+        this(postfix.forms[0], postfix.letters);
+    }
+
+    /**
+     * Instantiates a new bit parallel matcher.
+     *
+     * @param postfix the postfix form of the RegEx
+     * @param letters the chars every letter stands for, null if every
+     *        letter is a char of its own
+     */
+    BitParallelMatcher(int[] postfix, LetterRanges letters) {
+
+        int positions = BitParallelMatcher.positions(postfix);
+        if (positions > MAX_POSITIONS)
+            throw new IllegalArgumentException("RegEx has " + positions
+                    + " positions, at most " + MAX_POSITIONS
+                    + " are supported");
+
+        this.words = EpsilonClosure.wordsFor(positions);
+        int w = this.words;
+
+        /** Letters are numbered as classes 1.., 0 being unknown chars. */
+        int maxLetter = 0;
+        for (int token : postfix)
+            maxLetter = Math.max(maxLetter, token);
+
+        int[] classOf = new int[maxLetter + 1];
+        int classes = 1;
+        for (int token : postfix) {
+
+            if (token >= 0 && classOf[token] == 0)
+                classOf[token] = classes++;
+        }
+        this.symbols = SymbolClasses.map(classOf, classes, null, letters);
+        this.masks = new long[classes * w];
+
+        /** The Glushkov sets of every fragment on the stack. */
+        long[][] firsts = new long[postfix.length][];
+        long[][] lasts = new long[postfix.length][];
+        boolean[] nullable = new boolean[postfix.length];
+        long[] followSets = new long[positions * w];
+        int size = 0;
+        int position = 0;
+
+        for (int token : postfix) {
+
+            if (token == RegExParser.STAR) {
+
+                BitParallelMatcher.addToAll(followSets, lasts[size - 1],
+                        firsts[size - 1], w);
+                nullable[size - 1] = true;
+            }
+            else if (token == RegExParser.CONCAT) {
+
+                size--;
+                BitParallelMatcher.addToAll(followSets, lasts[size - 1],
+                        firsts[size], w);
+
+                if (nullable[size - 1])
+                    BitParallelMatcher.or(firsts[size - 1], firsts[size]);
+                if (nullable[size])
+                    BitParallelMatcher.or(lasts[size], lasts[size - 1]);
+
+                lasts[size - 1] = lasts[size];
+                nullable[size - 1] &= nullable[size];
+            }
+            else if (token == RegExParser.UNION) {
+
+                size--;
+                BitParallelMatcher.or(firsts[size - 1], firsts[size]);
+                BitParallelMatcher.or(lasts[size - 1], lasts[size]);
+                nullable[size - 1] |= nullable[size];
+            }
+            else {
+
+                position++;
+                firsts[size] = new long[w];
+                lasts[size] = new long[w];
+                firsts[size][position >>> 6] |= 1L << position;
+                lasts[size][position >>> 6] |= 1L << position;
+                nullable[size] = false;
+                this.masks[classOf[token] * w + (position >>> 6)] |=
+                        1L << position;
+                size++;
+            }
+        }
+
+        /** The initial position is followed by the first positions. */
+        System.arraycopy(firsts[0], 0, followSets, 0, w);
+        this.last = lasts[0];
+        if (nullable[0])
+            this.last[0] |= 1L;
+
+        /** Build the follow table of every byte of a set of positions. */
+        int bytes = (positions + 7) >>> 3;
+        this.follow = new long[bytes * 256 * w];
+        for (int b = 0; b < bytes; b++) {
+
+            for (int value = 1; value < 256; value++) {
+
+                int low = Integer.numberOfTrailingZeros(value);
+                int target = ((b << 8) + value) * w;
+                int rest = ((b << 8) + (value & (value - 1))) * w;
+                int member = (b << 3) + low;
+
+                for (int i = 0; i < w; i++) {
+
+                    this.follow[target + i] = this.follow[rest + i];
+                    if (member < positions)
+                        this.follow[target + i] |= followSets[member * w + i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the positions of a RegEx, the initial one included.
+     *
+     * @param postfix the postfix form of the RegEx
+     * @return the number of positions
+     */
+    static int positions(int[] postfix) {
+
+        int positions = 1;
+        for (int token : postfix) {
+
+            if (token >= 0)
+                positions++;
+        }
+        return positions;
+    }
+
+    /**
+     * Adds a set to the follow set of every member of another set.
+     *
+     * @param followSets the follow sets
+     * @param members the set of positions to update
+     * @param set the set to add
+     * @param w the number of words per set
+     */
+    private static void addToAll(long[] followSets, long[] members,
+            long[] set, int w) {
+
+        for (int i = 0; i < w; i++) {
+
+            long word = members[i];
+            while (word != 0) {
+
+                int member = (i << 6) + Long.numberOfTrailingZeros(word);
+                for (int j = 0; j < w; j++)
+                    followSets[member * w + j] |= set[j];
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Adds a set to another one.
+     *
+     * @param target the set to update
+     * @param set the set to add
+     */
+    private static void or(long[] target, long[] set) {
+
+        for (int i = 0; i < target.length; i++)
+            target[i] |= set[i];
+    }
+
+    /**
+     * Gets the class of a char.
+     *
+     * @param ch the char
+     * @return the class, 0 if the char is not in the alphabet
+     */
+    private int classOf(char ch) {
+
+        return this.symbols.classOf(ch);
+    }
+
+    /**
+     * Runs the input from an index.
+     *
+     * @param input the input
+     * @param from the index to start at
+     * @param shortest stop at the first match
+     * @return the end of the longest (or shortest) match, -1 if none
+     */
+    private int scan(CharSequence input, int from, boolean shortest) {
+
+        if (this.words == 1)
+            return this.scanWord(input, from, shortest);
+
+        int w = this.words;
+        long[] state = new long[w];
+        long[] next = new long[w];
+        state[0] = 1L;
+
+        int end = ((this.last[0] & 1L) != 0) ? from : -1;
+
+        for (int i = from, n = input.length(); i < n; i++) {
+
+            if (end >= 0 && shortest)
+                return end;
+
+            Arrays.fill(next, 0L);
+            for (int b = 0; b < w << 3; b++) {
+
+                int value = (int) (state[b >>> 3] >>> ((b & 7) << 3)) & 0xFF;
+                if (value == 0)
+                    continue;
+
+                int base = ((b << 8) + value) * w;
+                for (int j = 0; j < w; j++)
+                    next[j] |= this.follow[base + j];
+            }
+
+            int mask = this.classOf(input.charAt(i)) * w;
+            boolean alive = false;
+            boolean accepts = false;
+            for (int j = 0; j < w; j++) {
+
+                next[j] &= this.masks[mask + j];
+                alive |= next[j] != 0;
+                accepts |= (next[j] & this.last[j]) != 0;
+            }
+
+            if (!alive)
+                return end;
+            if (accepts)
+                end = i + 1;
+
+            long[] swap = state;
+            state = next;
+            next = swap;
+        }
+        return end;
+    }
+
+    /**
+     * Runs the input from an index, with the positions in a single long.
+     *
+     * @param input the input
+     * @param from the index to start at
+     * @param shortest stop at the first match
+     * @return the end of the longest (or shortest) match, -1 if none
+     */
+    private int scanWord(CharSequence input, int from, boolean shortest) {
+
+        long last = this.last[0];
+        long state = 1L;
+        int end = ((last & 1L) != 0) ? from : -1;
+
+        for (int i = from, n = input.length(); i < n; i++) {
+
+            if (end >= 0 && shortest)
+                return end;
+
+            long next = 0;
+            int base = 0;
+            for (long rest = state; rest != 0; rest >>>= 8, base += 256)
+                next |= this.follow[base + (int) (rest & 0xFF)];
+
+            state = next & this.masks[this.classOf(input.charAt(i))];
+            if (state == 0)
+                return end;
+            if ((state & last) != 0)
+                end = i + 1;
+        }
+        return end;
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+
+        return this.scan(input, 0, false) == input.length();
+    }
+
+    @Override
+    public boolean lookingAt(CharSequence input, int from) {
+
+        return this.scan(input, from, true) >= 0;
+    }
+
+    /**
+     * Runs the input from an index with the initial position added to
+     * the active set at every step up to a cutoff, so that one pass runs
+     * from all the starts up to the cutoff at once.
+     *
+     * @param input the input
+     * @param from the first start
+     * @param cutoff the last start
+     * @return the end of the match which ends first, -1 if no match
+     *         starts in from..cutoff
+     */
+    private int firstEnd(CharSequence input, int from, int cutoff) {
+
+        if (this.words == 1)
+            return this.firstEndWord(input, from, cutoff);
+
+        int w = this.words;
+        long[] state = new long[w];
+        long[] next = new long[w];
+
+        for (int i = from, n = input.length(); ; i++) {
+
+            if (i <= cutoff)
+                state[0] |= 1L;
+
+            boolean alive = false;
+            for (int j = 0; j < w; j++) {
+
+                alive |= state[j] != 0;
+                if ((state[j] & this.last[j]) != 0)
+                    return i;
+            }
+            if (i == n || !alive)
+                return -1;
+
+            Arrays.fill(next, 0L);
+            for (int b = 0; b < w << 3; b++) {
+
+                int value = (int) (state[b >>> 3] >>> ((b & 7) << 3)) & 0xFF;
+                if (value == 0)
+                    continue;
+
+                int base = ((b << 8) + value) * w;
+                for (int j = 0; j < w; j++)
+                    next[j] |= this.follow[base + j];
+            }
+
+            int mask = this.classOf(input.charAt(i)) * w;
+            for (int j = 0; j < w; j++)
+                next[j] &= this.masks[mask + j];
+
+            long[] swap = state;
+            state = next;
+            next = swap;
+        }
+    }
+
+    /**
+     * Runs the input like firstEnd, with the positions in a single long.
+     *
+     * @param input the input
+     * @param from the first start
+     * @param cutoff the last start
+     * @return the end of the match which ends first, -1 if no match
+     *         starts in from..cutoff
+     */
+    private int firstEndWord(CharSequence input, int from, int cutoff) {
+
+        long last = this.last[0];
+        long state = 0;
+
+        for (int i = from, n = input.length(); ; i++) {
+
+            if (i <= cutoff)
+                state |= 1L;
+            if ((state & last) != 0)
+                return i;
+            if (i == n || state == 0)
+                return -1;
+
+            long next = 0;
+            int base = 0;
+            for (long rest = state; rest != 0; rest >>>= 8, base += 256)
+                next |= this.follow[base + (int) (rest & 0xFF)];
+
+            state = next & this.masks[this.classOf(input.charAt(i))];
+        }
+    }
+
+    @Override
+    public int find(CharSequence input, int from) {
+
+        int n = input.length();
+        if (from > n)
+            return -1;
+
+        /** One pass from all the starts tells where the first match ends. */
+        int end = this.firstEnd(input, from, n);
+        if (end < 0)
+            return -1;
+
+        /** The leftmost start is the least cutoff which still matches. */
+        int low = from;
+        int high = end;
+        while (low < high) {
+
+            int middle = (low + high) >>> 1;
+            if (this.firstEnd(input, from, middle) >= 0)
+                high = middle;
+            else
+                low = middle + 1;
+        }
+        return low;
+    }
+
+    @Override
+    public int matchEnd(CharSequence input, int start) {
+
+        return this.scan(input, start, false);
+    }
+}
@@ -0,0 +1,142 @@
+package core;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The Class BufferedEmitter.
+ * The char buffer of the matrix emitters. Text is collected in one array
+ * and handed to the writer in large blocks, so emitting a cell costs no
+ * call on the writer and allocates nothing.
+ *
+ */
+abstract class BufferedEmitter implements MatrixEmitter {
+
+    /** The size of the buffer, in chars. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The line separator, the same as println. */
+    private static final char[] LINE = System.lineSeparator().toCharArray();
+
+    /** The output. */
+    private final Writer out;
+
+    /** The buffer. */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /** The number of chars in the buffer. */
+    private int length;
+
+    /** The digits of a number, in reverse. */
+    private final char[] digits = new char[10];
+
+    /**
+     * Instantiates a new buffered emitter.
+     *
+     * @param out the output
+     */
+    BufferedEmitter(Writer out) {
+
+        this.out = out;
+    }
+
+    /**
+     * Appends a char.
+     *
+     * @param c the char
+     * @throws IOException if the output fails
+     */
+    final void put(char c) throws IOException {
+
+        if (this.length == this.buffer.length)
+            this.drain();
+        this.buffer[this.length++] = c;
+    }
+
+    /**
+     * Appends chars.
+     *
+     * @param chars the chars
+     * @throws IOException if the output fails
+     */
+    final void put(char[] chars) throws IOException {
+
+        if (chars.length > this.buffer.length - this.length) {
+
+            this.drain();
+            if (chars.length > this.buffer.length) {
+
+                this.out.write(chars);
+                return;
+            }
+        }
+        System.arraycopy(chars, 0, this.buffer, this.length, chars.length);
+        this.length += chars.length;
+    }
+
+    /**
+     * Appends a string.
+     *
+     * @param str the string
+     * @throws IOException if the output fails
+     */
+    final void put(String str) throws IOException {
+
+        for (int i = 0; i < str.length(); i++)
+            this.put(str.charAt(i));
+    }
+
+    /**
+     * Appends a number in decimal.
+     *
+     * @param value the number
+     * @throws IOException if the output fails
+     */
+    final void put(int value) throws IOException {
+
+        long rest = value;
+        if (rest < 0) {
+
+            this.put('-');
+            rest = -rest;
+        }
+
+        int count = 0;
+        do {
+
+            this.digits[count++] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+
+        while (count > 0)
+            this.put(this.digits[--count]);
+    }
+
+    /**
+     * Ends a line.
+     *
+     * @throws IOException if the output fails
+     */
+    final void line() throws IOException {
+
+        this.put(LINE);
+    }
+
+    /**
+     * Hands the buffer to the writer.
+     *
+     * @throws IOException if the output fails
+     */
+    private void drain() throws IOException {
+
+        this.out.write(this.buffer, 0, this.length);
+        this.length = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        this.drain();
+        this.out.flush();
+    }
+}
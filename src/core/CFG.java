@@ -1,5 +1,6 @@
 package core;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Map;
@@ -54,12 +55,22 @@ public class CFG {
      */
     public void taskHandler() {
 
+        this.taskHandler(System.out);
+    }
+
+    /**
+     * Task handler, printing to an output.
+     *
+     * @param out the output
+     */
+    public void taskHandler(PrintStream out) {
+
         switch (data.getTask()) {
 
         case PDA:
             /** Make and print the PDA. */
             this.makePDA();
-            this.printPDA();
+            this.printPDA(out);
             break;
 
         default:
@@ -69,49 +80,51 @@ public class CFG {
 
     /**
      * Prints the PDA.
+     *
+     * @param out the output
      */
-    private void printPDA() {
+    private void printPDA(PrintStream out) {
 
-        /**‌ Print the start state. */
-        System.out.println(CFG.stateS);
+        /** Print the start state. */
+        out.println(CFG.stateS);
 
         /** Print the stack initialization. */
-        System.out.println(CFG.dollar);
+        out.println(CFG.dollar);
 
         /** Print the final state. */
-        System.out.println(CFG.stateE);
+        out.println(CFG.stateE);
 
         /** Print the terminals. */
         for (String terminal : this.data.getTerminals()) {
 
-            System.out.print(terminal);
-            System.out.print(CFG.space);
+            out.print(terminal);
+            out.print(CFG.space);
         }
-        System.out.println("");
+        out.println("");
 
         /** Print the stack variables, not all the variables are stack. */
         for (String var : this.stackVariables) {
 
-            System.out.print(var);
-            System.out.print(CFG.space);
+            out.print(var);
+            out.print(CFG.space);
         }
-        System.out.println("");
+        out.println("");
 
         /** Print the states. */
-        System.out.print(CFG.stateS);
-        System.out.print(CFG.space);
-        System.out.print(CFG.stateL);
-        System.out.print(CFG.space);
-        System.out.print(CFG.stateE);
-        System.out.println("");
+        out.print(CFG.stateS);
+        out.print(CFG.space);
+        out.print(CFG.stateL);
+        out.print(CFG.space);
+        out.print(CFG.stateE);
+        out.println("");
 
         /** Print the phrase numbers. */
-        System.out.println(this.PDA.size());
+        out.println(this.PDA.size());
 
         /** Print all the lines. */
         for (String line : PDA) {
 
-            System.out.println(line);
+            out.println(line);
         }
     }
 
@@ -0,0 +1,585 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * The Class ChannelScanner.
+ * A streaming front end which finds every match of a minimum DFA in a
+ * stream of bytes, without decoding it into Strings.
+ *
+ * The minimum DFA is turned into a search DFA, whose states are the sets
+ * of DFA states alive after some input, the start state being always
+ * alive. A search state is accepting if one of its DFA states is, so the
+ * scan reports the end offset of every match, in one pass and one table
+ * lookup per byte. Bytes are the letters 0..255, a letter above 255 can
+ * not match. The DFA state is carried from one buffer to the next, so
+ * matches across buffer boundaries are found.
+ *
+ * A file can also be scanned in parallel chunks. Every chunk is run from
+ * all the states at once, runs which reach the same state being merged,
+ * so that the state at the end of a chunk is known for any state at its
+ * start. The chunks are then stitched in order and every chunk is scanned
+ * again from its real start state, up to where its runs merged. Only a
+ * few chunks per thread are mapped at a time, and the matches of a chunk
+ * are reported as soon as the chunks before it are.
+ *
+ */
+public final class ChannelScanner {
+
+    /** The largest number of search states. */
+    public static final int MAX_STATES = 1 << 16;
+
+    /** The size of the buffer of a channel read. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** The largest window of a mapped file. */
+    static final long MAP_SIZE = 1L << 30;
+
+    /** The smallest chunk of a parallel scan. */
+    static final long MIN_CHUNK = 1L << 20;
+
+    /** The number of chunks per thread of a parallel scan. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The number of chunks per thread in flight in a parallel scan. */
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+
+    /**
+     * The transitions, state * 256 + byte. States are kept premultiplied
+     * by 256, so a step is a single lookup.
+     */
+    private final int[] table;
+
+    /** The states from this one on are accepting, premultiplied. */
+    private final int acceptFrom;
+
+    /** The start state, premultiplied. */
+    private final int start;
+
+    /**
+     * Instantiates a new channel scanner.
+     *
+     * @param dfa the minimum DFA, see NFA.createMinimumDFA
+     * @throws IllegalArgumentException if the search DFA has more than
+     *         MAX_STATES states
+     */
+    public ChannelScanner(DFA dfa) {
+
+        this(dfa.compile());
+    }
+
+    /**
+     * Instantiates a new channel scanner.
+     *
+     * @param dfa the compiled minimum DFA, see NFA.compile
+     * @throws IllegalArgumentException if the search DFA has more than
+     *         MAX_STATES states
+     */
+    public ChannelScanner(CompiledAutomaton dfa) {
+
+        CompactTransitionMatrix min = dfa.getMatrix();
+        int rows = min.stateCount();
+        int letters = min.symbolCount();
+        int[] dense = min.toDense();
+        SymbolClasses symbols = SymbolClasses.of(min, dfa.getLetters());
+        int classes = symbols.count();
+        int startRow = min.row(dfa.getStartState());
+
+        boolean[] isFinal = new boolean[rows];
+        for (int row = 0; row < rows; row++)
+            isFinal[row] = dfa.isFinal(min.stateId(row));
+
+        /**
+         * The class of every byte, 0 for bytes out of the alphabet. The
+         * subsets are built per class, the table stays indexed by byte
+         * so that a step is a single lookup.
+         */
+        int[] classOf = new int[256];
+        for (int b = 0; b < 256; b++)
+            classOf[b] = symbols.classOf(b);
+
+        /** Subset construction, every subset holds the start row. */
+        HashMap<BitSet, Integer> index = new HashMap<BitSet, Integer>();
+        ArrayList<BitSet> subsets = new ArrayList<BitSet>();
+        ArrayList<int[]> transitions = new ArrayList<int[]>();
+
+        BitSet first = new BitSet(rows);
+        first.set(startRow);
+        index.put(first, 0);
+        subsets.add(first);
+
+        for (int current = 0; current < subsets.size(); current++) {
+
+            BitSet subset = subsets.get(current);
+            int[] row = new int[classes];
+
+            for (int cls = 0; cls < classes; cls++) {
+
+                BitSet next = new BitSet(rows);
+                next.set(startRow);
+
+                if (cls > 0) {
+
+                    for (int state = subset.nextSetBit(0); state >= 0;
+                            state = subset.nextSetBit(state + 1)) {
+
+                        int target = dense[state * letters
+                                + symbols.column(cls)];
+                        if (target >= 0)
+                            next.set(target);
+                    }
+                }
+
+                Integer known = index.get(next);
+                if (known == null) {
+
+                    if (subsets.size() == MAX_STATES)
+                        throw new IllegalArgumentException("Search DFA has "
+                                + "more than " + MAX_STATES + " states");
+
+                    known = subsets.size();
+                    index.put(next, known);
+                    subsets.add(next);
+                }
+                row[cls] = known;
+            }
+            transitions.add(row);
+        }
+
+        /** Number the accepting states last. */
+        int count = subsets.size();
+        int[] names = new int[count];
+        int name = 0;
+        int nonAccepting = 0;
+        for (int pass = 0; pass < 2; pass++) {
+
+            for (int state = 0; state < count; state++) {
+
+                boolean accepting = false;
+                BitSet subset = subsets.get(state);
+                for (int s = subset.nextSetBit(0); s >= 0 && !accepting;
+                        s = subset.nextSetBit(s + 1))
+                    accepting = isFinal[s];
+
+                if (accepting == (pass == 1))
+                    names[state] = name++;
+            }
+
+            if (pass == 0)
+                nonAccepting = name;
+        }
+        this.acceptFrom = nonAccepting << 8;
+
+        this.table = new int[count << 8];
+        for (int state = 0; state < count; state++) {
+
+            int[] row = transitions.get(state);
+            for (int b = 0; b < 256; b++)
+                this.table[(names[state] << 8) | b] =
+                        names[row[classOf[b]]] << 8;
+        }
+        this.start = names[0] << 8;
+    }
+
+    /**
+     * Gets the number of states of the search DFA.
+     *
+     * @return the number of states
+     */
+    public int stateCount() {
+
+        return this.table.length >>> 8;
+    }
+
+    /**
+     * Scans the remaining bytes of a buffer, leaving its position as is.
+     * Buffers without an array, direct or mapped, are copied to the heap
+     * in bulk first, which is much faster than reading them byte by byte.
+     *
+     * @param buffer the buffer
+     * @param state the state before the buffer
+     * @param offset the stream offset of the buffer position
+     * @param ends receives the stream offset of the end of every match
+     * @return the state after the buffer
+     */
+    int feed(ByteBuffer buffer, int state, long offset, LongConsumer ends) {
+
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        if (buffer.hasArray()) {
+
+            int shift = buffer.arrayOffset();
+            return this.feed(buffer.array(), shift + position, shift + limit,
+                    state, offset - shift - position, ends);
+        }
+
+        byte[] chunk = new byte[Math.min(BUFFER_SIZE, limit - position)];
+        for (int i = position; i < limit; i += chunk.length) {
+
+            int length = Math.min(chunk.length, limit - i);
+            buffer.get(i, chunk, 0, length);
+            state = this.feed(chunk, 0, length, state,
+                    offset + i - position, ends);
+        }
+        return state;
+    }
+
+    /**
+     * Scans a range of bytes.
+     *
+     * @param bytes the bytes
+     * @param from the first byte
+     * @param to the byte after the last one
+     * @param state the state before the bytes
+     * @param base the stream offset of bytes[0]
+     * @param ends receives the stream offset of the end of every match
+     * @return the state after the bytes
+     */
+    private int feed(byte[] bytes, int from, int to, int state, long base,
+            LongConsumer ends) {
+
+        int[] table = this.table;
+        int acceptFrom = this.acceptFrom;
+
+        for (int i = from; i < to; i++) {
+
+            state = table[state | (bytes[i] & 0xFF)];
+            if (state >= acceptFrom)
+                ends.accept(base + i + 1);
+        }
+        return state;
+    }
+
+    /**
+     * Scans a channel by reading it into a buffer.
+     *
+     * @param channel the channel
+     * @param ends receives the offset of the end of every match
+     * @return the number of bytes scanned
+     * @throws IOException if the channel can not be read
+     */
+    public long scan(ReadableByteChannel channel, LongConsumer ends)
+            throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        int state = this.start;
+        long offset = 0;
+
+        if (this.start >= this.acceptFrom)
+            ends.accept(0);
+
+        while (channel.read(buffer) >= 0) {
+
+            buffer.flip();
+            state = this.feed(buffer, state, offset, ends);
+            offset += buffer.remaining();
+            buffer.clear();
+        }
+        return offset;
+    }
+
+    /**
+     * Scans a file by mapping it into memory, one window at a time.
+     *
+     * @param channel the file channel
+     * @param ends receives the offset of the end of every match
+     * @return the number of bytes scanned
+     * @throws IOException if the file can not be mapped
+     */
+    public long scanMapped(FileChannel channel, LongConsumer ends)
+            throws IOException {
+
+        long size = channel.size();
+        int state = this.start;
+
+        if (this.start >= this.acceptFrom)
+            ends.accept(0);
+
+        for (long offset = 0; offset < size; offset += MAP_SIZE) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                    offset, Math.min(MAP_SIZE, size - offset));
+            state = this.feed(buffer, state, offset, ends);
+        }
+        return size;
+    }
+
+    /**
+     * Scans a file in parallel chunks, see the class comment. The matches
+     * are reported in order, chunk after chunk.
+     *
+     * @param channel the file channel
+     * @param ends receives the offset of the end of every match
+     * @param threads the number of worker threads
+     * @return the number of bytes scanned
+     * @throws IOException if the file can not be mapped
+     */
+    public long scanParallel(FileChannel channel, LongConsumer ends,
+            int threads) throws IOException {
+
+        long chunkSize = channel.size()
+                / ((long) Math.max(1, threads) * CHUNKS_PER_THREAD);
+
+        return this.scanParallel(channel, ends, threads,
+                Math.max(MIN_CHUNK, Math.min(MAP_SIZE, chunkSize)));
+    }
+
+    /**
+     * Scans a file in parallel chunks of a given size.
+     * A chunk is mapped and its runs are started when it enters the
+     * window of chunks in flight. It is stitched once its runs and those
+     * of the chunks before it are done, then scanned again, and it leaves
+     * the window once its matches are reported.
+     *
+     * @param channel the file channel
+     * @param ends receives the offset of the end of every match
+     * @param threads the number of worker threads
+     * @param chunkSize the size of a chunk, at most MAP_SIZE
+     * @return the number of bytes scanned
+     * @throws IOException if the file can not be mapped
+     * @throws IllegalArgumentException if the chunk size is not between 1
+     *         and MAP_SIZE
+     */
+    public long scanParallel(FileChannel channel, LongConsumer ends,
+            int threads, long chunkSize) throws IOException {
+
+        if (chunkSize < 1 || chunkSize > MAP_SIZE)
+            throw new IllegalArgumentException("Chunk size out of range: "
+                    + chunkSize);
+
+        long size = channel.size();
+        int window = Math.max(1, threads) * IN_FLIGHT_PER_THREAD;
+
+        if (this.start >= this.acceptFrom)
+            ends.accept(0);
+
+        /** The chunks in flight, not stitched yet and being scanned again. */
+        ArrayDeque<Chunk> running = new ArrayDeque<Chunk>();
+        ArrayDeque<Chunk> stitched = new ArrayDeque<Chunk>();
+        int state = this.start;
+        long offset = 0;
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            while (offset < size || !running.isEmpty()
+                    || !stitched.isEmpty()) {
+
+                while (running.size() + stitched.size() < window
+                        && offset < size) {
+
+                    Chunk chunk = new Chunk(channel.map(
+                            FileChannel.MapMode.READ_ONLY, offset,
+                            Math.min(chunkSize, size - offset)), offset);
+                    chunk.task = pool.submit(chunk::speculate);
+                    running.add(chunk);
+                    offset += chunkSize;
+                }
+
+                /**
+                 * Stitch the chunks whose runs are done, in order, and wait
+                 * for runs only if no chunk can be reported.
+                 */
+                while (!running.isEmpty() && (stitched.isEmpty()
+                        || running.peek().task.isDone())) {
+
+                    Chunk chunk = running.poll();
+                    chunk.task.join();
+                    chunk.entry = state;
+                    state = chunk.exit(state);
+                    chunk.task = pool.submit(chunk::rescan);
+                    stitched.add(chunk);
+                }
+
+                Chunk chunk = stitched.poll();
+                chunk.task.join();
+                chunk.report(ends);
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return size;
+    }
+
+    /**
+     * The Class Chunk.
+     * A chunk of a parallel scan.
+     */
+    private final class Chunk {
+
+        /** The mapped bytes, null once the matches are reported. */
+        private MappedByteBuffer buffer;
+
+        /** The stream offset of the first byte. */
+        private final long offset;
+
+        /** The distinct states of the runs, the first ones in use. */
+        private int[] lanes;
+
+        /** The lane of the run from every state. */
+        private int[] laneOf;
+
+        /** The stream offset where all the runs merged. */
+        private long merged;
+
+        /** The real state at the start. */
+        private int entry;
+
+        /** The matches before the runs merged. */
+        private LongStream.Builder head;
+
+        /** The matches after the runs merged. */
+        private LongStream.Builder tail;
+
+        /** The runs, or the scan again once the chunk is stitched. */
+        private ForkJoinTask<?> task;
+
+        /**
+         * Instantiates a new chunk.
+         *
+         * @param buffer the mapped bytes
+         * @param offset the stream offset of the first byte
+         */
+        Chunk(MappedByteBuffer buffer, long offset) {
+
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /**
+         * Runs the chunk from all the states, merging the runs which
+         * reach the same state. Once one run is left, its matches are
+         * the real ones.
+         */
+        void speculate() {
+
+            int[] table = ChannelScanner.this.table;
+            int states = ChannelScanner.this.stateCount();
+            int length = this.buffer.limit();
+
+            this.lanes = new int[states];
+            this.laneOf = new int[states];
+            for (int state = 0; state < states; state++) {
+
+                this.lanes[state] = state << 8;
+                this.laneOf[state] = state;
+            }
+
+            int[] lanes = this.lanes;
+            int count = states;
+            int[] slot = new int[states];
+            int[] remap = new int[states];
+            Arrays.fill(slot, -1);
+
+            this.merged = -1;
+            this.tail = LongStream.builder();
+            byte[] bytes = new byte[Math.min(BUFFER_SIZE, length)];
+
+            for (int i = 0; i < length; i += bytes.length) {
+
+                int piece = Math.min(bytes.length, length - i);
+                this.buffer.get(i, bytes, 0, piece);
+
+                int j = 0;
+                while (count > 1 && j < piece) {
+
+                    int b = bytes[j++] & 0xFF;
+                    int distinct = 0;
+                    for (int lane = 0; lane < count; lane++) {
+
+                        int next = table[lanes[lane] | b];
+                        int name = next >>> 8;
+                        if (slot[name] < 0) {
+
+                            slot[name] = distinct;
+                            lanes[distinct++] = next;
+                        }
+                        remap[lane] = slot[name];
+                    }
+
+                    for (int lane = 0; lane < distinct; lane++)
+                        slot[lanes[lane] >>> 8] = -1;
+
+                    if (distinct < count) {
+
+                        for (int state = 0; state < states; state++)
+                            this.laneOf[state] = remap[this.laneOf[state]];
+                        count = distinct;
+                    }
+                }
+
+                if (count == 1) {
+
+                    if (this.merged < 0)
+                        this.merged = this.offset + i + j;
+
+                    lanes[0] = ChannelScanner.this.feed(bytes, j, piece,
+                            lanes[0], this.offset + i, this.tail);
+                }
+            }
+
+            if (this.merged < 0)
+                this.merged = this.offset + length;
+        }
+
+        /**
+         * Gets the state at the end of the chunk.
+         *
+         * @param state the state at the start
+         * @return the state at the end
+         */
+        int exit(int state) {
+
+            return this.lanes[this.laneOf[state >>> 8]];
+        }
+
+        /**
+         * Scans the chunk from the real start state up to where the runs
+         * merged.
+         */
+        void rescan() {
+
+            int length = (int) (this.merged - this.offset);
+            byte[] bytes = new byte[Math.min(BUFFER_SIZE, length)];
+            int state = this.entry;
+
+            this.head = LongStream.builder();
+            for (int i = 0; i < length; i += bytes.length) {
+
+                int piece = Math.min(bytes.length, length - i);
+                this.buffer.get(i, bytes, 0, piece);
+                state = ChannelScanner.this.feed(bytes, 0, piece, state,
+                        this.offset + i, this.head);
+            }
+        }
+
+        /**
+         * Reports the matches of the chunk in order and drops the chunk.
+         *
+         * @param ends receives the offset of the end of every match
+         */
+        void report(LongConsumer ends) {
+
+            this.head.build().forEach(ends);
+            this.tail.build().forEach(ends);
+
+            this.buffer = null;
+            this.head = null;
+            this.tail = null;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The Class CompactTransitionMatrix.
+ * This class is a primitive, array backed form of a state transition
+ * matrix. Rows are indexed by state and symbol and the target sets of
+ * all cells are packed into a single array in CSR (compressed sparse
+ * row) form, so no boxed Integer or nested list is involved.
+ *
+ * Targets are stored as row indices, the original state names are kept
+ * in a separate array and are only used when converting back.
+ *
+ */
+public final class CompactTransitionMatrix {
+
+    /** The letters of the alphabet in column order, epsilon included. */
+    private final int[] alphabet;
+
+    /** The state name of each row. */
+    private final int[] stateIds;
+
+    /** The first target index of each cell, one extra entry at the end. */
+    private final int[] offsets;
+
+    /** The target rows of all cells. */
+    private final int[] targets;
+
+    /** Maps a state name to its row, -1 if the state is unknown. */
+    private final int[] rowOf;
+
+    /** Maps a letter + 1 to its column, -1 if the letter is unknown. */
+    private final int[] columnOf;
+
+    /**
+     * Instantiates a new compact transition matrix.
+     *
+     * @param alphabet the letters in column order
+     * @param stateIds the state name of each row
+     * @param offsets the CSR offsets, of length rows * letters + 1
+     * @param targets the CSR target rows
+     */
+    public CompactTransitionMatrix(int[] alphabet, int[] stateIds,
+            int[] offsets, int[] targets) {
+
+        this.alphabet = alphabet;
+        this.stateIds = stateIds;
+        this.offsets = offsets;
+        this.targets = targets;
+
+        int maxState = 0;
+        for (int id : stateIds)
+            maxState = Math.max(maxState, id);
+
+        this.rowOf = new int[maxState + 1];
+        Arrays.fill(this.rowOf, -1);
+        for (int row = 0; row < stateIds.length; row++)
+            this.rowOf[stateIds[row]] = row;
+
+        int maxLetter = 0;
+        for (int letter : alphabet)
+            maxLetter = Math.max(maxLetter, letter);
+
+        this.columnOf = new int[maxLetter + 2];
+        Arrays.fill(this.columnOf, -1);
+        for (int column = 0; column < alphabet.length; column++)
+            this.columnOf[alphabet[column] + 1] = column;
+    }
+
+    /**
+     * Builds the compact form of a state transition matrix.
+     * Every state column must be named by a single state number.
+     *
+     * @param stmat the input state transition matrix
+     * @return the compact transition matrix
+     * @throws IllegalArgumentException if a target is not a state
+     */
+    public static CompactTransitionMatrix of(StateTransitionMatrix stmat) {
+
+        ArrayList<ArrayList<Integer>> alphabetColumn = stmat.get(0);
+
+        /** Skip the leading 0 of the alphabet column. */
+        int letters = alphabetColumn.size() - 1;
+        int rows = stmat.size() - 1;
+
+        int[] alphabet = new int[letters];
+        for (int column = 0; column < letters; column++)
+            alphabet[column] = alphabetColumn.get(column + 1).get(0);
+
+        int[] stateIds = new int[rows];
+        int edges = 0;
+        for (int row = 0; row < rows; row++) {
+
+            ArrayList<ArrayList<Integer>> col = stmat.get(row + 1);
+            stateIds[row] = col.get(0).get(0);
+
+            for (int column = 1; column < col.size(); column++)
+                edges += col.get(column).size();
+        }
+
+        int[] offsets = new int[rows * letters + 1];
+        int[] targets = new int[edges];
+        int index = 0;
+        for (int row = 0; row < rows; row++) {
+
+            ArrayList<ArrayList<Integer>> col = stmat.get(row + 1);
+
+            for (int column = 0; column < letters; column++) {
+
+                offsets[row * letters + column] = index;
+                for (Integer state : col.get(column + 1))
+                    targets[index++] = state;
+            }
+        }
+        offsets[rows * letters] = index;
+
+        CompactTransitionMatrix matrix = new CompactTransitionMatrix(
+                alphabet, stateIds, offsets, targets);
+
+        /** The targets are state names so far, the rows are known now. */
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = matrix.row(targets[i]);
+
+        return matrix;
+    }
+
+    /**
+     * Converts back to a state transition matrix.
+     * Printing the result gives the same output as the original matrix.
+     *
+     * @return the state transition matrix
+     */
+    public StateTransitionMatrix toMatrix() {
+
+        StateTransitionMatrix stmat = new StateTransitionMatrix();
+        ArrayList<ArrayList<Integer>> column =
+                new ArrayList<ArrayList<Integer>>();
+        ArrayList<Integer> cell = new ArrayList<Integer>();
+
+        cell.add(0);
+        column.add(cell);
+        for (int letter : this.alphabet) {
+
+            cell = new ArrayList<Integer>();
+            cell.add(letter);
+            column.add(cell);
+        }
+        stmat.add(column);
+
+        for (int row = 0; row < this.stateIds.length; row++) {
+
+            column = new ArrayList<ArrayList<Integer>>();
+            cell = new ArrayList<Integer>();
+            cell.add(this.stateIds[row]);
+            column.add(cell);
+
+            for (int symbol = 0; symbol < this.alphabet.length; symbol++) {
+
+                cell = new ArrayList<Integer>();
+                for (int i = this.start(row, symbol);
+                        i < this.end(row, symbol); i++)
+                    cell.add(this.stateIds[this.targets[i]]);
+                column.add(cell);
+            }
+            stmat.add(column);
+        }
+
+        return stmat;
+    }
+
+    /**
+     * Gets the number of states (rows).
+     *
+     * @return the state count
+     */
+    public int stateCount() {
+
+        return this.stateIds.length;
+    }
+
+    /**
+     * Gets the number of letters, epsilon included.
+     *
+     * @return the symbol count
+     */
+    public int symbolCount() {
+
+        return this.alphabet.length;
+    }
+
+    /**
+     * Gets the letter of a column.
+     *
+     * @param column the column
+     * @return the letter
+     */
+    public int letter(int column) {
+
+        return this.alphabet[column];
+    }
+
+    /**
+     * Gets the column of a letter.
+     *
+     * @param letter the letter
+     * @return the column, -1 if the letter is not in the alphabet
+     */
+    public int column(int letter) {
+
+        if (letter + 1 < 0 || letter + 1 >= this.columnOf.length)
+            return -1;
+
+        return this.columnOf[letter + 1];
+    }
+
+    /**
+     * Gets the state name of a row.
+     *
+     * @param row the row
+     * @return the state name
+     */
+    public int stateId(int row) {
+
+        return this.stateIds[row];
+    }
+
+    /**
+     * Gets the row of a state name.
+     *
+     * @param state the state name
+     * @return the row
+     * @throws IllegalArgumentException if the state is unknown
+     */
+    public int row(int state) {
+
+        int row = (state < 0 || state >= this.rowOf.length) ? -1
+                : this.rowOf[state];
+        if (row < 0)
+            throw new IllegalArgumentException("Unknown state: " + state);
+
+        return row;
+    }
+
+    /**
+     * Gets the first target index of a cell.
+     *
+     * @param row the row
+     * @param column the column
+     * @return the start index into the targets
+     */
+    public int start(int row, int column) {
+
+        return this.offsets[row * this.alphabet.length + column];
+    }
+
+    /**
+     * Gets the index after the last target of a cell.
+     *
+     * @param row the row
+     * @param column the column
+     * @return the end index into the targets
+     */
+    public int end(int row, int column) {
+
+        return this.offsets[row * this.alphabet.length + column + 1];
+    }
+
+    /**
+     * Gets a target row.
+     *
+     * @param index the index, between start and end of a cell
+     * @return the target row
+     */
+    public int target(int index) {
+
+        return this.targets[index];
+    }
+
+    /**
+     * Gets the number of transitions of the whole matrix.
+     *
+     * @return the edge count
+     */
+    public int edgeCount() {
+
+        return this.targets.length;
+    }
+
+    /**
+     * Checks whether every cell has at most one target.
+     *
+     * @return true, if the matrix is deterministic
+     */
+    public boolean isDeterministic() {
+
+        for (int i = 0; i < this.offsets.length - 1; i++) {
+
+            if (this.offsets[i + 1] - this.offsets[i] > 1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds the dense table of a deterministic matrix.
+     * The target of row r and column c is at r * symbolCount() + c,
+     * -1 stands for an empty cell.
+     *
+     * @return the dense transition table
+     */
+    public int[] toDense() {
+
+        int[] dense = new int[this.offsets.length - 1];
+
+        for (int i = 0; i < dense.length; i++) {
+
+            if (this.offsets[i] == this.offsets[i + 1])
+                dense[i] = -1;
+            else
+                dense[i] = this.targets[this.offsets[i]];
+        }
+        return dense;
+    }
+}
@@ -0,0 +1,30 @@
+package core;
+
+/**
+ * The Enum CompileCounter.
+ * This Enum lists the structural counts taken while compiling a RegEx,
+ * see CompileMetrics.
+ */
+public enum CompileCounter {
+
+    /** The states of the NFA. */
+    NFA_STATES,
+
+    /** The transitions of the NFA on letters. */
+    NFA_EDGES,
+
+    /** The epsilon transitions of the NFA. */
+    EPSILON_EDGES,
+
+    /** The subsets found by the subset construction. */
+    DFA_SUBSETS,
+
+    /**
+     * The refinement rounds of the minimization: the partitionings of
+     * MOORE and PARALLEL, the splitters of HOPCROFT.
+     */
+    REFINEMENT_ROUNDS,
+
+    /** The blocks of the final partition, the states of the minimum DFA. */
+    MIN_BLOCKS
+}
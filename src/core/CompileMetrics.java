@@ -0,0 +1,462 @@
+package core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The Class CompileMetrics.
+ * Records the cost of every stage of the RegEx to minimum DFA pipeline,
+ * wall time and allocated bytes, together with structural counts of the
+ * automata, see CompileStage and CompileCounter.
+ *
+ * The metrics are global to the JVM and thread safe. They are read as an
+ * immutable Snapshot, which can be taken before and after compiling a
+ * rule to get the cost of that rule, or through JMX once registerMBean is
+ * called. Allocated bytes are counted by the allocation counter of the
+ * thread, and stay 0 on JVMs without one.
+ *
+ */
+public final class CompileMetrics {
+
+    /** The name of the MBean. */
+    public static final String MBEAN_NAME =
+            "automata_theory:type=CompileMetrics";
+
+    /** The number of stages. */
+    private static final int STAGES = CompileStage.values().length;
+
+    /** The number of counters. */
+    private static final int COUNTERS = CompileCounter.values().length;
+
+    /** The runs of every stage. */
+    private static final LongAdder[] RUNS = CompileMetrics.adders(STAGES);
+
+    /** The wall time of every stage, in ns. */
+    private static final LongAdder[] NANOS = CompileMetrics.adders(STAGES);
+
+    /** The allocated bytes of every stage. */
+    private static final LongAdder[] BYTES = CompileMetrics.adders(STAGES);
+
+    /** The sum of every counter. */
+    private static final LongAdder[] TOTALS =
+            CompileMetrics.adders(COUNTERS);
+
+    /** The last value of every counter. */
+    private static final AtomicLongArray LAST = new AtomicLongArray(COUNTERS);
+
+    /** The allocation counter of the threads, null if there is none. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+            CompileMetrics.allocationCounter();
+
+    /** Whether the metrics are recorded. */
+    private static volatile boolean enabled = true;
+
+    /**
+     * Instantiates new compile metrics.
+     */
+    private CompileMetrics() {
+
+    }
+
+    /**
+     * Creates adders.
+     *
+     * @param count the number of adders
+     * @return the adders
+     */
+    private static LongAdder[] adders(int count) {
+
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /**
+     * Gets the allocation counter of the threads.
+     *
+     * @return the counter, null if the JVM has none
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+
+        com.sun.management.ThreadMXBean counter =
+                (com.sun.management.ThreadMXBean) threads;
+        if (!counter.isThreadAllocatedMemorySupported()
+                || !counter.isThreadAllocatedMemoryEnabled())
+            return null;
+        return counter;
+    }
+
+    /**
+     * Checks whether the metrics are recorded.
+     *
+     * @return true, if enabled
+     */
+    public static boolean isEnabled() {
+
+        return CompileMetrics.enabled;
+    }
+
+    /**
+     * Turns the recording on or off.
+     *
+     * @param enabled true to record
+     */
+    public static void setEnabled(boolean enabled) {
+
+        CompileMetrics.enabled = enabled;
+    }
+
+    /**
+     * Reads the clock at the start of a stage.
+     *
+     * @return the time in ns, 0 if the metrics are off
+     */
+    static long startNanos() {
+
+        return CompileMetrics.enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Reads the allocation counter at the start of a stage.
+     *
+     * @return the allocated bytes of the thread, 0 if the metrics are off
+     */
+    static long startBytes() {
+
+        return (CompileMetrics.enabled && THREADS != null) ?
+                THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Records a run of a stage.
+     *
+     * @param stage the stage
+     * @param startNanos the time at the start, see startNanos
+     * @param startBytes the allocated bytes at the start, see startBytes
+     */
+    static void record(CompileStage stage, long startNanos, long startBytes) {
+
+        if (!CompileMetrics.enabled)
+            return;
+
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = (THREADS != null) ?
+                THREADS.getCurrentThreadAllocatedBytes() - startBytes : 0;
+
+        RUNS[stage.ordinal()].increment();
+        NANOS[stage.ordinal()].add(nanos);
+        BYTES[stage.ordinal()].add(Math.max(bytes, 0));
+    }
+
+    /**
+     * Records a structural count.
+     *
+     * @param counter the counter
+     * @param value the count
+     */
+    static void count(CompileCounter counter, long value) {
+
+        if (!CompileMetrics.enabled)
+            return;
+
+        TOTALS[counter.ordinal()].add(value);
+        LAST.set(counter.ordinal(), value);
+    }
+
+    /**
+     * Takes a snapshot of the metrics.
+     *
+     * @return the snapshot
+     */
+    public static Snapshot snapshot() {
+
+        long[] runs = new long[STAGES];
+        long[] nanos = new long[STAGES];
+        long[] bytes = new long[STAGES];
+        for (int i = 0; i < STAGES; i++) {
+
+            runs[i] = RUNS[i].sum();
+            nanos[i] = NANOS[i].sum();
+            bytes[i] = BYTES[i].sum();
+        }
+
+        long[] totals = new long[COUNTERS];
+        long[] last = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) {
+
+            totals[i] = TOTALS[i].sum();
+            last[i] = LAST.get(i);
+        }
+        return new Snapshot(runs, nanos, bytes, totals, last);
+    }
+
+    /**
+     * Sets every stage and counter back to 0.
+     */
+    public static void reset() {
+
+        for (int i = 0; i < STAGES; i++) {
+
+            RUNS[i].reset();
+            NANOS[i].reset();
+            BYTES[i].reset();
+        }
+        for (int i = 0; i < COUNTERS; i++) {
+
+            TOTALS[i].reset();
+            LAST.set(i, 0);
+        }
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server, once.
+     *
+     * @return the name of the MBean
+     * @throws JMException if the MBean can not be registered
+     */
+    public static synchronized ObjectName registerMBean()
+            throws JMException {
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MBEAN_NAME);
+
+        if (!server.isRegistered(name))
+            server.registerMBean(new Bean(), name);
+        return name;
+    }
+
+    /**
+     * The Class Snapshot.
+     * The metrics at some point, which do not change.
+     */
+    public static final class Snapshot {
+
+        /** The runs of every stage. */
+        private final long[] runs;
+
+        /** The wall time of every stage, in ns. */
+        private final long[] nanos;
+
+        /** The allocated bytes of every stage. */
+        private final long[] bytes;
+
+        /** The sum of every counter. */
+        private final long[] totals;
+
+        /** The last value of every counter. */
+        private final long[] last;
+
+        /**
+         * Instantiates a new snapshot.
+         *
+         * @param runs the runs of every stage
+         * @param nanos the wall time of every stage
+         * @param bytes the allocated bytes of every stage
+         * @param totals the sum of every counter
+         * @param last the last value of every counter
+         */
+        Snapshot(long[] runs, long[] nanos, long[] bytes, long[] totals,
+                long[] last) {
+
+            this.runs = runs;
+            this.nanos = nanos;
+            this.bytes = bytes;
+            this.totals = totals;
+            this.last = last;
+        }
+
+        /**
+         * Gets the metrics recorded since an earlier snapshot. The last
+         * values of the counters are the ones of this snapshot.
+         *
+         * @param earlier the earlier snapshot
+         * @return the difference
+         */
+        public Snapshot since(Snapshot earlier) {
+
+            return new Snapshot(Snapshot.minus(this.runs, earlier.runs),
+                    Snapshot.minus(this.nanos, earlier.nanos),
+                    Snapshot.minus(this.bytes, earlier.bytes),
+                    Snapshot.minus(this.totals, earlier.totals),
+                    this.last.clone());
+        }
+
+        /**
+         * Subtracts two arrays.
+         *
+         * @param x the first array
+         * @param y the second array
+         * @return x - y
+         */
+        private static long[] minus(long[] x, long[] y) {
+
+            long[] z = new long[x.length];
+            for (int i = 0; i < z.length; i++)
+                z[i] = x[i] - y[i];
+            return z;
+        }
+
+        /**
+         * Gets the number of runs of a stage.
+         *
+         * @param stage the stage
+         * @return the runs
+         */
+        public long getRuns(CompileStage stage) {
+
+            return this.runs[stage.ordinal()];
+        }
+
+        /**
+         * Gets the wall time of a stage.
+         *
+         * @param stage the stage
+         * @return the nanoseconds
+         */
+        public long getNanos(CompileStage stage) {
+
+            return this.nanos[stage.ordinal()];
+        }
+
+        /**
+         * Gets the allocation of a stage.
+         *
+         * @param stage the stage
+         * @return the allocated bytes
+         */
+        public long getBytes(CompileStage stage) {
+
+            return this.bytes[stage.ordinal()];
+        }
+
+        /**
+         * Gets the sum of a counter.
+         *
+         * @param counter the counter
+         * @return the total
+         */
+        public long getTotal(CompileCounter counter) {
+
+            return this.totals[counter.ordinal()];
+        }
+
+        /**
+         * Gets the last value of a counter.
+         *
+         * @param counter the counter
+         * @return the last value
+         */
+        public long getLast(CompileCounter counter) {
+
+            return this.last[counter.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+
+            StringBuilder str = new StringBuilder();
+            for (CompileStage stage : CompileStage.values()) {
+
+                str.append(stage).append(": runs=")
+                        .append(this.getRuns(stage)).append(" ns=")
+                        .append(this.getNanos(stage)).append(" bytes=")
+                        .append(this.getBytes(stage)).append('\n');
+            }
+            for (CompileCounter counter : CompileCounter.values()) {
+
+                str.append(counter).append(": total=")
+                        .append(this.getTotal(counter)).append(" last=")
+                        .append(this.getLast(counter)).append('\n');
+            }
+            return str.toString();
+        }
+    }
+
+    /**
+     * The Class Bean.
+     * The MXBean which reads the metrics.
+     */
+    private static final class Bean implements CompileMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+
+            return CompileMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+
+            CompileMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public Map<String, Long> getStageRuns() {
+
+            return Bean.byStage(RUNS);
+        }
+
+        @Override
+        public Map<String, Long> getStageNanos() {
+
+            return Bean.byStage(NANOS);
+        }
+
+        @Override
+        public Map<String, Long> getStageBytes() {
+
+            return Bean.byStage(BYTES);
+        }
+
+        @Override
+        public Map<String, Long> getCounterTotals() {
+
+            Map<String, Long> map = new LinkedHashMap<String, Long>();
+            for (CompileCounter counter : CompileCounter.values())
+                map.put(counter.name(), TOTALS[counter.ordinal()].sum());
+            return map;
+        }
+
+        @Override
+        public Map<String, Long> getLastCounters() {
+
+            Map<String, Long> map = new LinkedHashMap<String, Long>();
+            for (CompileCounter counter : CompileCounter.values())
+                map.put(counter.name(), LAST.get(counter.ordinal()));
+            return map;
+        }
+
+        @Override
+        public void reset() {
+
+            CompileMetrics.reset();
+        }
+
+        /**
+         * Reads adders by stage.
+         *
+         * @param adders the adders
+         * @return the sums by stage name
+         */
+        private static Map<String, Long> byStage(LongAdder[] adders) {
+
+            Map<String, Long> map = new LinkedHashMap<String, Long>();
+            for (CompileStage stage : CompileStage.values())
+                map.put(stage.name(), adders[stage.ordinal()].sum());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package core;
+
+import java.util.Map;
+
+/**
+ * The Interface CompileMetricsMXBean.
+ * The JMX view of CompileMetrics. Stages and counters are keyed by the
+ * names of CompileStage and CompileCounter.
+ */
+public interface CompileMetricsMXBean {
+
+    /**
+     * Checks whether the metrics are recorded.
+     *
+     * @return true, if enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns the recording on or off.
+     *
+     * @param enabled true to record
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Gets the number of runs of every stage.
+     *
+     * @return the runs by stage
+     */
+    Map<String, Long> getStageRuns();
+
+    /**
+     * Gets the total wall time of every stage.
+     *
+     * @return the nanoseconds by stage
+     */
+    Map<String, Long> getStageNanos();
+
+    /**
+     * Gets the total allocation of every stage.
+     *
+     * @return the allocated bytes by stage
+     */
+    Map<String, Long> getStageBytes();
+
+    /**
+     * Gets the sum of every counter over all compilations.
+     *
+     * @return the totals by counter
+     */
+    Map<String, Long> getCounterTotals();
+
+    /**
+     * Gets the value of every counter in the last compilation.
+     *
+     * @return the last values by counter
+     */
+    Map<String, Long> getLastCounters();
+
+    /**
+     * Sets every stage and counter back to 0.
+     */
+    void reset();
+}
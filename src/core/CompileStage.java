@@ -0,0 +1,21 @@
+package core;
+
+/**
+ * The Enum CompileStage.
+ * This Enum lists the stages of the RegEx to minimum DFA pipeline which
+ * are measured, see CompileMetrics.
+ */
+public enum CompileStage {
+
+    /** Parsing and normalizing a RegEx into its postfix form. */
+    NORMALIZE,
+
+    /** Building the Thompson NFA of the postfix form. */
+    NFA_BUILD,
+
+    /** Building the DFA by the subset construction. */
+    DFA_BUILD,
+
+    /** Minimizing the DFA. */
+    DFA_MIN
+}
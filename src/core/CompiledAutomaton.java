@@ -0,0 +1,220 @@
+package core;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The Class CompiledAutomaton.
+ * An immutable snapshot of a DFA, taken once it is built, see
+ * NFA.compile and DFA.compile.
+ *
+ * Unlike an FSM it has no setters and shares no list with its caller:
+ * the transitions are kept in a CompactTransitionMatrix, the final states
+ * as a bit set over the rows and the pattern IDs as arrays. All fields
+ * are final, so an instance can be published to other threads as is, and
+ * any number of threads can match with it at the same time.
+ *
+ */
+public final class CompiledAutomaton {
+
+    /** The transitions. */
+    private final CompactTransitionMatrix matrix;
+
+    /** The row of the start state. */
+    private final int startRow;
+
+    /** The final rows, a bit per row. */
+    private final long[] finals;
+
+    /** The final state names, in the order of the DFA. */
+    private final int[] finalStates;
+
+    /** The sorted pattern IDs of every row, null if untagged. */
+    private final int[][] tags;
+
+    /** The chars every letter stands for, null if letters are chars. */
+    private final LetterRanges letters;
+
+    /** The table driven matcher. */
+    private final DFAMatcher matcher;
+
+    /**
+     * Instantiates a new compiled automaton.
+     *
+     * @param matrix the compact transition matrix of the DFA
+     * @param startState the start state name
+     * @param finalStates the final state names
+     * @param tags the pattern IDs of every final state, null if the DFA
+     *        is not tagged
+     * @param letters the chars every letter stands for, null if every
+     *        letter is a char of its own
+     */
+    CompiledAutomaton(CompactTransitionMatrix matrix, int startState,
+            ArrayList<Integer> finalStates,
+            HashMap<Integer, ArrayList<Integer>> tags, LetterRanges letters) {
+
+        this.matrix = matrix;
+        this.startRow = matrix.row(startState);
+        this.letters = letters;
+
+        this.finals = new long[(matrix.stateCount() + 63) >>> 6];
+        this.finalStates = new int[finalStates.size()];
+        for (int i = 0; i < this.finalStates.length; i++) {
+
+            int row = matrix.row(finalStates.get(i));
+            this.finals[row >>> 6] |= 1L << row;
+            this.finalStates[i] = finalStates.get(i);
+        }
+
+        if (tags == null)
+            this.tags = null;
+        else {
+
+            this.tags = new int[matrix.stateCount()][];
+            for (Integer state : finalStates) {
+
+                ArrayList<Integer> tag = tags.get(state);
+                int[] ids = new int[tag.size()];
+                for (int i = 0; i < ids.length; i++)
+                    ids[i] = tag.get(i);
+                this.tags[matrix.row(state)] = ids;
+            }
+        }
+
+        this.matcher = new DFAMatcher(matrix, startState, finalStates, tags,
+                letters);
+    }
+
+    /**
+     * Gets the transitions.
+     *
+     * @return the compact transition matrix
+     */
+    public CompactTransitionMatrix getMatrix() {
+
+        return this.matrix;
+    }
+
+    /**
+     * Gets the number of states.
+     *
+     * @return the number of states
+     */
+    public int stateCount() {
+
+        return this.matrix.stateCount();
+    }
+
+    /**
+     * Gets the start state.
+     *
+     * @return the start state name
+     */
+    public int getStartState() {
+
+        return this.matrix.stateId(this.startRow);
+    }
+
+    /**
+     * Checks whether a state is final.
+     *
+     * @param state the state name
+     * @return true, if the state is final
+     */
+    public boolean isFinal(int state) {
+
+        int row = this.matrix.row(state);
+        return (this.finals[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Gets the final states.
+     *
+     * @return a new list of the final state names
+     */
+    public ArrayList<Integer> getFinalStates() {
+
+        ArrayList<Integer> states = new ArrayList<Integer>();
+        for (int state : this.finalStates)
+            states.add(state);
+        return states;
+    }
+
+    /**
+     * Gets the patterns which match in a state.
+     *
+     * @param state the state name
+     * @return the sorted pattern IDs, unmodifiable, empty if the state is
+     *         not final, [0] if the automaton is not tagged
+     */
+    public List<Integer> getTags(int state) {
+
+        if (!this.isFinal(state))
+            return Collections.emptyList();
+        if (this.tags == null)
+            return Collections.singletonList(0);
+
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+        for (int id : this.tags[this.matrix.row(state)])
+            ids.add(id);
+        return Collections.unmodifiableList(ids);
+    }
+
+    /**
+     * Gets the chars every letter stands for.
+     *
+     * @return the letter ranges, null if every letter is a char of its own
+     */
+    public LetterRanges getLetters() {
+
+        return this.letters;
+    }
+
+    /**
+     * Gets the table driven matcher of the automaton, which is shared.
+     *
+     * @return the matcher
+     */
+    public DFAMatcher matcher() {
+
+        return this.matcher;
+    }
+
+    /**
+     * Prints the automaton the same way as the state transition matrix
+     * of the DFA.
+     */
+    public void print() {
+
+        this.print(System.out);
+    }
+
+    /**
+     * Prints the automaton the same way as the state transition matrix
+     * of the DFA.
+     *
+     * @param out the output
+     */
+    public void print(PrintStream out) {
+
+        this.matrix.toMatrix().print(this.getStartState(),
+                this.getFinalStates(), out);
+    }
+
+    /**
+     * Emits the automaton the same way as the state transition matrix
+     * of the DFA.
+     *
+     * @param emitter the emitter
+     * @throws IOException if the output fails
+     */
+    public void print(MatrixEmitter emitter) throws IOException {
+
+        this.matrix.toMatrix().print(this.getStartState(),
+                this.getFinalStates(), emitter);
+    }
+}
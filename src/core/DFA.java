@@ -1,19 +1,26 @@
 package core;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.TreeSet;
 
 /**
  * The Class DFA.
- * TODO: remove min STM.
+ * The subset DFA and the minimum DFA are both kept as compact transition
+ * matrices, their states are named 1..n in row order.
  */
 public class DFA extends FSM {
 
-    /** The minimum DFA state transition matrix. */
-    StateTransitionMatrix minSTM;
+    /** The minimum DFA, null until makeMin is called. */
+    private CompactTransitionMatrix minMatrix;
 
-    /** The NFA state transition matrix. */
-    StateTransitionMatrix nfaSTM;
+    /** The NFA state transition matrix in compact form. */
+    private CompactTransitionMatrix nfaMatrix;
+
+    /** The epsilon closures of all NFA states. */
+    private EpsilonClosure closures;
 
     /** The final states. */
     private ArrayList<Integer> nfaFinalStates;
@@ -21,449 +28,442 @@ public class DFA extends FSM {
     /** The final states. */
     private Integer nfaStartState;
 
+    /** The pattern tags of the NFA final states, null if untagged. */
+    private HashMap<Integer, ArrayList<Integer>> nfaTags;
+
     /**
      * Instantiates a new DFA.
      */
     public DFA() {
 
-        this.stmat = new StateTransitionMatrix();
-        this.minSTM = new StateTransitionMatrix();
         this.finalStates = new ArrayList<Integer>();
     }
 
     /**
      * Builds the DFA of an incoming NFA.
+     * Subsets of NFA states are kept as canonical bit sets in a hash map,
+     * so every subset is looked up in O(1) expected time. Subsets are
+     * explored in the order they are found.
      *
      * @param the input NFA to convert to DFA
      */
     public void build(NFA nfa) {
 
-        this.nfaSTM = nfa.stmat;
+        long nanos = CompileMetrics.startNanos();
+        long bytes = CompileMetrics.startBytes();
+
+        this.nfaMatrix = nfa.getCompactMatrix();
         this.nfaFinalStates = nfa.getFinalStates();
         this.nfaStartState = nfa.getStartState();
+        this.nfaTags = nfa.getTags();
+        this.setLetters(nfa.getLetters());
+
+        /** Precompute all epsilon closures once. */
+        this.closures = new EpsilonClosure(this.nfaMatrix);
+
+        /** The DFA has the letters of the NFA but epsilon. */
+        int epsilon = this.nfaMatrix.column(FSM.epsilon);
+        int letters = this.nfaMatrix.symbolCount() - ((epsilon < 0) ? 0 : 1);
+        int[] symbols = new int[letters];
+        int[] alphabet = new int[letters];
+        for (int column = 0, index = 0; index < letters; column++) {
 
-        /** Initialize the DFA table. */
-        this.initSTM();
-        this.addNewColumn();
+            if (column == epsilon)
+                continue;
+
+            symbols[index] = column;
+            alphabet[index++] = this.nfaMatrix.letter(column);
+        }
+
+        HashMap<BitSet, Integer> subsetIndex = new HashMap<BitSet, Integer>();
+        ArrayList<long[]> subsets = new ArrayList<long[]>();
+        ArrayList<int[]> transitions = new ArrayList<int[]>();
 
         /** Get the first state e-closure. */
-        ArrayList<Integer> visitedStates = new ArrayList<Integer>();
-        ArrayList<Integer> eClosure = this.nfaSTM.
-                getEpsilonClosure(this.nfaSTM.get(1).get(0).get(0),
-                        visitedStates);
-
-        /** Add this as first state in DFA. */
-        this.stmat.get(1).get(0).addAll(eClosure);
-        /** See where the last state added goes, fill its column,
-         * add the new states to state transition matrix as well.
-         */
-        int lastCheckedColumn = 0;
+        long[] nextState = new long[this.closures.words()];
+        this.closures.addClosure(this.nfaMatrix.row(this.nfaStartState),
+                nextState);
+        DFA.intern(nextState, subsetIndex, subsets);
 
-        /** Continue until there is no new state. */
-        while (lastCheckedColumn < this.stmat.size() - 1) {
+        /** The list of subsets is the work queue. */
+        for (int current = 0; current < subsets.size(); current++) {
 
-            /** Increase the last checked number. */
-            lastCheckedColumn++;
+            long[] subset = subsets.get(current);
+            int[] row = new int[letters];
 
-            /** Fill the current column. */
-            this.fillColumnFromNFA(lastCheckedColumn);
+            for (int index = 0; index < letters; index++) {
 
-            /** Check whether a new state is found and add it. */
-            this.addNewStates(lastCheckedColumn);
+                Arrays.fill(nextState, 0L);
+                this.move(subset, symbols[index], nextState);
+                row[index] = DFA.intern(nextState, subsetIndex, subsets);
+            }
+            transitions.add(row);
         }
 
-        /** Set correct final and start states. */
-        this.simplifySTM();
-        LOGGER.info("Simplified STM: " + this.stmat.toString() + "\n" +
+        /** Name the states and set correct final and start states. */
+        this.nameSubsets(alphabet, subsets, transitions);
+        CompileMetrics.record(CompileStage.DFA_BUILD, nanos, bytes);
+        CompileMetrics.count(CompileCounter.DFA_SUBSETS, subsets.size());
+        Trace.event(DFA.class, "build", TraceEvent.SUBSETS_BUILT,
+                subsets.size(), this.getFinalStates().size(),
+                () -> "Simplified STM: "
+                        + this.matrix.toMatrix().toString() + "\n" +
                 "Start state: " + this.getStartState() + "\n" +
                 "Final states: " + this.getFinalStates().toString() + "\n");
     }
 
     /**
-     * Simplify the state transition matrix.
+     * Looks a subset up and adds it if it is new.
      *
-     * @param stm the simplified state transition matrix.
+     * @param subset the subset as bit set of NFA rows
+     * @param subsetIndex the index of all known subsets
+     * @param subsets the known subsets in order of discovery
+     * @return the index of the subset, -1 for the empty subset
      */
-    private void simplifySTM() {
-
-        /** Sort is necessary to avoid collision in state names. */
-        this.stmat = this.sortSTM(this.stmat);
-
-        Integer newName = 1;
-
-        for (ArrayList<ArrayList<Integer>> col : this.stmat) {
-
-            if (col.get(0).get(0) == 0)
-                continue;
-
-            ArrayList<Integer> oldName = new ArrayList<Integer>();
-            oldName.addAll(col.get(0));
-
-            /** Set start state. */
-            if (col.get(0).contains(this.nfaStartState))
-                this.setStartState(newName);
-
-            /** Set final states. */
-            for (Integer finalState : this.nfaFinalStates) {
+    private static int intern(long[] subset, HashMap<BitSet, Integer>
+            subsetIndex, ArrayList<long[]> subsets) {
 
-                if (oldName.contains(finalState)) {
+        BitSet key = BitSet.valueOf(subset);
+        if (key.isEmpty())
+            return -1;
 
-                    this.getFinalStates().add(newName);
-                }
-            }
-
-            /** Change state number in the entire table. */
-            for (ArrayList<ArrayList<Integer>> c : this.stmat) {
-
-                for (ArrayList<Integer> cell : c) {
-
-                    if (cell.equals(oldName)) {
+        Integer index = subsetIndex.get(key);
+        if (index == null) {
 
-                        cell.clear();
-                        cell.add(newName);
-                    }
-                }
-            }
-            newName++;
+            index = subsets.size();
+            subsetIndex.put(key, index);
+            subsets.add(subset.clone());
         }
+        return index;
     }
 
     /**
-     * Sort STM based on single member state names to prevent chaos.
+     * Adds the closures of all targets of a subset on a letter to a set.
      *
-     * Pretty stupid, find a way to remove the naming procedure.
-     * @return
+     * @param subset the subset as bit set of NFA rows
+     * @param symbol the NFA column of the letter
+     * @param nextState receives the closures
      */
-    private StateTransitionMatrix sortSTM(StateTransitionMatrix stm) {
-
-        StateTransitionMatrix newSTM = new StateTransitionMatrix();
-        ArrayList<Integer> singleNumberStates = new ArrayList<Integer>();
-
-        for (ArrayList<ArrayList<Integer>> column : stm) {
-
-            if (column.get(0).get(0) == 0)
-                continue;
-
-            if (column.get(0).size() == 1)
-                singleNumberStates.add(column.get(0).get(0));
-        }
-
-        Collections.sort(singleNumberStates);
-
-        newSTM.add(stm.get(0));
+    private void move(long[] subset, int symbol, long[] nextState) {
 
-        for (Integer item : singleNumberStates) {
+        for (int i = 0; i < subset.length; i++) {
 
-            for (ArrayList<ArrayList<Integer>> column : stm) {
+            long word = subset[i];
+            while (word != 0) {
 
-                if (column.get(0).get(0) == 0)
-                    continue;
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
 
-                if (column.get(0).size() == 1)
-                    if (column.get(0).get(0) == item)
-                        newSTM.add(column);
+                for (int e = this.nfaMatrix.start(row, symbol);
+                        e < this.nfaMatrix.end(row, symbol); e++)
+                    this.closures.addClosure(this.nfaMatrix.target(e),
+                            nextState);
             }
         }
-
-        for (ArrayList<ArrayList<Integer>> column : stm) {
-
-            if (column.get(0).get(0) == 0)
-                continue;
-
-            if (column.get(0).size() != 1)
-                newSTM.add(column);
-        }
-
-        return newSTM;
     }
 
     /**
-     * Simplify the state transition matrix.
+     * Builds the state transition matrix out of the found subsets.
+     * Subsets of a single NFA state come first, sorted by that state,
+     * then all others in order of discovery. States are named 1..n.
      *
-     * @param stm the simplified state transition matrix.
+     * @param alphabet the letters of the DFA
+     * @param subsets the subsets in order of discovery
+     * @param transitions the target subset of every subset and letter
      */
-    private void simplifyMinSTM() {
+    private void nameSubsets(int[] alphabet, ArrayList<long[]> subsets,
+            ArrayList<int[]> transitions) {
 
-        Integer newName = 1;
-        ArrayList<Integer> newFinalStates = new ArrayList<Integer>();
-        Integer newStartState = 0;
+        ArrayList<Integer> singles = new ArrayList<Integer>();
+        ArrayList<Integer> others = new ArrayList<Integer>();
+        int[] singleState = new int[subsets.size()];
+        for (int index = 0; index < subsets.size(); index++) {
 
-        /** Sort is necessary to avoid collision in state names. */
-        this.minSTM = this.sortSTM(this.minSTM);
+            ArrayList<Integer> states = this.toStates(subsets.get(index));
+            singleState[index] = states.get(0);
 
-        for (ArrayList<ArrayList<Integer>> col : this.minSTM) {
+            if (states.size() == 1)
+                singles.add(index);
+            else
+                others.add(index);
+        }
+        singles.sort((x, y) -> Integer.compare(singleState[x],
+                singleState[y]));
 
-            if (col.get(0).get(0) == 0)
-                continue;
+        ArrayList<Integer> order = new ArrayList<Integer>(singles);
+        order.addAll(others);
 
-            ArrayList<Integer> oldName = new ArrayList<Integer>();
-            oldName.addAll(col.get(0));
+        int[] names = new int[subsets.size()];
+        for (int position = 0; position < order.size(); position++)
+            names[order.get(position)] = position + 1;
 
-            /** Update start state. */
-            if (oldName.contains(this.getStartState()))
-                newStartState = newName;
+        long[] nfaFinals = new long[this.closures.words()];
+        for (Integer finalState : this.nfaFinalStates) {
 
-            /** Update the final states set. */
-            for (Integer element : oldName) {
+            int row = this.nfaMatrix.row(finalState);
+            nfaFinals[row >>> 6] |= 1L << row;
+        }
 
-                if (this.getFinalStates().contains(element)) {
+        this.setStartState(names[0]);
+        if (this.nfaTags != null)
+            this.setTags(new HashMap<Integer, ArrayList<Integer>>());
 
-                    newFinalStates.add(newName);
-                    break;
-                }
-            }
+        DFA.Rows rows = new DFA.Rows(order.size(), alphabet.length);
+        for (Integer index : order) {
+
+            long[] subset = subsets.get(index);
 
-            /** Change state number in the entire table. */
-            for (ArrayList<ArrayList<Integer>> c : this.minSTM) {
+            /** Row r is named r + 1. */
+            for (int target : transitions.get(index))
+                rows.add((target < 0) ? -1 : names[target] - 1);
 
-                for (ArrayList<Integer> cell : c) {
+            /** Set final states. */
+            for (int i = 0; i < subset.length; i++) {
 
-                    if (cell.equals(oldName)) {
+                if ((subset[i] & nfaFinals[i]) != 0) {
 
-                        cell.clear();
-                        cell.add(newName);
-                    }
+                    this.getFinalStates().add(names[index]);
+                    if (this.nfaTags != null)
+                        this.getTags().put(names[index],
+                                this.tagsOf(subset, nfaFinals));
+                    break;
                 }
             }
-
-            newName++;
         }
-
-        this.setFinalStates(newFinalStates);
-        this.setStartState(newStartState);
+        this.matrix = rows.toMatrix(alphabet);
     }
 
     /**
-     * Adds the new states to state transition matrix.
+     * Gets the pattern tags of a subset of NFA states.
      *
-     * @param lastCheckedColumn the last checked column
+     * @param subset the subset as bit set of NFA rows
+     * @param nfaFinals the final NFA rows as bit set
+     * @return the sorted pattern IDs of the final states in the subset
      */
-    private void addNewStates(int lastCheckedColumn) {
-
-        ArrayList<ArrayList<Integer>> column =
-                this.stmat.get(lastCheckedColumn);
-
-        ArrayList<ArrayList<Integer>> previousStates =
-                new ArrayList<ArrayList<Integer>>();
+    private ArrayList<Integer> tagsOf(long[] subset, long[] nfaFinals) {
 
-        for (ArrayList<ArrayList<Integer>> col : this.stmat) {
-
-            if (this.stmat.indexOf(col) != 0)
-                previousStates.add(col.get(0));
-        }
+        TreeSet<Integer> tags = new TreeSet<Integer>();
 
-        previousStates.forEach(element -> Collections.sort(element));
-        column.forEach(element -> Collections.sort(element));
+        for (int i = 0; i < subset.length; i++) {
 
-        for (ArrayList<Integer> cell : column) {
+            long word = subset[i] & nfaFinals[i];
+            while (word != 0) {
 
-            if ((!previousStates.contains(cell)) && (!cell.isEmpty())) {
-
-                this.addNewColumn();
-                this.stmat.get(this.stmat.size() - 1).get(0).addAll(cell);
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                tags.addAll(this.nfaTags.get(this.nfaMatrix.stateId(row)));
+                word &= word - 1;
             }
         }
+        return new ArrayList<Integer>(tags);
     }
 
     /**
-     * Fill the column based on NFA state transmission mat.
+     * Converts a bit set of NFA rows to NFA state names.
      *
-     * @param lastCheckedState the last checked state
+     * @param set the bit set of rows
+     * @return the list of states
      */
-    private void fillColumnFromNFA(int lastCheckedColumn) {
-
-        ArrayList<ArrayList<Integer>> column =
-                this.stmat.get(lastCheckedColumn);
-
-        ArrayList<Integer> state = column.get(0);
-        ArrayList<Integer> nextState;
-        ArrayList<Integer> nfaCell = new ArrayList<Integer>();
-        ArrayList<Integer> nfaCellClosure = new ArrayList<Integer>();
-
-        for (ArrayList<Integer> cell : this.stmat.get(0)) {
-
-            if (cell.get(0) == 0)
-                continue;
-
-            nextState = new ArrayList<Integer>();
-
-            for (Integer s : state) {
-
-                nfaCell = StateTransitionMatrix.retrieveCell(this.nfaSTM,
-                        s, cell.get(0));
-
-                for (Integer dstState : nfaCell) {
+    private ArrayList<Integer> toStates(long[] set) {
 
-                    if (!nextState.contains(dstState)) {
+        ArrayList<Integer> states = new ArrayList<Integer>();
 
-                        /** Add the state itself. */
-                        nextState.add(dstState);
+        for (int i = 0; i < set.length; i++) {
 
-                        /** Calculate epsilon closures. */
-                        ArrayList<Integer> visitedStates =
-                                new ArrayList<Integer>();
-                        nfaCellClosure = this.nfaSTM.
-                                getEpsilonClosure(dstState, visitedStates);
+            long word = set[i];
+            while (word != 0) {
 
-                        /** Add closures to next state. */
-                        for (Integer closureState : nfaCellClosure) {
-
-                            if (!nextState.contains(closureState))
-                                nextState.add(closureState);
-                        }
-                    }
-                }
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                states.add(this.nfaMatrix.stateId(row));
+                word &= word - 1;
             }
-            column.get(this.stmat.get(0).indexOf(cell)).addAll(nextState);
         }
+        return states;
     }
 
     /**
-     * Initializes the STM using nfaSTM and adds the first column.
-     *
+     * Makes the minimum DFA out of an NFA.
+     * Uses Hopcroft's algorithm.
      */
-    private void initSTM() {
-
-        ArrayList<ArrayList<Integer>> newColumn =
-                new ArrayList<ArrayList<Integer>>();
-        ArrayList<Integer> newCell;
+    public void makeMin() {
 
-        for (ArrayList<Integer> cell : this.nfaSTM.get(0)) {
+        this.makeMin(Minimization.HOPCROFT);
+    }
 
-            if (cell.get(0) == NFA.epsilon)
-                continue;
+    /**
+     * Makes the minimum DFA out of an NFA.
+     *
+     * @param strategy the partition refinement to use
+     */
+    public void makeMin(Minimization strategy) {
 
-            newCell = new ArrayList<Integer>();
-            newCell.add(cell.get(0));
-            newColumn.add(cell);
-        }
-        this.stmat.add(newColumn);
+        this.makeMin(strategy, Runtime.getRuntime().availableProcessors());
     }
 
     /**
-     * Adds the new column based on NFA alphabet length.
+     * Makes the minimum DFA out of an NFA.
+     * The states are named the same way whatever the strategy and the
+     * number of threads.
      *
+     * @param strategy the partition refinement to use
+     * @param threads the number of threads of the PARALLEL strategy
      */
-    private void addNewColumn() {
+    public void makeMin(Minimization strategy, int threads) {
 
-        ArrayList<ArrayList<Integer>> newColumn =
-                new ArrayList<ArrayList<Integer>>();
+        long nanos = CompileMetrics.startNanos();
+        long bytes = CompileMetrics.startBytes();
 
-        ArrayList<Integer> newCell;
+        Partition partition;
+        CompactTransitionMatrix dfa = this.getCompactMatrix();
+        int[] initial = this.initialBlocks(dfa);
 
-        for (ArrayList<Integer> cell : this.nfaSTM.get(0)) {
+        switch (strategy) {
 
-            if (cell.get(0) == NFA.epsilon)
-                continue;
-
-            newCell = new ArrayList<Integer>();
-            newColumn.add(newCell);
-        }
+        case MOORE:
+            /** Create first partition. */
+            partition = new Partition();
+            for (int row : Partition.groupBy(initial)) {
 
-        this.stmat.add(newColumn);
-    }
+                if (partition.getSets().size() <= initial[row])
+                    partition.addSet(new ArrayList<Integer>());
+                partition.getSets().get(initial[row]).add(dfa.stateId(row));
+            }
 
-    /**
-     * Makes the minimum DFA out of an NFA.
-     *
-     * @param nfa the input NFA which is to be minimized
-     */
-    public void makeMin() {
+            /** Try to build P_k while P_k and P_k-1 are different. */
+            partition = this.maximumPartitioning(partition, dfa);
+            break;
 
-        /** Create first partition. */
-        Partition partition  = new Partition();
+        case PARALLEL:
+            partition = ParallelMinimizer.minimize(dfa, initial, threads);
+            break;
 
-        partition.getSets().add(this.getFinalStates());
-        partition.getSets().add(this.getNonFinalStates());
+        case HOPCROFT:
+        default:
+            partition = HopcroftMinimizer.minimize(dfa, initial);
+            break;
+        }
 
-        /** Try to build P_k while P_k and P_k-1 are different. */
-        partition = this.maximumPartitioning(partition);
-        LOGGER.info("Final Partitions: " +
-                partition.getSets().toString() + "\n");
+        /** Every strategy leads to the same names. */
+        partition.sort();
+        ArrayList<ArrayList<Integer>> sets = partition.getSets();
+        Trace.event(DFA.class, "makeMin", TraceEvent.PARTITION_FOUND,
+                sets.size(), partition.getRounds(), () -> "Final Partitions: " +
+                sets.toString() + "\n");
 
         /** Convert final partition to DFA. */
         this.partitionToDFA(partition);
+        CompileMetrics.record(CompileStage.DFA_MIN, nanos, bytes);
+        CompileMetrics.count(CompileCounter.REFINEMENT_ROUNDS,
+                partition.getRounds());
+        CompileMetrics.count(CompileCounter.MIN_BLOCKS,
+                partition.getSets().size());
     }
 
     /**
-     * Gets the non final states.
+     * Gets the initial blocks of the minimization.
+     * Non final states are block 0, final states are grouped by their
+     * pattern tags in order of first appearance, or all in block 1 if
+     * the DFA is not tagged.
      *
-     * @return the non final states
+     * @param dfa the compact transition matrix of the DFA
+     * @return the initial block of every row, numbered without gaps
      */
-    private ArrayList<Integer> getNonFinalStates() {
+    private int[] initialBlocks(CompactTransitionMatrix dfa) {
 
-        ArrayList<Integer> nonFinalStates = new ArrayList<Integer>();
+        int[] initial = new int[dfa.stateCount()];
+        HashMap<ArrayList<Integer>, Integer> blocks =
+                new HashMap<ArrayList<Integer>, Integer>();
+        boolean nonFinal = false;
 
-        for (ArrayList<ArrayList<Integer>> column : this.stmat) {
+        for (Integer state : this.getFinalStates()) {
 
-            int state = column.get(0).get(0);
-            if (state == 0)
-                continue;
+            ArrayList<Integer> tag = (this.getTags() == null) ?
+                    new ArrayList<Integer>() : this.getTags().get(state);
+            Integer block = blocks.get(tag);
+            if (block == null) {
 
-            if (!(this.getFinalStates().contains(state)))
-                nonFinalStates.add(state);
+                block = blocks.size() + 1;
+                blocks.put(tag, block);
+            }
+            initial[dfa.row(state)] = block;
         }
 
-        return nonFinalStates;
+        for (int block : initial)
+            nonFinal |= (block == 0);
+
+        /** Shift the blocks down if there is no non final state. */
+        if (!nonFinal) {
+
+            for (int row = 0; row < initial.length; row++)
+                initial[row]--;
+        }
+        return initial;
     }
 
     /**
      * Creates the DFA corresponding to final partitioning.
-     * Builds the minSTM state transition matrix.
+     * Builds the minimum DFA matrix, the states are named 1..n in the
+     * order of the partition.
      *
      * @param partition the final partition
      */
     private void partitionToDFA(Partition partition) {
 
-        /** First column is the same as NFA except for epsilon. */
-        ArrayList<ArrayList<Integer>> newColumn =
-                new ArrayList<ArrayList<Integer>>();
-        ArrayList<Integer> newCell;
-
-        /** Add alphabet to minSTM. */
-        this.minSTM.add(this.stmat.get(0));
+        CompactTransitionMatrix dfa = this.getCompactMatrix();
+        int[] dense = dfa.toDense();
+        int letters = dfa.symbolCount();
 
-        /** Initialize the DFA state transition matrix. */
+        /** The new name of every DFA row. */
+        int[] names = new int[dfa.stateCount()];
+        int name = 0;
         for (ArrayList<Integer> set : partition.getSets()) {
 
-            if (set.isEmpty())
-                continue;
-
-            newColumn = new ArrayList<ArrayList<Integer>>();
+            name++;
+            for (Integer state : set)
+                names[dfa.row(state)] = name;
+        }
 
-            for (ArrayList<Integer> cell : this.minSTM.get(0)) {
+        /** The final rows, so that a block is looked up in O(1). */
+        boolean[] isFinal = new boolean[dfa.stateCount()];
+        for (Integer state : this.getFinalStates())
+            isFinal[dfa.row(state)] = true;
 
-                /** Fill the state transition matrix based
-                 *  on partitions. */
+        int[] alphabet = new int[letters];
+        for (int letter = 0; letter < letters; letter++)
+            alphabet[letter] = dfa.letter(letter);
 
-                if (cell.get(0) == 0) {
+        ArrayList<Integer> newFinalStates = new ArrayList<Integer>();
+        Integer newStartState = names[dfa.row(this.getStartState())];
+        HashMap<Integer, ArrayList<Integer>> newTags = (this.getTags() == null)
+                ? null : new HashMap<Integer, ArrayList<Integer>>();
 
-                    newColumn.add(set);
-                    continue;
-                }
+        DFA.Rows rows = new DFA.Rows(partition.getSets().size(), letters);
+        for (ArrayList<Integer> set : partition.getSets()) {
 
-                newCell = new ArrayList<Integer>();
+            /** Fill the state transition matrix based on partitions. */
+            int row = dfa.row(set.get(0));
 
-                ArrayList<Integer> dstState = StateTransitionMatrix.
-                        retrieveCell(stmat, set.get(0), cell.get(0));
+            for (int letter = 0; letter < letters; letter++) {
 
-                if (!dstState.isEmpty()) {
+                int target = dense[row * letters + letter];
+                rows.add((target < 0) ? -1 : names[target] - 1);
+            }
 
-                    for (ArrayList<Integer> s : partition.getSets()) {
+            if (isFinal[row]) {
 
-                        if (s.contains(dstState.get(0)))
-                            newCell = s;
-                    }
-                }
-                newColumn.add(newCell);
+                newFinalStates.add(names[row]);
+                if (newTags != null)
+                    newTags.put(names[row], this.getTags().get(set.get(0)));
             }
-
-            this.minSTM.add(newColumn);
         }
 
-        LOGGER.info("Minimum DFA: " + this.minSTM.toString() + "\n");
-        this.simplifyMinSTM();
-        LOGGER.info("Simplified Minimum DFA: " + this.minSTM.toString() +
+        this.minMatrix = rows.toMatrix(alphabet);
+        this.setFinalStates(newFinalStates);
+        this.setStartState(newStartState);
+        this.setTags(newTags);
+        Trace.event(DFA.class, "partitionToDFA", TraceEvent.MIN_DFA_BUILT,
+                this.minMatrix.stateCount(), newFinalStates.size(),
+                () -> "Minimum DFA: "
+                + this.minMatrix.toMatrix().toString() +
                 "\n" + "Start state: " + this.getStartState().toString() +
                 "\n" + "Final states: " + this.getFinalStates().toString()
                 + "\n");
@@ -473,22 +473,137 @@ public class DFA extends FSM {
      * Performs the maximum partitioning.
      *
      * @param partition the array of all partitions
+     * @param dfa the compact transition matrix of the DFA
      * @return the partition
      */
-    private Partition maximumPartitioning(Partition partition) {
+    private Partition maximumPartitioning(Partition partition,
+            CompactTransitionMatrix dfa) {
 
         Partition nextPartition  = new Partition();
+        int rounds = 0;
 
         do {
 
             nextPartition =
-                    partition.makeNextPartitioning(this.stmat);
+                    partition.makeNextPartitioning(dfa);
+            rounds++;
 
-            if ((partition.equals(nextPartition)))
+            if ((partition.equals(nextPartition))) {
+
+                partition.setRounds(rounds);
                 return partition;
+            }
             else
                 partition = nextPartition;
 
         } while (true);
     }
+
+    /**
+     * Compiles the DFA into a table driven matcher.
+     *
+     * @return the matcher
+     */
+    public Matcher matcher() {
+
+        return new DFAMatcher(this);
+    }
+
+    /**
+     * Takes an immutable snapshot of the DFA, which can be shared between
+     * threads. Uses the minimum DFA if it is built, the subset DFA
+     * otherwise.
+     *
+     * @return the compiled automaton
+     */
+    public CompiledAutomaton compile() {
+
+        return new CompiledAutomaton((this.minMatrix != null) ?
+                this.minMatrix : this.matrix,
+                this.getStartState(), this.getFinalStates(), this.getTags(),
+                this.getLetters());
+    }
+
+    /**
+     * Gets the minimum DFA state transition matrix in its compact form.
+     *
+     * @return the compact transition matrix, null if makeMin has not
+     *         been called
+     */
+    public CompactTransitionMatrix getCompactMinMatrix() {
+
+        return this.minMatrix;
+    }
+
+    /**
+     * The Class Rows.
+     * This class collects the rows of a deterministic matrix, one target
+     * row or -1 per letter, and packs them in CSR form.
+     *
+     */
+    private static final class Rows {
+
+        /** The number of rows. */
+        private final int rows;
+
+        /** The target row of every cell, -1 for an empty cell. */
+        private final int[] cells;
+
+        /** The number of cells added. */
+        private int count;
+
+        /** The number of targets added. */
+        private int edges;
+
+        /**
+         * Instantiates new rows.
+         *
+         * @param rows the number of rows
+         * @param letters the number of letters
+         */
+        Rows(int rows, int letters) {
+
+            this.rows = rows;
+            this.cells = new int[rows * letters];
+        }
+
+        /**
+         * Adds the next cell, row by row.
+         *
+         * @param target the target row, -1 for an empty cell
+         */
+        void add(int target) {
+
+            this.cells[this.count++] = target;
+            if (target >= 0)
+                this.edges++;
+        }
+
+        /**
+         * Packs the rows, row r being named r + 1.
+         *
+         * @param alphabet the letters in column order
+         * @return the compact transition matrix
+         */
+        CompactTransitionMatrix toMatrix(int[] alphabet) {
+
+            int[] stateIds = new int[this.rows];
+            for (int row = 0; row < stateIds.length; row++)
+                stateIds[row] = row + 1;
+
+            int[] offsets = new int[this.cells.length + 1];
+            int[] targets = new int[this.edges];
+            int index = 0;
+            for (int i = 0; i < this.cells.length; i++) {
+
+                offsets[i] = index;
+                if (this.cells[i] >= 0)
+                    targets[index++] = this.cells[i];
+            }
+            offsets[this.cells.length] = index;
+
+            return new CompactTransitionMatrix(alphabet, stateIds,
+                    offsets, targets);
+        }
+    }
 }
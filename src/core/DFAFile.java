@@ -0,0 +1,257 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Class DFAFile.
+ * A compact binary format for minimum DFAs, written once and loaded by
+ * mapping the file, so a process starts without compiling its RegExes.
+ *
+ * The file holds the tables of a DFAMatcher: the symbol classes, the
+ * accepting states, the pattern IDs of a tagged DFA and the dense
+ * transition table. All values are little endian ints:
+ *
+ *   magic, version, states, classes, start, intervals, pattern IDs, 0
+ *   the first symbol of every interval
+ *   the class of every interval
+ *   the accepting states, a bit per state in words of 32 bits
+ *   the first pattern ID of every state, then the end of the last one
+ *   the pattern IDs
+ *   the transitions, state * classes + class
+ *
+ * The transition table is used in place from the mapped file, the small
+ * sections before it are read into the heap.
+ *
+ */
+public final class DFAFile {
+
+    /** The magic number, "DFA1" in ASCII. */
+    static final int MAGIC = 0x31414644;
+
+    /** The version of the format. */
+    static final int VERSION = 1;
+
+    /** The number of ints in the header. */
+    static final int HEADER = 8;
+
+    /**
+     * Instantiates a new DFA file.
+     */
+    private DFAFile() {
+
+    }
+
+    /**
+     * Writes the minimum DFA of a DFA to a file.
+     *
+     * @param dfa the DFA, its minimum DFA is used if it is built
+     * @param path the file
+     * @throws IOException if the file can not be written
+     */
+    public static void write(DFA dfa, Path path) throws IOException {
+
+        DFAFile.write(new DFAMatcher(dfa), path);
+    }
+
+    /**
+     * Writes the tables of a matcher to a file.
+     *
+     * @param matcher the matcher
+     * @param path the file
+     * @throws IOException if the file can not be written
+     */
+    public static void write(DFAMatcher matcher, Path path)
+            throws IOException {
+
+        int states = matcher.stateCount();
+        int classes = matcher.classCount();
+        SymbolClasses symbols = matcher.symbols();
+        int intervals = symbols.intervalCount();
+
+        int ids = 0;
+        for (int state = 0; state < states; state++)
+            ids += matcher.patterns(state).size();
+
+        long ints = (long) HEADER + 2L * intervals + DFAFile.words(states)
+                + (states + 1) + ids + (long) states * classes;
+        if (ints > Integer.MAX_VALUE / 4)
+            throw new IOException("DFA too large: " + states + " states");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) ints * 4)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(states).putInt(classes)
+                .putInt(matcher.start()).putInt(intervals).putInt(ids)
+                .putInt(0);
+
+        for (int i = 0; i < intervals; i++)
+            buffer.putInt(symbols.start(i));
+        for (int i = 0; i < intervals; i++)
+            buffer.putInt(symbols.id(i));
+
+        int[] accepting = new int[DFAFile.words(states)];
+        for (int state = 0; state < states; state++) {
+
+            if (matcher.isAccepting(state))
+                accepting[state >>> 5] |= 1 << (state & 31);
+        }
+        for (int word : accepting)
+            buffer.putInt(word);
+
+        int offset = 0;
+        for (int state = 0; state < states; state++) {
+
+            buffer.putInt(offset);
+            offset += matcher.patterns(state).size();
+        }
+        buffer.putInt(offset);
+
+        for (int state = 0; state < states; state++) {
+
+            for (int id : matcher.patterns(state))
+                buffer.putInt(id);
+        }
+
+        for (int state = 0; state < states; state++) {
+
+            for (int cls = 0; cls < classes; cls++)
+                buffer.putInt(matcher.target(state, cls));
+        }
+
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * Loads a DFA file by mapping it.
+     *
+     * @param path the file
+     * @return the matcher, whose transition table is the mapped file
+     * @throws IOException if the file can not be read or is not a DFA
+     *         file of this version
+     */
+    public static MappedDFAMatcher load(Path path) throws IOException {
+
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        return DFAFile.load(buffer);
+    }
+
+    /**
+     * Loads a DFA from a buffer holding a DFA file.
+     *
+     * @param buffer the buffer, from its position to its limit
+     * @return the matcher, whose transition table is a view of the buffer
+     * @throws IOException if the buffer does not hold a DFA file of this
+     *         version
+     */
+    public static MappedDFAMatcher load(ByteBuffer buffer)
+            throws IOException {
+
+        IntBuffer ints = buffer.slice().order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+
+        if (ints.remaining() < HEADER || ints.get(0) != MAGIC)
+            throw new IOException("not a DFA file");
+        if (ints.get(1) != VERSION)
+            throw new IOException("unsupported DFA file version: "
+                    + ints.get(1));
+
+        int states = ints.get(2);
+        int classes = ints.get(3);
+        int start = ints.get(4);
+        int intervals = ints.get(5);
+        int ids = ints.get(6);
+
+        if (states < 1 || classes < 1 || intervals < 1 || ids < 0
+                || start < 0 || start >= states)
+            throw new IOException("corrupt DFA file header");
+
+        long size = (long) HEADER + 2L * intervals + DFAFile.words(states)
+                + (states + 1) + ids + (long) states * classes;
+        if (size != ints.remaining())
+            throw new IOException("corrupt DFA file: " + ints.remaining()
+                    + " ints instead of " + size);
+
+        int at = HEADER;
+        int[] starts = new int[intervals];
+        ints.get(at, starts);
+        at += intervals;
+
+        int[] classOf = new int[intervals];
+        ints.get(at, classOf);
+        at += intervals;
+
+        /** The intervals cover every symbol, from 0 on. */
+        for (int i = 0; i < intervals; i++) {
+
+            if (classOf[i] < 0 || classOf[i] >= classes
+                    || ((i == 0) ? starts[i] != 0
+                            : starts[i] <= starts[i - 1]))
+                throw new IOException("corrupt DFA file: interval " + i);
+        }
+
+        int[] accepting = new int[DFAFile.words(states)];
+        ints.get(at, accepting);
+        at += accepting.length;
+
+        int[] offsets = new int[states + 1];
+        ints.get(at, offsets);
+        at += offsets.length;
+
+        int[] patternIds = new int[ids];
+        ints.get(at, patternIds);
+        at += ids;
+
+        ArrayList<List<Integer>> patterns = new ArrayList<List<Integer>>();
+        for (int state = 0; state < states; state++) {
+
+            if (offsets[state] < 0 || offsets[state] > offsets[state + 1]
+                    || offsets[state + 1] > ids)
+                throw new IOException("corrupt DFA file: patterns of "
+                        + state);
+
+            ArrayList<Integer> tag = new ArrayList<Integer>();
+            for (int i = offsets[state]; i < offsets[state + 1]; i++)
+                tag.add(patternIds[i]);
+            patterns.add(Collections.unmodifiableList(tag));
+        }
+
+        ints.position(at);
+        IntBuffer table = ints.slice();
+
+        return new MappedDFAMatcher(new SymbolClasses(starts, classOf,
+                classes, null), table, accepting, start, patterns);
+    }
+
+    /**
+     * Gets the number of words of 32 bits holding a bit per state.
+     *
+     * @param states the number of states
+     * @return the number of words
+     */
+    private static int words(int states) {
+
+        return (states + 31) >>> 5;
+    }
+}
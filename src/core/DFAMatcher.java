@@ -0,0 +1,127 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The Class DFAMatcher.
+ * A table driven matcher compiled from a DFA.
+ *
+ * The transitions are kept in a dense table indexed by
+ * state * classes + class, where chars with the same transitions share a
+ * class, see SymbolClasses. Class 0 stands for every char which is not
+ * in the alphabet and state 0 is the dead state, so the inner loop has
+ * no branch except the one on the dead state. The loops themselves are
+ * shared with MappedDFAMatcher, see TableMatcher.
+ *
+ * A DFA compiled from several RegExes also reports the IDs of the
+ * patterns an input matches, see NFA.build(ArrayList).
+ *
+ * A DFA compiled with Encoding.UTF8 runs over bytes instead, through a
+ * 256 entry class map, so UTF-8 input is matched without decoding it.
+ * Indices are then byte offsets.
+ *
+ */
+public final class DFAMatcher extends TableMatcher {
+
+    /** The transitions, state * classes + class. */
+    private final int[] table;
+
+    /** The accepting flag of every state. */
+    private final boolean[] accepting;
+
+    /**
+     * Instantiates a new DFA matcher from a DFA.
+     * Uses the minimum DFA if it is built, the subset DFA otherwise.
+     *
+     * @param dfa the DFA
+     */
+    public DFAMatcher(DFA dfa) {
+
+        this((dfa.getCompactMinMatrix() != null) ? dfa.getCompactMinMatrix() :
+            dfa.getCompactMatrix(), dfa.getStartState(),
+                dfa.getFinalStates(), dfa.getTags(), dfa.getLetters());
+    }
+
+    /**
+     * Instantiates a new DFA matcher.
+     *
+     * @param dfa the compact transition matrix of the DFA
+     * @param startState the start state name
+     * @param finalStates the final state names
+     * @param tags the pattern IDs of every final state, null if the DFA
+     *        is not tagged, then every final state matches pattern 0
+     * @param ranges the chars every letter stands for, null if every
+     *        letter is a char of its own
+     */
+    DFAMatcher(CompactTransitionMatrix dfa, int startState,
+            ArrayList<Integer> finalStates,
+            HashMap<Integer, ArrayList<Integer>> tags, LetterRanges ranges) {
+
+        super(SymbolClasses.of(dfa, ranges), dfa.row(startState) + 1,
+                DFAMatcher.patterns(dfa, finalStates, tags));
+
+        int letters = dfa.symbolCount();
+
+        /** State i of the DFA becomes state i + 1, after the dead state. */
+        int states = dfa.stateCount() + 1;
+        this.table = new int[states * this.classes];
+        this.accepting = new boolean[states];
+
+        int[] dense = dfa.toDense();
+        for (int row = 0; row < dfa.stateCount(); row++) {
+
+            for (int cls = 1; cls < this.classes; cls++) {
+
+                int target = dense[row * letters + this.symbols.column(cls)];
+                this.table[(row + 1) * this.classes + cls] =
+                        (target < 0) ? DEAD : target + 1;
+            }
+        }
+
+        for (Integer state : finalStates)
+            this.accepting[dfa.row(state) + 1] = true;
+    }
+
+    /**
+     * Copies the pattern IDs of every state, so that the matcher shares
+     * no list with the DFA.
+     *
+     * @param dfa the compact transition matrix of the DFA
+     * @param finalStates the final state names
+     * @param tags the pattern IDs of every final state, null if the DFA
+     *        is not tagged
+     * @return the sorted pattern IDs of every state, the dead state
+     *         included
+     */
+    private static ArrayList<List<Integer>> patterns(
+            CompactTransitionMatrix dfa, ArrayList<Integer> finalStates,
+            HashMap<Integer, ArrayList<Integer>> tags) {
+
+        ArrayList<List<Integer>> patterns = new ArrayList<List<Integer>>(
+                Collections.nCopies(dfa.stateCount() + 1,
+                        Collections.<Integer>emptyList()));
+        List<Integer> untagged = Collections.singletonList(0);
+
+        for (Integer state : finalStates) {
+
+            patterns.set(dfa.row(state) + 1, (tags == null) ? untagged
+                    : List.copyOf(tags.get(state)));
+        }
+        return patterns;
+    }
+
+    @Override
+    int target(int state, int cls) {
+
+        return this.table[state * this.classes + cls];
+    }
+
+    @Override
+    boolean isAccepting(int state) {
+
+        return this.accepting[state];
+    }
+}
@@ -0,0 +1,15 @@
+package core;
+
+/**
+ * The Enum Encoding.
+ * This Enum selects the units the letters of a compiled RegEx are made
+ * of, see RegExParser.
+ */
+public enum Encoding {
+
+    /** Chars, the letters run over Strings and other CharSequences. */
+    UTF16,
+
+    /** Bytes of UTF-8, the letters run over byte arrays and buffers. */
+    UTF8
+}
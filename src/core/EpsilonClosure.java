@@ -0,0 +1,199 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The Class EpsilonClosure.
+ * This class precomputes the epsilon closures of all states of an NFA
+ * at once and keeps them as bit sets packed in long words, one bit per
+ * row of the compact transition matrix.
+ *
+ * The epsilon graph is condensed into its strongly connected components
+ * with an iterative version of Tarjan's algorithm. Components are found
+ * successors first, so the closure of a component is its own states
+ * plus the closures of its successors, which are already known.
+ *
+ */
+public final class EpsilonClosure {
+
+    /** The number of long words per closure. */
+    private final int words;
+
+    /** The closures of all rows, words per row. */
+    private final long[] closures;
+
+    /**
+     * Instantiates the closures of an NFA.
+     *
+     * @param nfa the compact transition matrix of the NFA
+     */
+    public EpsilonClosure(CompactTransitionMatrix nfa) {
+
+        int states = nfa.stateCount();
+        int epsilon = nfa.column(FSM.epsilon);
+
+        this.words = EpsilonClosure.wordsFor(states);
+        this.closures = new long[states * this.words];
+
+        if (epsilon < 0) {
+
+            for (int row = 0; row < states; row++)
+                this.closures[row * this.words + (row >>> 6)] |= 1L << row;
+            return;
+        }
+
+        int[] index = new int[states];
+        int[] lowLink = new int[states];
+        int[] component = new int[states];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+
+        /** The Tarjan stack and the explicit call stack. */
+        int[] stack = new int[states];
+        int stackSize = 0;
+        int[] callStack = new int[states];
+        int[] nextEdge = new int[states];
+        int callSize = 0;
+
+        int counter = 0;
+        int components = 0;
+        long[] closure = new long[this.words];
+
+        for (int root = 0; root < states; root++) {
+
+            if (index[root] >= 0)
+                continue;
+
+            callStack[callSize++] = root;
+            index[root] = lowLink[root] = counter++;
+            nextEdge[root] = nfa.start(root, epsilon);
+            stack[stackSize++] = root;
+
+            while (callSize > 0) {
+
+                int state = callStack[callSize - 1];
+
+                if (nextEdge[state] < nfa.end(state, epsilon)) {
+
+                    int target = nfa.target(nextEdge[state]++);
+
+                    if (index[target] < 0) {
+
+                        /** Descend into the target. */
+                        index[target] = lowLink[target] = counter++;
+                        nextEdge[target] = nfa.start(target, epsilon);
+                        stack[stackSize++] = target;
+                        callStack[callSize++] = target;
+                    }
+                    else if (component[target] < 0) {
+
+                        /** The target is still on the Tarjan stack. */
+                        lowLink[state] = Math.min(lowLink[state],
+                                index[target]);
+                    }
+                    continue;
+                }
+
+                /** All edges are done, return to the caller. */
+                callSize--;
+                if (callSize > 0) {
+
+                    int caller = callStack[callSize - 1];
+                    lowLink[caller] = Math.min(lowLink[caller],
+                            lowLink[state]);
+                }
+
+                if (lowLink[state] != index[state])
+                    continue;
+
+                /** The state is the root of a component, pop it. */
+                int bottom = stackSize;
+                do {
+                    bottom--;
+                    component[stack[bottom]] = components;
+                } while (stack[bottom] != state);
+
+                Arrays.fill(closure, 0L);
+                for (int i = bottom; i < stackSize; i++) {
+
+                    int member = stack[i];
+                    closure[member >>> 6] |= 1L << member;
+
+                    for (int e = nfa.start(member, epsilon);
+                            e < nfa.end(member, epsilon); e++) {
+
+                        int target = nfa.target(e);
+                        if (component[target] != components)
+                            this.addClosure(target, closure);
+                    }
+                }
+
+                for (int i = bottom; i < stackSize; i++)
+                    System.arraycopy(closure, 0, this.closures,
+                            stack[i] * this.words, this.words);
+
+                stackSize = bottom;
+                components++;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of long words needed for a set of rows.
+     *
+     * @param states the number of rows
+     * @return the number of long words
+     */
+    public static int wordsFor(int states) {
+
+        return Math.max(1, (states + 63) >>> 6);
+    }
+
+    /**
+     * Gets the number of long words per closure.
+     *
+     * @return the number of long words
+     */
+    public int words() {
+
+        return this.words;
+    }
+
+    /**
+     * Adds the epsilon closure of a row to a set, without allocation.
+     *
+     * @param row the row of the state
+     * @param set the set of rows, of words() long words
+     */
+    public void addClosure(int row, long[] set) {
+
+        int base = row * this.words;
+        for (int i = 0; i < this.words; i++)
+            set[i] |= this.closures[base + i];
+    }
+
+    /**
+     * Gets a word of the epsilon closure of a row.
+     *
+     * @param row the row of the state
+     * @param i the index of the word
+     * @return the word, bit k standing for row 64 * i + k
+     */
+    public long word(int row, int i) {
+
+        return this.closures[row * this.words + i];
+    }
+
+    /**
+     * Checks whether a row is in the epsilon closure of another row.
+     *
+     * @param row the row of the state
+     * @param member the row of the possible member
+     * @return true, if member can be reached from row via epsilon
+     */
+    public boolean contains(int row, int member) {
+
+        return (this.closures[row * this.words + (member >>> 6)]
+                & (1L << member)) != 0;
+    }
+}
@@ -1,6 +1,7 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.logging.Logger;
 
 /**
@@ -10,8 +11,8 @@ import java.util.logging.Logger;
  */
 public abstract class FSM {
 
-    /** The state transition matrix for normal DFA. */
-    StateTransitionMatrix stmat;
+    /** The state transition matrix, in compact form. */
+    CompactTransitionMatrix matrix;
 
     /** The final states. */
     ArrayList<Integer> finalStates;
@@ -19,6 +20,12 @@ public abstract class FSM {
     /** The start state. */
     Integer startState;
 
+    /** The sorted pattern IDs of every final state, null if untagged. */
+    HashMap<Integer, ArrayList<Integer>> tags;
+
+    /** The chars every letter stands for, null if letters are chars. */
+    LetterRanges letters;
+
 
     /** The epsilon is represented by -1. */
     public static int epsilon = -1;
@@ -28,6 +35,13 @@ public abstract class FSM {
     static final Logger LOGGER =
     Logger.getLogger(RegEx.class.getName());
 
+    /**
+     * Instantiates a new FSM.
+     */
+    protected FSM() {
+
+    }
+
     /**
      * Gets the start state.
      *
@@ -66,4 +80,53 @@ public abstract class FSM {
         this.finalStates = finalStates;
     }
 
+    /**
+     * Gets the pattern tags of the final states.
+     *
+     * @return the sorted pattern IDs of every final state, null if the
+     *         machine is not tagged
+     */
+    public HashMap<Integer, ArrayList<Integer>> getTags() {
+        return tags;
+    }
+
+    /**
+     * Sets the pattern tags of the final states.
+     *
+     * @param tags the sorted pattern IDs of every final state
+     */
+    public void setTags(HashMap<Integer, ArrayList<Integer>> tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Gets the chars every letter stands for.
+     *
+     * @return the letter ranges, null if every letter is a char of its
+     *         own
+     */
+    public LetterRanges getLetters() {
+        return letters;
+    }
+
+    /**
+     * Sets the chars every letter stands for.
+     *
+     * @param letters the letter ranges, null if every letter is a char of
+     *        its own
+     */
+    public void setLetters(LetterRanges letters) {
+        this.letters = letters;
+    }
+
+    /**
+     * Gets the state transition matrix in its compact form.
+     * The matrix is stored in this form, see CompactTransitionMatrix
+     * toMatrix for the boxed form the printers use.
+     *
+     * @return the compact transition matrix
+     */
+    public CompactTransitionMatrix getCompactMatrix() {
+        return this.matrix;
+    }
 }
@@ -0,0 +1,318 @@
+package core;
+
+import java.util.ArrayList;
+
+/**
+ * The Class HopcroftMinimizer.
+ * This class finds the coarsest partition of the states of a DFA using
+ * Hopcroft's algorithm in O(n * |alphabet| * log n).
+ *
+ * Missing transitions go to a virtual sink state which is kept in a
+ * block of its own, so the result is the same as the one of the Moore
+ * style refinement in Partition, where an empty cell only matches an
+ * empty cell.
+ *
+ */
+final class HopcroftMinimizer {
+
+    /** The number of states, the sink included. */
+    private final int states;
+
+    /** The number of letters. */
+    private final int letters;
+
+    /** The first predecessor of every letter and target state. */
+    private final int[] inverseOffsets;
+
+    /** The predecessors of all letters and target states. */
+    private final int[] inverseSources;
+
+    /** The states, each block is a contiguous range. */
+    private final int[] elements;
+
+    /** The index of every state in the elements. */
+    private final int[] location;
+
+    /** The block of every state. */
+    private final int[] blockOf;
+
+    /** The first element of every block. */
+    private final int[] first;
+
+    /** The element after the last one of every block. */
+    private final int[] end;
+
+    /** The element after the last marked one of every block. */
+    private final int[] markedEnd;
+
+    /** The number of blocks. */
+    private int blocks;
+
+    /** Flags the splitters (block * letters + letter) to process. */
+    private final boolean[] waiting;
+
+    /** The splitters to process. */
+    private final int[] worklist;
+
+    /** The number of splitters to process. */
+    private int worklistSize;
+
+    /** The number of splitters processed. */
+    private int rounds;
+
+    /**
+     * Instantiates a new Hopcroft minimizer.
+     *
+     * @param dense the dense table of the DFA, -1 for an empty cell
+     * @param rows the number of DFA states
+     * @param letters the number of letters
+     */
+    private HopcroftMinimizer(int[] dense, int rows, int letters) {
+
+        this.states = rows + 1;
+        this.letters = letters;
+
+        /** Build the inverse transition index, letter by letter. */
+        this.inverseOffsets = new int[letters * (this.states + 1)];
+        this.inverseSources = new int[letters * this.states];
+
+        for (int letter = 0; letter < letters; letter++) {
+
+            int base = letter * (this.states + 1);
+            for (int state = 0; state < this.states; state++) {
+
+                int target = HopcroftMinimizer.target(dense, rows, letters,
+                        state, letter);
+                this.inverseOffsets[base + target + 1]++;
+            }
+
+            this.inverseOffsets[base] = letter * this.states;
+            for (int state = 0; state < this.states; state++)
+                this.inverseOffsets[base + state + 1] +=
+                this.inverseOffsets[base + state];
+
+            int[] fill = new int[this.states];
+            for (int state = 0; state < this.states; state++) {
+
+                int target = HopcroftMinimizer.target(dense, rows, letters,
+                        state, letter);
+                this.inverseSources[this.inverseOffsets[base + target]
+                        + fill[target]++] = state;
+            }
+        }
+
+        this.elements = new int[this.states];
+        this.location = new int[this.states];
+        this.blockOf = new int[this.states];
+        this.first = new int[this.states];
+        this.end = new int[this.states];
+        this.markedEnd = new int[this.states];
+        this.waiting = new boolean[this.states * letters];
+        this.worklist = new int[this.states * letters];
+    }
+
+    /**
+     * Gets a target of the dense table, the sink for an empty cell.
+     *
+     * @param dense the dense table
+     * @param rows the number of DFA states
+     * @param letters the number of letters
+     * @param state the state, the sink included
+     * @param letter the letter
+     * @return the target state
+     */
+    private static int target(int[] dense, int rows, int letters,
+            int state, int letter) {
+
+        if (state == rows)
+            return rows;
+
+        int target = dense[state * letters + letter];
+        return (target < 0) ? rows : target;
+    }
+
+    /**
+     * Finds the coarsest partition of the states of a DFA which refines
+     * an initial partition.
+     *
+     * @param dfa the compact transition matrix of the DFA
+     * @param initial the initial block of every row, numbered from 0
+     * @return the partition of the state names, in no particular order
+     */
+    static Partition minimize(CompactTransitionMatrix dfa, int[] initial) {
+
+        int rows = dfa.stateCount();
+
+        HopcroftMinimizer minimizer = new HopcroftMinimizer(dfa.toDense(),
+                rows, dfa.symbolCount());
+        minimizer.refine(initial);
+
+        Partition partition = new Partition();
+        ArrayList<ArrayList<Integer>> sets = new ArrayList<ArrayList<Integer>>();
+        for (int block = 0; block < minimizer.blocks; block++)
+            sets.add(new ArrayList<Integer>());
+
+        for (int row = 0; row < rows; row++)
+            sets.get(minimizer.blockOf[row]).add(dfa.stateId(row));
+
+        for (ArrayList<Integer> set : sets) {
+
+            if (!set.isEmpty())
+                partition.addSet(set);
+        }
+        partition.setRounds(minimizer.rounds);
+        return partition;
+    }
+
+    /**
+     * Refines the initial partition, with the sink in a block of its own,
+     * until it is stable.
+     *
+     * @param initial the initial block of every DFA state
+     */
+    private void refine(int[] initial) {
+
+        int rows = this.states - 1;
+
+        /** Block 0 is the sink, then the initial blocks in order. */
+        this.elements[0] = rows;
+        this.first[0] = 0;
+        this.end[0] = 1;
+        this.blocks = 1;
+
+        int[] order = Partition.groupBy(initial);
+        int size = 1;
+        for (int i = 0; i < rows; i++) {
+
+            if (i == 0 || initial[order[i]] != initial[order[i - 1]]) {
+
+                this.first[this.blocks] = size;
+                this.blocks++;
+            }
+            this.elements[size++] = order[i];
+            this.end[this.blocks - 1] = size;
+        }
+
+        for (int b = 0; b < this.blocks; b++) {
+
+            this.markedEnd[b] = this.first[b];
+            for (int i = this.first[b]; i < this.end[b]; i++) {
+
+                this.location[this.elements[i]] = i;
+                this.blockOf[this.elements[i]] = b;
+            }
+
+            for (int letter = 0; letter < this.letters; letter++)
+                this.push(b, letter);
+        }
+
+        int[] predecessors = new int[this.states];
+        int[] touched = new int[this.states];
+
+        while (this.worklistSize > 0) {
+
+            int splitter = this.worklist[--this.worklistSize];
+            this.rounds++;
+            this.waiting[splitter] = false;
+
+            int splitBlock = splitter / this.letters;
+            int letter = splitter % this.letters;
+            int base = letter * (this.states + 1);
+
+            /** Collect the predecessors first, splitting moves elements. */
+            int count = 0;
+            for (int i = this.first[splitBlock]; i < this.end[splitBlock]; i++) {
+
+                int target = this.elements[i];
+                for (int e = this.inverseOffsets[base + target];
+                        e < this.inverseOffsets[base + target + 1]; e++)
+                    predecessors[count++] = this.inverseSources[e];
+            }
+
+            int touchedCount = 0;
+            for (int i = 0; i < count; i++) {
+
+                int state = predecessors[i];
+                int b = this.blockOf[state];
+
+                if (this.location[state] < this.markedEnd[b])
+                    continue;
+
+                if (this.markedEnd[b] == this.first[b])
+                    touched[touchedCount++] = b;
+
+                this.swap(this.location[state], this.markedEnd[b]++);
+            }
+
+            for (int i = 0; i < touchedCount; i++)
+                this.split(touched[i]);
+        }
+    }
+
+    /**
+     * Splits the marked states of a block into a new block.
+     *
+     * @param b the block
+     */
+    private void split(int b) {
+
+        if (this.markedEnd[b] == this.end[b]) {
+
+            this.markedEnd[b] = this.first[b];
+            return;
+        }
+
+        int block = this.blocks++;
+        this.first[block] = this.first[b];
+        this.end[block] = this.markedEnd[b];
+        this.markedEnd[block] = this.first[block];
+        this.first[b] = this.markedEnd[b];
+
+        for (int i = this.first[block]; i < this.end[block]; i++)
+            this.blockOf[this.elements[i]] = block;
+
+        boolean newIsSmaller = (this.end[block] - this.first[block])
+                <= (this.end[b] - this.first[b]);
+
+        for (int letter = 0; letter < this.letters; letter++) {
+
+            if (this.waiting[b * this.letters + letter] || newIsSmaller)
+                this.push(block, letter);
+            else
+                this.push(b, letter);
+        }
+    }
+
+    /**
+     * Swaps two elements.
+     *
+     * @param i the index of the first element
+     * @param j the index of the second element
+     */
+    private void swap(int i, int j) {
+
+        int stateI = this.elements[i];
+        int stateJ = this.elements[j];
+
+        this.elements[i] = stateJ;
+        this.elements[j] = stateI;
+        this.location[stateJ] = i;
+        this.location[stateI] = j;
+    }
+
+    /**
+     * Adds a splitter to the worklist unless it is already there.
+     *
+     * @param block the block
+     * @param letter the letter
+     */
+    private void push(int block, int letter) {
+
+        int splitter = block * this.letters + letter;
+        if (!this.waiting[splitter]) {
+
+            this.waiting[splitter] = true;
+            this.worklist[this.worklistSize++] = splitter;
+        }
+    }
+}
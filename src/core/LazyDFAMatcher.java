@@ -0,0 +1,881 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Class LazyDFAMatcher.
+ * A matcher which simulates an NFA and builds the DFA states only when
+ * the input reaches them.
+ *
+ * DFA states are subsets of NFA states, kept in a cache of bounded size
+ * together with their transitions. When the cache is full it is flushed
+ * and filling starts again from the current states. If flushes follow
+ * each other too fast the cache is of no help, so the rest of the input
+ * is run on the NFA directly. Every thread has a cache of its own, so a
+ * matcher is shared by threads without a lock.
+ *
+ * find runs in one pass over the input, as TableMatcher.find does: every
+ * DFA state alive carries the earliest start which reaches it. On the
+ * NFA every NFA state carries the earliest start instead.
+ *
+ */
+public final class LazyDFAMatcher implements Matcher {
+
+    /** The default number of cached DFA states. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** A transition which has not been computed yet. */
+    private static final int UNKNOWN = -1;
+
+    /** A transition to the empty set of NFA states. */
+    private static final int DEAD = -2;
+
+    /** A transition to a new state while the cache is full. */
+    private static final int FULL = -3;
+
+    /** Flushes closer than this many chars per state mean thrashing. */
+    private static final int MIN_CHARS_PER_STATE = 10;
+
+    /** The NFA. */
+    private final CompactTransitionMatrix nfa;
+
+    /** The epsilon closures of the NFA. */
+    private final EpsilonClosure closures;
+
+    /** The final flag of every NFA row. */
+    private final boolean[] nfaFinal;
+
+    /** The NFA column of every class, class 0 being unknown chars. */
+    private final int[] columnOf;
+
+    /** The class of every char. */
+    private final SymbolClasses symbols;
+
+    /** The number of classes, the class of unknown chars included. */
+    private final int classes;
+
+    /** The start closure of the NFA. */
+    private final long[] startSet;
+
+    /** The maximum number of cached DFA states. */
+    private final int capacity;
+
+    /** The cache of every thread. */
+    private final ThreadLocal<Cache> caches =
+            ThreadLocal.withInitial(Cache::new);
+
+    /** The number of transitions found in the cache. */
+    private final LongAdder hits = new LongAdder();
+
+    /** The number of transitions computed on the NFA. */
+    private final LongAdder misses = new LongAdder();
+
+    /** The number of times the cache was flushed. */
+    private final LongAdder flushes = new LongAdder();
+
+    /** The number of calls which fell back to the NFA. */
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * The Class Cache.
+     * The cached DFA states of a thread, with the scratch of find and the
+     * counts of the current call.
+     */
+    private final class Cache {
+
+        /** The NFA subsets of the cached states, words per state. */
+        final long[] sets;
+
+        /** The cached transitions, state * classes + class. */
+        final int[] table;
+
+        /** The accepting flag of every cached state. */
+        final boolean[] accepting;
+
+        /** The cached states by subset. */
+        final HashMap<BitSet, Integer> index;
+
+        /** The number of cached states. */
+        int size;
+
+        /** The cached start state. */
+        int start;
+
+        /** The number of transitions taken since the last flush. */
+        long sinceFlush;
+
+        /** The scratch subset of a transition. */
+        final long[] scratch;
+
+        /** The states alive in find. */
+        int[] states;
+
+        /** The start of every state alive in find. */
+        int[] starts;
+
+        /** The states alive in find after the next step. */
+        int[] nextStates;
+
+        /** The start of every state alive in find after the next step. */
+        int[] nextStarts;
+
+        /** The stamp of the step a state was last reached in. */
+        final int[] marks;
+
+        /** The stamp of the current step. */
+        int stamp;
+
+        /** The hits of the current call. */
+        long hits;
+
+        /** The misses of the current call. */
+        long misses;
+
+        /** The flushes of the current call. */
+        long flushes;
+
+        /** The fallbacks of the current call. */
+        long fallbacks;
+
+        /**
+         * Instantiates a new cache, holding the start state.
+         */
+        Cache() {
+
+            LazyDFAMatcher matcher = LazyDFAMatcher.this;
+            int words = matcher.closures.words();
+
+            this.sets = new long[matcher.capacity * words];
+            this.table = new int[matcher.capacity * matcher.classes];
+            this.accepting = new boolean[matcher.capacity];
+            this.index = new HashMap<BitSet, Integer>();
+            this.scratch = new long[words];
+
+            this.states = new int[matcher.capacity];
+            this.starts = new int[matcher.capacity];
+            this.nextStates = new int[matcher.capacity];
+            this.nextStarts = new int[matcher.capacity];
+            this.marks = new int[matcher.capacity];
+
+            this.flush();
+        }
+
+        /**
+         * Empties the cache and adds the start state back.
+         */
+        void flush() {
+
+            Arrays.fill(this.table, UNKNOWN);
+            this.index.clear();
+            this.size = 0;
+            this.sinceFlush = 0;
+            this.start = this.intern(LazyDFAMatcher.this.startSet,
+                    BitSet.valueOf(LazyDFAMatcher.this.startSet));
+        }
+
+        /**
+         * Adds a subset to the cache, the cache must not be full.
+         *
+         * @param set the subsets
+         * @param offset the first word of the subset
+         * @param key the subset as a bit set
+         * @return the cached state
+         */
+        int intern(long[] set, int offset, BitSet key) {
+
+            int words = LazyDFAMatcher.this.closures.words();
+            System.arraycopy(set, offset, this.sets, this.size * words,
+                    words);
+            this.accepting[this.size] =
+                    LazyDFAMatcher.this.isAccepting(set, offset);
+            this.index.put(key, this.size);
+
+            return this.size++;
+        }
+
+        /**
+         * Adds a subset to the cache, the cache must not be full.
+         *
+         * @param set the subset
+         * @param key the subset as a bit set
+         * @return the cached state
+         */
+        int intern(long[] set, BitSet key) {
+
+            return this.intern(set, 0, key);
+        }
+
+        /**
+         * Gets the target of a transition, computing it on the NFA if it
+         * is not cached.
+         *
+         * @param state the cached state
+         * @param cls the class
+         * @return the target, DEAD if there is none, FULL if the target is
+         *         new and the cache is full, its subset being in scratch
+         */
+        int target(int state, int cls) {
+
+            LazyDFAMatcher matcher = LazyDFAMatcher.this;
+            int cell = state * matcher.classes + cls;
+            int next = this.table[cell];
+            this.sinceFlush++;
+
+            if (next != UNKNOWN) {
+
+                this.hits++;
+                return next;
+            }
+
+            this.misses++;
+            int words = matcher.closures.words();
+            if (!matcher.step(this.sets, state * words, cls, this.scratch)) {
+
+                this.table[cell] = DEAD;
+                return DEAD;
+            }
+
+            BitSet key = BitSet.valueOf(this.scratch);
+            Integer known = this.index.get(key);
+            if (known != null)
+                next = known;
+            else if (this.size < matcher.capacity)
+                next = this.intern(this.scratch, key);
+            else
+                return FULL;
+
+            this.table[cell] = next;
+            return next;
+        }
+
+        /**
+         * Flushes the full cache.
+         *
+         * @return true, if flushes follow each other too fast
+         */
+        boolean overflow() {
+
+            this.flushes++;
+            boolean thrashing = this.sinceFlush < (long) MIN_CHARS_PER_STATE
+                    * LazyDFAMatcher.this.capacity;
+            this.flush();
+
+            return thrashing;
+        }
+
+        /**
+         * Runs the input from an index.
+         *
+         * @param input the input
+         * @param from the index to start at
+         * @param shortest stop at the first accepting state
+         * @return the end of the longest (or shortest) match, -1 if none
+         */
+        int scan(CharSequence input, int from, boolean shortest) {
+
+            int state = this.start;
+            int end = this.accepting[state] ? from : -1;
+
+            for (int i = from, n = input.length(); i < n; i++) {
+
+                if (end >= 0 && shortest)
+                    return end;
+
+                int next = this.target(state,
+                        LazyDFAMatcher.this.classOf(input.charAt(i)));
+                if (next == DEAD)
+                    return end;
+
+                if (next == FULL) {
+
+                    /** The current state is gone after the flush. */
+                    if (this.overflow()) {
+
+                        this.fallbacks++;
+                        return LazyDFAMatcher.this.simulate(input, i + 1,
+                                this.scratch, shortest, end);
+                    }
+                    next = this.intern(this.scratch,
+                            BitSet.valueOf(this.scratch));
+                }
+
+                state = next;
+                if (this.accepting[state])
+                    end = i + 1;
+            }
+            return end;
+        }
+
+        /**
+         * Starts a new step of find.
+         *
+         * @return the stamp of the step
+         */
+        int nextStamp() {
+
+            if (++this.stamp == Integer.MAX_VALUE) {
+
+                Arrays.fill(this.marks, 0);
+                this.stamp = 1;
+            }
+            return this.stamp;
+        }
+
+        /**
+         * Finds the leftmost match in one pass. A start is alive while the
+         * run from it is; once a match is seen, only runs from earlier
+         * starts go on, since one of them may still match further on.
+         *
+         * @param input the input
+         * @param from the index to start searching at
+         * @return the start of the match, -1 if there is none
+         */
+        int find(CharSequence input, int from) {
+
+            LazyDFAMatcher matcher = LazyDFAMatcher.this;
+            int[] states = this.states;
+            int[] starts = this.starts;
+            int stamp = this.nextStamp();
+            int count = 0;
+            int best = -1;
+            int n = input.length();
+
+            for (int i = from; i <= n; i++) {
+
+                /** A match may start here, unless one was found already. */
+                if (best < 0 && this.marks[this.start] != stamp) {
+
+                    this.marks[this.start] = stamp;
+                    states[count] = this.start;
+                    starts[count++] = i;
+                }
+
+                for (int k = 0; k < count; k++) {
+
+                    if (this.accepting[states[k]]) {
+
+                        best = starts[k];
+                        count = k;
+                        break;
+                    }
+                }
+
+                if (i == n || (best >= 0 && count == 0))
+                    break;
+
+                int cls = matcher.classOf(input.charAt(i));
+
+                /** Step, a state reached twice keeps its earlier start. */
+                int[] nextStates = this.nextStates;
+                int[] nextStarts = this.nextStarts;
+                stamp = this.nextStamp();
+                int next = 0;
+                boolean full = false;
+
+                for (int k = 0; k < count && !full; k++) {
+
+                    int target = this.target(states[k], cls);
+                    if (target == FULL) {
+
+                        full = true;
+                    }
+                    else if (target != DEAD && this.marks[target] != stamp) {
+
+                        this.marks[target] = stamp;
+                        nextStates[next] = target;
+                        nextStarts[next++] = starts[k];
+                    }
+                }
+
+                if (full) {
+
+                    /** Keep the states alive across the flush. */
+                    int words = matcher.closures.words();
+                    long[] alive = new long[count * words];
+                    for (int k = 0; k < count; k++)
+                        System.arraycopy(this.sets, states[k] * words, alive,
+                                k * words, words);
+
+                    if (this.overflow() || count >= matcher.capacity) {
+
+                        this.fallbacks++;
+                        return matcher.simulate(input, i, alive, starts,
+                                count, best);
+                    }
+
+                    stamp = this.nextStamp();
+                    for (int k = 0; k < count; k++) {
+
+                        BitSet key = BitSet.valueOf(Arrays.copyOfRange(alive,
+                                k * words, (k + 1) * words));
+                        Integer known = this.index.get(key);
+                        states[k] = (known != null) ? known
+                                : this.intern(alive, k * words, key);
+                        this.marks[states[k]] = stamp;
+                    }
+
+                    /** Take the step again. */
+                    i--;
+                    continue;
+                }
+
+                this.nextStates = states;
+                this.nextStarts = starts;
+                this.states = states = nextStates;
+                this.starts = starts = nextStarts;
+                count = next;
+            }
+            return best;
+        }
+
+        /**
+         * Adds the counts of the current call to the matcher.
+         */
+        void publish() {
+
+            LazyDFAMatcher matcher = LazyDFAMatcher.this;
+            matcher.hits.add(this.hits);
+            matcher.misses.add(this.misses);
+            matcher.flushes.add(this.flushes);
+            matcher.fallbacks.add(this.fallbacks);
+
+            this.hits = 0;
+            this.misses = 0;
+            this.flushes = 0;
+            this.fallbacks = 0;
+        }
+    }
+
+    /**
+     * Instantiates a new lazy DFA matcher with the default capacity.
+     *
+     * @param nfa the NFA
+     */
+    public LazyDFAMatcher(NFA nfa) {
+
+        this(nfa, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new lazy DFA matcher.
+     *
+     * @param nfa the NFA
+     * @param capacity the maximum number of cached DFA states
+     */
+    public LazyDFAMatcher(NFA nfa, int capacity) {
+
+        this(nfa.getCompactMatrix(), nfa.getStartState(),
+                nfa.getFinalStates(), nfa.getLetters(), capacity);
+    }
+
+    /**
+     * Instantiates a new lazy DFA matcher.
+     *
+     * @param nfa the compact transition matrix of the NFA
+     * @param startState the start state name
+     * @param finalStates the final state names
+     * @param ranges the chars every letter stands for, null if every
+     *        letter is a char of its own
+     * @param capacity the maximum number of cached DFA states
+     */
+    LazyDFAMatcher(CompactTransitionMatrix nfa, int startState,
+            ArrayList<Integer> finalStates, LetterRanges ranges,
+            int capacity) {
+
+        if (capacity < 2)
+            throw new IllegalArgumentException("Capacity " + capacity
+                    + " is less than 2");
+
+        this.nfa = nfa;
+        this.closures = new EpsilonClosure(this.nfa);
+        this.capacity = capacity;
+
+        this.nfaFinal = new boolean[this.nfa.stateCount()];
+        for (Integer state : finalStates)
+            this.nfaFinal[this.nfa.row(state)] = true;
+
+        /** Every letter is a class, epsilon is not. */
+        int maxLetter = 0;
+        int letters = 0;
+        for (int col = 0; col < this.nfa.symbolCount(); col++) {
+
+            if (this.nfa.letter(col) != FSM.epsilon) {
+
+                maxLetter = Math.max(maxLetter, this.nfa.letter(col));
+                letters++;
+            }
+        }
+
+        this.classes = letters + 1;
+        this.columnOf = new int[this.classes];
+        int[] classOf = new int[maxLetter + 1];
+        int cls = 0;
+        for (int col = 0; col < this.nfa.symbolCount(); col++) {
+
+            if (this.nfa.letter(col) != FSM.epsilon) {
+
+                this.columnOf[++cls] = col;
+                classOf[this.nfa.letter(col)] = cls;
+            }
+        }
+        this.symbols = SymbolClasses.map(classOf, this.classes, null,
+                ranges);
+
+        this.startSet = new long[this.closures.words()];
+        this.closures.addClosure(this.nfa.row(startState), this.startSet);
+    }
+
+    /**
+     * Checks whether a subset holds a final NFA state.
+     *
+     * @param set the subset
+     * @param offset the first word of the subset
+     * @return true, if the subset is accepting
+     */
+    private boolean isAccepting(long[] set, int offset) {
+
+        for (int i = 0; i < this.closures.words(); i++) {
+
+            long word = set[offset + i];
+            while (word != 0) {
+
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                if (this.nfaFinal[row])
+                    return true;
+                word &= word - 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves a subset over a class and closes it under epsilon.
+     *
+     * @param set the subsets
+     * @param offset the first word of the subset
+     * @param cls the class
+     * @param next receives the next subset
+     * @return true, if the next subset is not empty
+     */
+    private boolean step(long[] set, int offset, int cls, long[] next) {
+
+        Arrays.fill(next, 0L);
+        if (cls == 0)
+            return false;
+
+        int col = this.columnOf[cls];
+        boolean any = false;
+        for (int i = 0; i < this.closures.words(); i++) {
+
+            long word = set[offset + i];
+            while (word != 0) {
+
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                for (int e = this.nfa.start(row, col);
+                        e < this.nfa.end(row, col); e++) {
+
+                    this.closures.addClosure(this.nfa.target(e), next);
+                    any = true;
+                }
+                word &= word - 1;
+            }
+        }
+        return any;
+    }
+
+    /**
+     * Gets the class of a char.
+     *
+     * @param ch the char
+     * @return the class, 0 if the char is not in the alphabet
+     */
+    private int classOf(char ch) {
+
+        return this.symbols.classOf(ch);
+    }
+
+    /**
+     * Runs the rest of the input on the NFA, without the cache.
+     *
+     * @param input the input
+     * @param from the index to continue at
+     * @param set the current subset
+     * @param shortest stop at the first accepting state
+     * @param end the end of the match so far, -1 if none
+     * @return the end of the longest (or shortest) match, -1 if none
+     */
+    private int simulate(CharSequence input, int from, long[] set,
+            boolean shortest, int end) {
+
+        long[] current = set.clone();
+        long[] next = new long[current.length];
+
+        if (this.isAccepting(current, 0))
+            end = from;
+
+        for (int i = from, n = input.length(); i < n; i++) {
+
+            if (end >= 0 && shortest)
+                return end;
+
+            if (!this.step(current, 0, this.classOf(input.charAt(i)), next))
+                return end;
+
+            long[] swap = current;
+            current = next;
+            next = swap;
+
+            if (this.isAccepting(current, 0))
+                end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Goes on with find on the NFA, without the cache. Every NFA state
+     * alive carries the earliest start which reaches it.
+     *
+     * @param input the input
+     * @param from the index to continue at, before its step
+     * @param sets the subsets of the DFA states alive, words per state
+     * @param starts the start of every DFA state alive
+     * @param count the number of DFA states alive
+     * @param best the start of the match found so far, -1 if none
+     * @return the start of the match, -1 if there is none
+     */
+    private int simulate(CharSequence input, int from, long[] sets,
+            int[] starts, int count, int best) {
+
+        int words = this.closures.words();
+        long[] current = new long[words];
+        long[] next = new long[words];
+        int[] startOf = new int[this.nfa.stateCount()];
+        int[] nextStartOf = new int[this.nfa.stateCount()];
+
+        for (int k = 0; k < count; k++)
+            LazyDFAMatcher.merge(sets, k * words, starts[k], current,
+                    startOf);
+
+        for (int i = from, n = input.length(); ; i++) {
+
+            if (best < 0)
+                LazyDFAMatcher.merge(this.startSet, 0, i, current, startOf);
+
+            /** The earliest start of an accepting NFA state, if any. */
+            for (int w = 0; w < words; w++) {
+
+                for (long word = current[w]; word != 0; word &= word - 1) {
+
+                    int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (this.nfaFinal[row]
+                            && (best < 0 || startOf[row] < best))
+                        best = startOf[row];
+                }
+            }
+
+            /** Only runs from earlier starts go on. */
+            boolean alive = false;
+            for (int w = 0; w < words; w++) {
+
+                for (long word = current[w]; word != 0; word &= word - 1) {
+
+                    int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                    if (best >= 0 && startOf[row] >= best)
+                        current[w] &= ~(1L << row);
+                }
+                alive |= current[w] != 0;
+            }
+
+            if (i == n || !alive)
+                return best;
+
+            Arrays.fill(next, 0L);
+            int cls = this.classOf(input.charAt(i));
+            int col = (cls == 0) ? -1 : this.columnOf[cls];
+
+            for (int w = 0; col >= 0 && w < words; w++) {
+
+                for (long word = current[w]; word != 0; word &= word - 1) {
+
+                    int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                    for (int e = this.nfa.start(row, col);
+                            e < this.nfa.end(row, col); e++)
+                        this.mergeClosure(this.nfa.target(e), startOf[row],
+                                next, nextStartOf);
+                }
+            }
+
+            long[] swap = current;
+            current = next;
+            next = swap;
+            int[] swapStarts = startOf;
+            startOf = nextStartOf;
+            nextStartOf = swapStarts;
+        }
+    }
+
+    /**
+     * Adds the epsilon closure of a row reached from a start to the NFA
+     * states alive, every state keeping its earliest start.
+     *
+     * @param row the row
+     * @param start the start
+     * @param alive the NFA states alive
+     * @param startOf the start of every NFA state alive
+     */
+    private void mergeClosure(int row, int start, long[] alive,
+            int[] startOf) {
+
+        for (int i = 0; i < alive.length; i++) {
+
+            for (long word = this.closures.word(row, i); word != 0;
+                    word &= word - 1) {
+
+                int member = (i << 6) + Long.numberOfTrailingZeros(word);
+                if ((alive[i] & (1L << member)) == 0
+                        || startOf[member] > start) {
+
+                    alive[i] |= 1L << member;
+                    startOf[member] = start;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a subset reached from a start to the NFA states alive, every
+     * state keeping its earliest start.
+     *
+     * @param set the subsets
+     * @param offset the first word of the subset
+     * @param start the start
+     * @param alive the NFA states alive
+     * @param startOf the start of every NFA state alive
+     */
+    private static void merge(long[] set, int offset, int start,
+            long[] alive, int[] startOf) {
+
+        for (int i = 0; i < alive.length; i++) {
+
+            for (long word = set[offset + i]; word != 0; word &= word - 1) {
+
+                int row = (i << 6) + Long.numberOfTrailingZeros(word);
+                if ((alive[i] & (1L << row)) == 0 || startOf[row] > start) {
+
+                    alive[i] |= 1L << row;
+                    startOf[row] = start;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+
+        Cache cache = this.caches.get();
+        try {
+
+            return cache.scan(input, 0, false) == input.length();
+        }
+        finally {
+
+            cache.publish();
+        }
+    }
+
+    @Override
+    public boolean lookingAt(CharSequence input, int from) {
+
+        Cache cache = this.caches.get();
+        try {
+
+            return cache.scan(input, from, true) >= 0;
+        }
+        finally {
+
+            cache.publish();
+        }
+    }
+
+    @Override
+    public int find(CharSequence input, int from) {
+
+        Cache cache = this.caches.get();
+        try {
+
+            return cache.find(input, from);
+        }
+        finally {
+
+            cache.publish();
+        }
+    }
+
+    @Override
+    public int matchEnd(CharSequence input, int start) {
+
+        Cache cache = this.caches.get();
+        try {
+
+            return cache.scan(input, start, false);
+        }
+        finally {
+
+            cache.publish();
+        }
+    }
+
+    /**
+     * Gets the number of transitions found in the caches.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+
+        return this.hits.sum();
+    }
+
+    /**
+     * Gets the number of transitions computed on the NFA.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+
+        return this.misses.sum();
+    }
+
+    /**
+     * Gets the number of times a cache was flushed.
+     *
+     * @return the number of flushes
+     */
+    public long getFlushes() {
+
+        return this.flushes.sum();
+    }
+
+    /**
+     * Gets the number of calls which fell back to the NFA.
+     *
+     * @return the number of fallbacks
+     */
+    public long getFallbacks() {
+
+        return this.fallbacks.sum();
+    }
+
+    /**
+     * Gets the number of DFA states in the cache of the calling thread.
+     *
+     * @return the number of cached states
+     */
+    public int getCachedStates() {
+
+        return this.caches.get().size;
+    }
+}
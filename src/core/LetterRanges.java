@@ -0,0 +1,87 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The Class LetterRanges.
+ * Tells which chars every letter of an automaton stands for, when the
+ * letters are classes of chars rather than chars of their own. With
+ * Encoding.UTF8 the letters are classes of bytes, 0 to 255.
+ *
+ * The chars are kept as sorted intervals which cover every char, each
+ * interval with its letter or with -1 if no letter matches it. A letter
+ * is named after a char of its class, so the letters of a RegEx without
+ * character classes are just its chars.
+ *
+ */
+public final class LetterRanges {
+
+    /** No letter. */
+    static final int NONE = -1;
+
+    /** The first char of every interval, ascending, starting at 0. */
+    private final int[] starts;
+
+    /** The letter of every interval, NONE if no letter matches it. */
+    private final int[] letters;
+
+    /**
+     * Instantiates new letter ranges.
+     *
+     * @param starts the first char of every interval, ascending, starting
+     *        at 0
+     * @param letters the letter of every interval, NONE for none
+     */
+    LetterRanges(int[] starts, int[] letters) {
+
+        this.starts = starts;
+        this.letters = letters;
+    }
+
+    /**
+     * Gets the letter which stands for a char.
+     *
+     * @param ch the char
+     * @return the letter, NONE if no letter matches the char
+     */
+    public int letterOf(int ch) {
+
+        if (ch < 0)
+            return NONE;
+
+        int i = Arrays.binarySearch(this.starts, ch);
+        return this.letters[(i >= 0) ? i : -i - 2];
+    }
+
+    /**
+     * Gets the number of intervals.
+     *
+     * @return the number of intervals
+     */
+    int intervalCount() {
+
+        return this.starts.length;
+    }
+
+    /**
+     * Gets the first char of an interval.
+     *
+     * @param interval the interval
+     * @return the first char
+     */
+    int start(int interval) {
+
+        return this.starts[interval];
+    }
+
+    /**
+     * Gets the letter of an interval.
+     *
+     * @param interval the interval
+     * @return the letter, NONE for none
+     */
+    int letter(int interval) {
+
+        return this.letters[interval];
+    }
+}
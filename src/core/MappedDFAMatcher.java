@@ -0,0 +1,59 @@
+package core;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Class MappedDFAMatcher.
+ * A table driven matcher loaded from a DFA file, see DFAFile. It runs
+ * like a DFAMatcher, but its transition table is a view of the file
+ * rather than an array, so loading does not copy it.
+ *
+ * State 0 is the dead state and class 0 stands for every symbol which is
+ * not in the alphabet. Bytes are looked up through the symbol classes,
+ * so a DFA compiled with Encoding.UTF8 matches UTF-8 bytes. The loops are
+ * the ones of DFAMatcher, see TableMatcher.
+ *
+ * The header and the sections before the table are checked on loading,
+ * the table itself is not: a corrupt table gives wrong matches or an
+ * IndexOutOfBoundsException.
+ *
+ */
+public final class MappedDFAMatcher extends TableMatcher {
+
+    /** The transitions, state * classes + class, a view of the file. */
+    private final IntBuffer table;
+
+    /** The accepting states, a bit per state. */
+    private final int[] accepting;
+
+    /**
+     * Instantiates a new mapped DFA matcher.
+     *
+     * @param symbols the class of every symbol
+     * @param table the transitions, state * classes + class
+     * @param accepting the accepting states, a bit per state
+     * @param start the start state
+     * @param patterns the sorted pattern IDs of every state
+     */
+    MappedDFAMatcher(SymbolClasses symbols, IntBuffer table, int[] accepting,
+            int start, ArrayList<List<Integer>> patterns) {
+
+        super(symbols, start, patterns);
+        this.table = table;
+        this.accepting = accepting;
+    }
+
+    @Override
+    int target(int state, int cls) {
+
+        return this.table.get(state * this.classes + cls);
+    }
+
+    @Override
+    boolean isAccepting(int state) {
+
+        return (this.accepting[state >>> 5] & (1 << (state & 31))) != 0;
+    }
+}
@@ -0,0 +1,46 @@
+package core;
+
+/**
+ * The Interface Matcher.
+ * A compiled regular expression which can be run against an input.
+ * Implementations are safe to share between threads.
+ *
+ */
+public interface Matcher {
+
+    /**
+     * Checks whether the whole input is in the language.
+     *
+     * @param input the input
+     * @return true, if the whole input matches
+     */
+    boolean matches(CharSequence input);
+
+    /**
+     * Checks whether a prefix of the input, starting at an index, is in
+     * the language.
+     *
+     * @param input the input
+     * @param from the index to start at
+     * @return true, if a prefix matches
+     */
+    boolean lookingAt(CharSequence input, int from);
+
+    /**
+     * Finds the leftmost match at or after an index.
+     *
+     * @param input the input
+     * @param from the index to start searching at
+     * @return the start index of the match, -1 if there is none
+     */
+    int find(CharSequence input, int from);
+
+    /**
+     * Gets the end of the longest match starting at an index.
+     *
+     * @param input the input
+     * @param start the start index of the match
+     * @return the end index of the match, -1 if there is none
+     */
+    int matchEnd(CharSequence input, int start);
+}
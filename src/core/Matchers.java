@@ -0,0 +1,80 @@
+package core;
+
+import java.util.ArrayList;
+
+/**
+ * The Class Matchers.
+ * Compiles a RegEx into the matcher which suits it best, without the
+ * subset construction:
+ * a BitParallelMatcher if the positions of the RegEx fit in a few long
+ * words, a LazyDFAMatcher on the Thompson NFA otherwise.
+ *
+ * Several RegExes are compiled together into a single tagged minimum
+ * DFA, which tells which of them match an input.
+ *
+ */
+public final class Matchers {
+
+    /**
+     * Instantiates a new matchers.
+     */
+    private Matchers() {
+
+    }
+
+    /**
+     * Compiles a RegEx.
+     *
+     * @param regex the input RegEx
+     * @return the matcher
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    public static Matcher compile(String regex) {
+
+        Postfix postfix = RegExParser.parse(regex);
+
+        if (BitParallelMatcher.positions(postfix.forms[0])
+                <= BitParallelMatcher.MAX_POSITIONS)
+            return new BitParallelMatcher(postfix);
+
+        /** The Thompson NFA starts at its first state and ends at its last. */
+        CompactTransitionMatrix nfa = ThompsonBuilder.build(postfix.forms[0]);
+        ArrayList<Integer> finalStates = new ArrayList<Integer>();
+        finalStates.add(nfa.stateId(nfa.stateCount() - 1));
+
+        return new LazyDFAMatcher(nfa, nfa.stateId(0), finalStates,
+                postfix.letters, LazyDFAMatcher.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Compiles a RegEx into a minimum DFA over the bytes of UTF-8, which
+     * runs over byte arrays and buffers without decoding them, see
+     * DFAMatcher.matches(byte[], int, int).
+     *
+     * @param regex the input RegEx
+     * @return the matcher
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    public static DFAMatcher compileUtf8(String regex) {
+
+        NFA nfa = new NFA();
+        nfa.build(regex, Encoding.UTF8);
+
+        return new DFAMatcher(nfa.createMinimumDFA());
+    }
+
+    /**
+     * Compiles several RegExes into one tagged minimum DFA.
+     *
+     * @param regexes the input RegExes, the i-th one has pattern ID i
+     * @return the matcher, see DFAMatcher.matchingPatterns
+     * @throws IllegalArgumentException if a RegEx is malformed
+     */
+    public static DFAMatcher compileAll(ArrayList<String> regexes) {
+
+        NFA nfa = new NFA();
+        nfa.build(regexes);
+
+        return new DFAMatcher(nfa.createMinimumDFA());
+    }
+}
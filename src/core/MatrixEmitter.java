@@ -0,0 +1,69 @@
+package core;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * The Interface MatrixEmitter.
+ * Receives a state transition matrix section by section, see
+ * StateTransitionMatrix.print. The matrix calls startState, then
+ * finalState or finalStates, alphabet, states, row for every state and
+ * flush at the end.
+ *
+ * TextMatrixEmitter writes the text the CLI prints, TsvMatrixEmitter a
+ * tab separated form for other programs.
+ */
+public interface MatrixEmitter extends Flushable {
+
+    /**
+     * Emits the start state.
+     *
+     * @param state the start state name
+     * @throws IOException if the output fails
+     */
+    void startState(int state) throws IOException;
+
+    /**
+     * Emits the one final state of a Thompson NFA.
+     *
+     * @param state the final state name
+     * @throws IOException if the output fails
+     */
+    void finalState(int state) throws IOException;
+
+    /**
+     * Emits the final states.
+     *
+     * @param states the final state names
+     * @throws IOException if the output fails
+     */
+    void finalStates(ArrayList<Integer> states) throws IOException;
+
+    /**
+     * Emits the alphabet.
+     *
+     * @param letters the letters in the order of the cells, epsilon
+     *        included
+     * @throws IOException if the output fails
+     */
+    void alphabet(int[] letters) throws IOException;
+
+    /**
+     * Emits the state names.
+     *
+     * @param states the state names in the order of the rows
+     * @throws IOException if the output fails
+     */
+    void states(int[] states) throws IOException;
+
+    /**
+     * Emits the transitions of a state. The column belongs to the matrix
+     * and must not be changed.
+     *
+     * @param column the state name cell, then a cell of target states per
+     *        letter
+     * @throws IOException if the output fails
+     */
+    void row(ArrayList<ArrayList<Integer>> column) throws IOException;
+}
@@ -0,0 +1,17 @@
+package core;
+
+/**
+ * The Enum Minimization.
+ * This Enum selects the partition refinement used by DFA.makeMin.
+ */
+public enum Minimization {
+
+    /** Moore style refinement, comparing states pairwise every round. */
+    MOORE,
+
+    /** Hopcroft refinement over an inverse transition index. */
+    HOPCROFT,
+
+    /** Signature refinement of all blocks at once on a fork/join pool. */
+    PARALLEL
+}
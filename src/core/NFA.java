@@ -1,12 +1,11 @@
 package core;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 
 import entries.NFAEntry;
-import utils.Chars;
-import utils.Phrase;
 import utils.Tasks;
 
 /**
@@ -29,45 +28,6 @@ public class NFA extends FSM {
         super();
     }
 
-    /**
-     * Instantiates a new trivial NFA.
-     *
-     * @param p the phrase on which an NFA is built.
-     */
-    public NFA(Phrase p) {
-
-        this.stmat = new StateTransitionMatrix();
-
-        ArrayList<ArrayList<Integer>> column = new ArrayList<ArrayList<Integer>>();
-        ArrayList<Integer> cell = new ArrayList<Integer>();
-        cell.add(0);
-        column.add(cell);
-        cell = new ArrayList<Integer>();
-        cell.add((int)p.string.charAt(0));
-        column.add(cell);
-
-        stmat.add(column);
-
-        column = new ArrayList<ArrayList<Integer>>();
-        cell = new ArrayList<Integer>();
-        cell.add(1);
-        column.add(cell);
-        cell = new ArrayList<Integer>();
-        cell.add(2);
-        column.add(cell);
-
-        stmat.add(column);
-
-        column = new ArrayList<ArrayList<Integer>>();
-        cell = new ArrayList<Integer>();
-        cell.add(2);
-        column.add(cell);
-        cell = new ArrayList<Integer>();
-        column.add(cell);
-
-        stmat.add(column);
-    }
-
     /**
      * Instantiates a new NFA using entry data.
      *
@@ -77,7 +37,8 @@ public class NFA extends FSM {
 
         this.inputData = data;
         this.task = this.inputData.getTask();
-        this.stmat = this.inputData.convertToSTMat();
+        this.matrix = CompactTransitionMatrix.of(
+                this.inputData.convertToSTMat());
 
         this.setFinalStates(data.
                 convertStatesToIntegers(data.getFinalStates()));
@@ -90,6 +51,16 @@ public class NFA extends FSM {
      */
     public void taskHandler() {
 
+        this.taskHandler(System.out);
+    }
+
+    /**
+     * Task handler, printing to an output.
+     *
+     * @param out the output
+     */
+    public void taskHandler(PrintStream out) {
+
         switch (this.task) {
 
         case RegEx:
@@ -98,13 +69,14 @@ public class NFA extends FSM {
 
         case DFA:
             DFA requestedDFA = this.createMinimumDFA();
-            requestedDFA.minSTM.print(requestedDFA.getStartState(),
-                    requestedDFA.getFinalStates());
+            requestedDFA.getCompactMinMatrix().toMatrix().print(
+                    requestedDFA.getStartState(),
+                    requestedDFA.getFinalStates(), out);
             break;
 
         case NFA:
-            this.stmat.print(this.startState,
-                    this.finalStates);
+            this.matrix.toMatrix().print(this.startState,
+                    this.finalStates, out);
             break;
 
         case PDA:
@@ -114,74 +86,108 @@ public class NFA extends FSM {
     }
 
     /**
-     * Builds the.
+     * Builds the NFA of a RegEx.
+     * The RegEx is parsed once and the NFA is emitted in a single pass,
+     * see ThompsonBuilder. The letters are classes of chars, see
+     * RegExParser.
      *
      * @param regex the regex
      */
     public void build(String regex) {
 
-        /** Build the STM for desired regular expression. */
-        this.stmat = this.buildRecursive(regex);
+        this.build(regex, Encoding.UTF16);
     }
 
     /**
-     * Builds the NFA.
-     * Recursively builds an NFA based on modified Thompson rules.
+     * Builds the NFA of a RegEx over chars or over the bytes of UTF-8,
+     * and sets its start and final state.
      *
-     * @param regex the input RegEx to translate to NFA
-     * @return the NFA
+     * @param regex the regex
+     * @param encoding the units the letters are made of
      */
-    private StateTransitionMatrix buildRecursive(String regex) {
+    public void build(String regex, Encoding encoding) {
 
-        /** Trivial case, NFA in this state is a basic NFA. */
-        if (regex.length() == 1) {
+        this.build(RegExParser.parse(encoding, regex));
+    }
 
-            Phrase p = new Phrase(regex);
-            NFA trivialNFA = new NFA(p);
+    /**
+     * Builds the NFA of a parsed RegEx and sets its start and final state.
+     *
+     * @param postfix the postfix form of the RegEx
+     */
+    void build(Postfix postfix) {
 
-            return trivialNFA.stmat;
-        }
+        long nanos = CompileMetrics.startNanos();
+        long bytes = CompileMetrics.startBytes();
 
-        ArrayList<Phrase> phrases = new ArrayList<Phrase>();
-        ArrayList<StateTransitionMatrix> stmats =
-                new ArrayList<StateTransitionMatrix>();
+        CompactTransitionMatrix nfa = ThompsonBuilder.build(postfix.forms[0]);
 
-        /** Extract all the phrases and then call recursively on build. */
-        phrases = RegEx.extractPhrases(regex);
-        for (Phrase p : phrases) {
+        /** The NFA is kept in the compact form it is built in. */
+        this.matrix = nfa;
+        CompileMetrics.record(CompileStage.NFA_BUILD, nanos, bytes);
+        NFA.count(nfa);
+        this.setLetters(postfix.letters);
 
-            stmats.add(this.buildRecursive(p.string));
-        }
+        /** The Thompson NFA starts at its first state and ends at its last. */
+        this.setStartState(nfa.stateId(0));
+        this.setFinalStates(new ArrayList<Integer>());
+        this.getFinalStates().add(nfa.stateId(nfa.stateCount() - 1));
+    }
 
-        /** Checking for star in phrases and applying it to NFA. */
+    /**
+     * Builds the tagged NFA of several RegExes.
+     * The NFAs of the RegExes are united under a new start state, and the
+     * end state of the i-th RegEx is a final state tagged with i.
+     *
+     * @param regexes the regexes
+     */
+    public void build(ArrayList<String> regexes) {
 
-        for (Phrase p : phrases) {
+        Postfix postfix = RegExParser.parse(
+                regexes.toArray(new String[regexes.size()]));
 
-            int index = phrases.indexOf(p);
-            StateTransitionMatrix.addEpsilon(stmats.get(index));
+        long nanos = CompileMetrics.startNanos();
+        long bytes = CompileMetrics.startBytes();
 
-            if (p.hasStar)
-                StateTransitionMatrix.star(stmats.get(index));
-        }
+        int[] ends = new int[regexes.size()];
+        CompactTransitionMatrix nfa = ThompsonBuilder.build(postfix.forms,
+                ends);
+        this.matrix = nfa;
+        CompileMetrics.record(CompileStage.NFA_BUILD, nanos, bytes);
+        NFA.count(nfa);
+        this.setLetters(postfix.letters);
 
-        /** Start processing the operations. */
-        Phrase p = phrases.get(0);
+        this.setStartState(nfa.stateId(0));
+        this.setFinalStates(new ArrayList<Integer>());
+        this.setTags(new HashMap<Integer, ArrayList<Integer>>());
 
-        if (p.nextOperation == Chars.concatenation) {
+        for (int i = 0; i < ends.length; i++) {
 
-            return StateTransitionMatrix.concat(stmats);
-        }
-        else if (p.nextOperation == Chars.union) {
+            ArrayList<Integer> tag = new ArrayList<Integer>();
+            tag.add(i);
 
-            return StateTransitionMatrix.union(stmats);
+            this.getFinalStates().add(nfa.stateId(ends[i]));
+            this.getTags().put(nfa.stateId(ends[i]), tag);
         }
-        else if (p.nextOperation == Chars.none) {
+    }
 
-            /** Only one phrase exists in this case so return the NFA. */
-            return stmats.get(0);
-        }
+    /**
+     * Records the states and transitions of a built NFA, see
+     * CompileMetrics.
+     *
+     * @param nfa the compact transition matrix of the NFA
+     */
+    private static void count(CompactTransitionMatrix nfa) {
+
+        int epsilon = 0;
+        int column = nfa.column(FSM.epsilon);
+        for (int row = 0; column >= 0 && row < nfa.stateCount(); row++)
+            epsilon += nfa.end(row, column) - nfa.start(row, column);
 
-        return null;
+        CompileMetrics.count(CompileCounter.NFA_STATES, nfa.stateCount());
+        CompileMetrics.count(CompileCounter.NFA_EDGES,
+                nfa.edgeCount() - epsilon);
+        CompileMetrics.count(CompileCounter.EPSILON_EDGES, epsilon);
     }
 
     /**
@@ -201,6 +207,28 @@ public class NFA extends FSM {
         return dfa;
     }
 
+    /**
+     * Creates the minimum DFA and takes an immutable snapshot of it,
+     * which can be shared between threads.
+     *
+     * @return the compiled automaton
+     */
+    public CompiledAutomaton compile() {
+
+        return this.createMinimumDFA().compile();
+    }
+
+    /**
+     * Creates a matcher which builds the DFA states on demand.
+     *
+     * @param capacity the maximum number of cached DFA states
+     * @return the lazy DFA matcher
+     */
+    public LazyDFAMatcher createLazyMatcher(int capacity) {
+
+        return new LazyDFAMatcher(this, capacity);
+    }
+
     /**
      * Gets the non final states.
      *
@@ -210,12 +238,9 @@ public class NFA extends FSM {
 
         ArrayList<Integer> nonFinalStates = new ArrayList<Integer>();
 
-        for (ArrayList<ArrayList<Integer>> column : this.stmat) {
-
-            int state = column.get(0).get(0);
-            if (state == 0)
-                continue;
+        for (int row = 0; row < this.matrix.stateCount(); row++) {
 
+            int state = this.matrix.stateId(row);
             if (!(this.getFinalStates().contains(state)))
                 nonFinalStates.add(state);
         }
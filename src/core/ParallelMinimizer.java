@@ -0,0 +1,436 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Class ParallelMinimizer.
+ * This class finds the coarsest partition of the states of a DFA with
+ * rounds of signature refinement, run on a fork/join pool.
+ *
+ * The signature of a state is the list of blocks its transitions go to,
+ * an empty cell being a block of its own. Every round hashes all the
+ * signatures in parallel, then sorts every block by hash in parallel
+ * and splits it where the signatures differ. Equal hashes are checked
+ * against the full signature, so the result does not depend on the
+ * hash and is the same as the one of HopcroftMinimizer.
+ *
+ */
+final class ParallelMinimizer {
+
+    /** The number of states below which a task is not split. */
+    private static final int THRESHOLD = 4096;
+
+    /** The dense table of the DFA, -1 for an empty cell. */
+    private final int[] dense;
+
+    /** The number of states. */
+    private final int states;
+
+    /** The number of letters. */
+    private final int letters;
+
+    /** The states, each block is a contiguous range. */
+    private final int[] elements;
+
+    /** The block of every state. */
+    private final int[] blockOf;
+
+    /** The first element of every block, and the end of the last one. */
+    private int[] first;
+
+    /** The number of blocks. */
+    private int blocks;
+
+    /** The sort keys of the elements, hash in the high half. */
+    private final long[] keys;
+
+    /** The number of new blocks every block splits into. */
+    private int[] splits;
+
+    /** The number of refinement rounds. */
+    private int rounds;
+
+    /**
+     * Instantiates a new parallel minimizer.
+     *
+     * @param dense the dense table of the DFA, -1 for an empty cell
+     * @param states the number of DFA states
+     * @param letters the number of letters
+     */
+    private ParallelMinimizer(int[] dense, int states, int letters) {
+
+        this.dense = dense;
+        this.states = states;
+        this.letters = letters;
+        this.elements = new int[states];
+        this.blockOf = new int[states];
+        this.keys = new long[states];
+    }
+
+    /**
+     * Finds the coarsest partition of the states of a DFA.
+     *
+     * @param dfa the compact transition matrix of the DFA
+     * @param initial the initial block of every row, numbered from 0
+     * @param threads the number of worker threads
+     * @return the partition of the state names, in no particular order
+     */
+    static Partition minimize(CompactTransitionMatrix dfa, int[] initial,
+            int threads) {
+
+        int rows = dfa.stateCount();
+
+        ParallelMinimizer minimizer = new ParallelMinimizer(dfa.toDense(),
+                rows, dfa.symbolCount());
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            pool.invoke(new RecursiveAction() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+
+                    minimizer.refine(initial);
+                }
+            });
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        Partition partition = new Partition();
+        for (int block = 0; block < minimizer.blocks; block++) {
+
+            ArrayList<Integer> set = new ArrayList<Integer>();
+            for (int i = minimizer.first[block];
+                    i < minimizer.first[block + 1]; i++)
+                set.add(dfa.stateId(minimizer.elements[i]));
+            partition.addSet(set);
+        }
+        partition.setRounds(minimizer.rounds);
+        return partition;
+    }
+
+    /**
+     * Refines the initial partition until a round does not split any
+     * block. Runs inside the pool.
+     *
+     * @param initial the initial block of every DFA state
+     */
+    private void refine(int[] initial) {
+
+        /** The initial blocks in order, each one a range of elements. */
+        int[] order = Partition.groupBy(initial);
+        this.first = new int[this.states + 1];
+        for (int i = 0; i < this.states; i++) {
+
+            if (i > 0 && initial[order[i]] != initial[order[i - 1]])
+                this.first[++this.blocks] = i;
+
+            this.elements[i] = order[i];
+            this.blockOf[order[i]] = this.blocks;
+        }
+        this.first[++this.blocks] = this.states;
+
+        while (true) {
+
+            this.rounds++;
+
+            /** Hash every signature against the blocks of this round. */
+            new Hasher(0, this.states).invoke();
+
+            /** Sort and split every block on its own. */
+            this.splits = new int[this.blocks];
+            new Splitter(0, this.blocks).invoke();
+
+            int[] base = new int[this.blocks + 1];
+            for (int block = 0; block < this.blocks; block++)
+                base[block + 1] = base[block] + this.splits[block];
+
+            /** Number the new blocks in the order of the old ones. */
+            int[] nextFirst = new int[base[this.blocks] + 1];
+            nextFirst[base[this.blocks]] = this.states;
+            new Relabeler(0, this.blocks, base, nextFirst).invoke();
+
+            boolean stable = (base[this.blocks] == this.blocks);
+            this.first = nextFirst;
+            this.blocks = base[this.blocks];
+
+            if (stable)
+                return;
+        }
+    }
+
+    /**
+     * Gets the block of a transition, -1 for an empty cell.
+     *
+     * @param state the state
+     * @param letter the letter
+     * @return the block of the target
+     */
+    private int targetBlock(int state, int letter) {
+
+        int target = this.dense[state * this.letters + letter];
+        return (target < 0) ? -1 : this.blockOf[target];
+    }
+
+    /**
+     * Compares the signatures of two states of the same block.
+     *
+     * @param state1 the first state
+     * @param state2 the second state
+     * @return the order of the signatures
+     */
+    private int compareSignatures(int state1, int state2) {
+
+        for (int letter = 0; letter < this.letters; letter++) {
+
+            int order = Integer.compare(this.targetBlock(state1, letter),
+                    this.targetBlock(state2, letter));
+            if (order != 0)
+                return order;
+        }
+        return 0;
+    }
+
+    /**
+     * Splits a block where the signatures of its sorted elements differ
+     * and marks every new block by a negative element.
+     *
+     * @param block the block
+     * @return the number of new blocks
+     */
+    private int splitBlock(int block) {
+
+        int from = this.first[block];
+        int to = this.first[block + 1];
+
+        if (to - from > THRESHOLD)
+            Arrays.parallelSort(this.keys, from, to);
+        else
+            Arrays.sort(this.keys, from, to);
+
+        int count = 0;
+        int run = from;
+        while (run < to) {
+
+            /** A run of equal hashes, usually of equal signatures. */
+            int runEnd = run + 1;
+            while (runEnd < to
+                    && (this.keys[runEnd] >>> 32) == (this.keys[run] >>> 32))
+                runEnd++;
+
+            boolean equal = true;
+            for (int i = run + 1; i < runEnd && equal; i++)
+                equal = this.compareSignatures((int) this.keys[run],
+                        (int) this.keys[i]) == 0;
+
+            if (!equal) {
+
+                /** A hash collision, sort the run by signature. */
+                Integer[] runStates = new Integer[runEnd - run];
+                for (int i = run; i < runEnd; i++)
+                    runStates[i - run] = (int) this.keys[i];
+
+                Arrays.sort(runStates, (x, y) -> {
+                    int order = this.compareSignatures(x, y);
+                    return (order != 0) ? order : Integer.compare(x, y);
+                });
+
+                for (int i = run; i < runEnd; i++) {
+
+                    boolean starts = (i == run) || this.compareSignatures(
+                            runStates[i - run - 1], runStates[i - run]) != 0;
+                    this.elements[i] = starts ?
+                            ~runStates[i - run] : runStates[i - run];
+                    if (starts)
+                        count++;
+                }
+            }
+            else {
+
+                this.elements[run] = ~(int) this.keys[run];
+                for (int i = run + 1; i < runEnd; i++)
+                    this.elements[i] = (int) this.keys[i];
+                count++;
+            }
+
+            run = runEnd;
+        }
+
+        return count;
+    }
+
+    /**
+     * The Class Hasher.
+     * Computes the sort key of every element of a range.
+     */
+    private final class Hasher extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The first element. */
+        private final int from;
+
+        /** The element after the last one. */
+        private final int to;
+
+        /**
+         * Instantiates a new hasher.
+         *
+         * @param from the first element
+         * @param to the element after the last one
+         */
+        Hasher(int from, int to) {
+
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (this.to - this.from > THRESHOLD) {
+
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Hasher(this.from, middle),
+                        new Hasher(middle, this.to));
+                return;
+            }
+
+            for (int i = this.from; i < this.to; i++) {
+
+                int state = ParallelMinimizer.this.elements[i];
+                long hash = 0x9E3779B97F4A7C15L;
+                for (int letter = 0; letter < ParallelMinimizer.this.letters;
+                        letter++) {
+
+                    hash = (hash ^ ParallelMinimizer.this.targetBlock(state,
+                            letter)) * 0xBF58476D1CE4E5B9L;
+                    hash ^= hash >>> 31;
+                }
+
+                ParallelMinimizer.this.keys[i] = (hash & 0xFFFFFFFF00000000L)
+                        | state;
+            }
+        }
+    }
+
+    /**
+     * The Class Splitter.
+     * Splits a range of blocks.
+     */
+    private final class Splitter extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The first block. */
+        private final int from;
+
+        /** The block after the last one. */
+        private final int to;
+
+        /**
+         * Instantiates a new splitter.
+         *
+         * @param from the first block
+         * @param to the block after the last one
+         */
+        Splitter(int from, int to) {
+
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            int[] first = ParallelMinimizer.this.first;
+            if (this.to - this.from > 1
+                    && first[this.to] - first[this.from] > THRESHOLD) {
+
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Splitter(this.from, middle),
+                        new Splitter(middle, this.to));
+                return;
+            }
+
+            for (int block = this.from; block < this.to; block++)
+                ParallelMinimizer.this.splits[block] =
+                ParallelMinimizer.this.splitBlock(block);
+        }
+    }
+
+    /**
+     * The Class Relabeler.
+     * Numbers the new blocks of a range of old blocks.
+     */
+    private final class Relabeler extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The first old block. */
+        private final int from;
+
+        /** The old block after the last one. */
+        private final int to;
+
+        /** The first new block of every old block. */
+        private final int[] base;
+
+        /** The first element of every new block. */
+        private final int[] nextFirst;
+
+        /**
+         * Instantiates a new relabeler.
+         *
+         * @param from the first old block
+         * @param to the old block after the last one
+         * @param base the first new block of every old block
+         * @param nextFirst the first element of every new block
+         */
+        Relabeler(int from, int to, int[] base, int[] nextFirst) {
+
+            this.from = from;
+            this.to = to;
+            this.base = base;
+            this.nextFirst = nextFirst;
+        }
+
+        @Override
+        protected void compute() {
+
+            int[] first = ParallelMinimizer.this.first;
+            if (this.to - this.from > 1
+                    && first[this.to] - first[this.from] > THRESHOLD) {
+
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Relabeler(this.from, middle, this.base,
+                        this.nextFirst), new Relabeler(middle, this.to,
+                        this.base, this.nextFirst));
+                return;
+            }
+
+            int[] elements = ParallelMinimizer.this.elements;
+            int[] blockOf = ParallelMinimizer.this.blockOf;
+            for (int block = this.from; block < this.to; block++) {
+
+                int current = this.base[block] - 1;
+                for (int i = first[block]; i < first[block + 1]; i++) {
+
+                    if (elements[i] < 0) {
+
+                        elements[i] = ~elements[i];
+                        this.nextFirst[++current] = i;
+                    }
+                    blockOf[elements[i]] = current;
+                }
+            }
+        }
+    }
+}
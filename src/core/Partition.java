@@ -1,6 +1,7 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * The Class Partition.
@@ -10,6 +11,9 @@ public class Partition {
     /** The sets. */
     private ArrayList<ArrayList<Integer>> sets;
 
+    /** The number of refinement rounds which led to the partition. */
+    private int rounds;
+
     /**
      * Instantiates a new partition.
      */
@@ -38,6 +42,26 @@ public class Partition {
         this.sets = sets;
     }
 
+    /**
+     * Gets the number of refinement rounds which led to the partition.
+     *
+     * @return the rounds
+     */
+    public int getRounds() {
+
+        return rounds;
+    }
+
+    /**
+     * Sets the number of refinement rounds which led to the partition.
+     *
+     * @param rounds the rounds
+     */
+    public void setRounds(int rounds) {
+
+        this.rounds = rounds;
+    }
+
     /**
      * Adds the new set.
      *
@@ -48,6 +72,45 @@ public class Partition {
         this.sets.add(set);
     }
 
+    /**
+     * Sorts the partition into its canonical order.
+     * Every set is sorted and the sets are ordered by their smallest
+     * state, so every refinement strategy gives the same order.
+     * Empty sets are dropped.
+     */
+    public void sort() {
+
+        this.sets.removeIf(set -> set.isEmpty());
+        this.sets.forEach(set -> Collections.sort(set));
+        this.sets.sort((x, y) -> Integer.compare(x.get(0), y.get(0)));
+    }
+
+    /**
+     * Orders the rows of a DFA by their initial block, with a counting
+     * sort which keeps the rows of a block in increasing order.
+     *
+     * @param blocks the block of every row, numbered from 0
+     * @return the rows, grouped by block
+     */
+    static int[] groupBy(int[] blocks) {
+
+        int count = 0;
+        for (int block : blocks)
+            count = Math.max(count, block + 1);
+
+        int[] offsets = new int[count + 1];
+        for (int block : blocks)
+            offsets[block + 1]++;
+        for (int block = 0; block < count; block++)
+            offsets[block + 1] += offsets[block];
+
+        int[] order = new int[blocks.length];
+        for (int row = 0; row < blocks.length; row++)
+            order[offsets[blocks[row]]++] = row;
+
+        return order;
+    }
+
     /**
      * Checks for state whether exists in any set.
      *
@@ -95,47 +158,61 @@ public class Partition {
      * Returns the set number.
      *
      * @param state the state
-     * @return the integer
+     * @return the set number, -1 if the state is in no set
      */
-    private Integer setNumber(Integer state) {
+    private int setNumber(Integer state) {
         for (ArrayList<Integer> set : this.sets) {
 
             if (set.contains(state))
                 return this.sets.indexOf(set);
         }
-        return null;
+        return -1;
     }
 
     /**
      * Make the next partitioning.
+     * Every set is split by the blocks its states go to, a state joining
+     * the set of the first state it agrees with on every letter.
      *
-     * @param stmat the state transition matrix
-     * @return the next partition
+     * @param dfa the compact transition matrix of the DFA
+     * @return the next partition, this one if no set was split
      */
-    Partition makeNextPartitioning(StateTransitionMatrix stmat) {
+    Partition makeNextPartitioning(CompactTransitionMatrix dfa) {
+
+        /** The block of every row. */
+        int[] blockOf = new int[dfa.stateCount()];
+        for (int block = 0; block < this.sets.size(); block++)
+            for (Integer state : this.sets.get(block))
+                blockOf[dfa.row(state)] = block;
 
         boolean anyDistinguishable = false;
+        boolean[] placed = new boolean[dfa.stateCount()];
         Partition newPartition = new Partition();
 
         for (ArrayList<Integer> set : this.getSets()) {
 
-            for (Integer state : set) {
+            for (int i = 0; i < set.size(); i++) {
 
-                if (newPartition.hasState(state))
+                int row = dfa.row(set.get(i));
+                if (placed[row])
                     continue;
 
                 ArrayList<Integer> newSet = new ArrayList<Integer>();
-                newSet.add(state);
+                newSet.add(set.get(i));
+                placed[row] = true;
 
-                for (int i = set.indexOf(state) + 1; i < set.size(); i++) {
+                for (int j = i + 1; j < set.size(); j++) {
 
-                    if (this.areDistinguished(state, set.get(i), stmat)) {
+                    int other = dfa.row(set.get(j));
+                    if (Partition.areDistinguished(row, other, dfa,
+                            blockOf)) {
 
                         anyDistinguishable = true;
                     }
-                    else {
+                    else if (!placed[other]) {
 
-                        newSet.add(set.get(i));
+                        newSet.add(set.get(j));
+                        placed[other] = true;
                     }
                 }
                 newPartition.addSet(newSet);
@@ -149,28 +226,34 @@ public class Partition {
         return newPartition;
     }
 
-
     /**
-     * Checks whether two states are indistinguishable or not.
+     * Checks whether two states are distinguished by the blocks their
+     * cells go to. Two cells agree if they have the same size and all
+     * their targets are in one block.
      *
-     * @param state1 the state 1
-     * @param state2 the state 2
-     * @param stmat the state transition matrix
-     * @return true, if successful
+     * @param row1 the row of the state 1
+     * @param row2 the row of the state 2
+     * @param dfa the compact transition matrix of the DFA
+     * @param blockOf the block of every row
+     * @return true, if some letter tells the states apart
      */
-    private boolean areDistinguished(Integer state1, Integer state2,
-            StateTransitionMatrix stmat) {
+    private static boolean areDistinguished(int row1, int row2,
+            CompactTransitionMatrix dfa, int[] blockOf) {
 
-        ArrayList<ArrayList<Integer>> col1 = StateTransitionMatrix.
-                retrieveColumn(stmat, state1);
-        ArrayList<ArrayList<Integer>> col2 = StateTransitionMatrix.
-                retrieveColumn(stmat, state2);
+        for (int column = 0; column < dfa.symbolCount(); column++) {
 
-        for (int index = 1; index < col1.size(); index++) {
+            int start1 = dfa.start(row1, column);
+            int end1 = dfa.end(row1, column);
+            int start2 = dfa.start(row2, column);
+            int end2 = dfa.end(row2, column);
 
-            if (!(this.haveSimilarSets(col1.get(index),
-                    col2.get(index))))
+            if (end1 - start1 != end2 - start2)
                 return true;
+
+            for (int i = start1; i < end1; i++)
+                for (int j = start2; j < end2; j++)
+                    if (blockOf[dfa.target(i)] != blockOf[dfa.target(j)])
+                        return true;
         }
 
         return false;
@@ -0,0 +1,28 @@
+package core;
+
+/**
+ * The Class Postfix.
+ * The postfix forms of one or several RegExes, parsed together so that
+ * they share their letters, see RegExParser.parse.
+ *
+ */
+final class Postfix {
+
+    /** The postfix form of every RegEx. */
+    final int[][] forms;
+
+    /** The chars every letter stands for. */
+    final LetterRanges letters;
+
+    /**
+     * Instantiates new postfix forms.
+     *
+     * @param forms the postfix form of every RegEx
+     * @param letters the chars every letter stands for
+     */
+    Postfix(int[][] forms, LetterRanges letters) {
+
+        this.forms = forms;
+        this.letters = letters;
+    }
+}
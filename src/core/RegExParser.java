@@ -0,0 +1,646 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+import utils.Chars;
+
+/**
+ * The Class RegExParser.
+ * This class parses a regular expression once into postfix form using
+ * the shunting-yard algorithm. Letters are kept as non negative numbers
+ * and operators are encoded as negative numbers.
+ *
+ * Concatenation may be written as "." or left implicit, the Kleene
+ * star binds tighter than concatenation, which binds tighter than union.
+ *
+ * An operand is a char, an escaped char such as "\*", a character class
+ * such as "[a-z0-9]" or "[^,]", or the wildcard: a "." where an operand
+ * is expected, so "a.b" is still a concatenation while "a..b" and "(.)"
+ * hold a wildcard. Operands are sets of chars kept as ranges. All the
+ * operands of the RegExes parsed together split the chars into classes
+ * of chars which no operand tells apart, and every class becomes one
+ * letter, so a range costs a few letters at most however many chars it
+ * holds, see LetterRanges.
+ *
+ * With Encoding.UTF8 the operands are ranges of code points instead,
+ * each rewritten as the union of its UTF-8 byte sequences, and the
+ * letters are classes of bytes, see Utf8Sequences.
+ *
+ */
+final class RegExParser {
+
+    /** The concatenation operator. */
+    static final int CONCAT = -2;
+
+    /** The union operator. */
+    static final int UNION = -3;
+
+    /** The Kleene star operator. */
+    static final int STAR = -4;
+
+    /** The open parenthesis, only used on the operator stack. */
+    private static final int OPEN = -5;
+
+    /** The first printable char after the space. */
+    private static final int PRINTABLE = '!';
+
+    /**
+     * Instantiates a new RegEx parser.
+     */
+    private RegExParser() {
+
+    }
+
+    /**
+     * Parses regular expressions into postfix form, with shared letters.
+     *
+     * @param regexes the input RegExes
+     * @return the postfix forms and the chars of every letter
+     * @throws IllegalArgumentException if a RegEx is malformed
+     */
+    static Postfix parse(String... regexes) {
+
+        return RegExParser.parse(Encoding.UTF16, regexes);
+    }
+
+    /**
+     * Parses regular expressions into postfix form, with shared letters.
+     *
+     * @param encoding the units the letters are made of
+     * @param regexes the input RegExes
+     * @return the postfix forms and the units of every letter
+     * @throws IllegalArgumentException if a RegEx is malformed
+     */
+    static Postfix parse(Encoding encoding, String... regexes) {
+
+        long nanos = CompileMetrics.startNanos();
+        long bytes = CompileMetrics.startBytes();
+
+        /** The operands as sorted ranges, low and high symbol in turn. */
+        ArrayList<int[]> operands = new ArrayList<int[]>();
+        HashMap<List<Integer>, Integer> index =
+                new HashMap<List<Integer>, Integer>();
+
+        int[][] forms = new int[regexes.length][];
+        for (int i = 0; i < regexes.length; i++)
+            forms[i] = RegExParser.toPostfix(regexes[i], encoding, operands,
+                    index);
+
+        if (encoding == Encoding.UTF8)
+            operands = RegExParser.toBytes(forms, operands);
+
+        int[][] lettersOf = new int[operands.size()][];
+        LetterRanges letters = RegExParser.partition(operands, lettersOf);
+
+        /** An operand of several letters becomes their union. */
+        for (int i = 0; i < forms.length; i++) {
+
+            int size = 0;
+            for (int token : forms[i])
+                size += (token >= 0) ? 2 * lettersOf[token].length - 1 : 1;
+
+            int[] form = new int[size];
+            int length = 0;
+            for (int token : forms[i]) {
+
+                if (token < 0) {
+
+                    form[length++] = token;
+                    continue;
+                }
+
+                form[length++] = lettersOf[token][0];
+                for (int j = 1; j < lettersOf[token].length; j++) {
+
+                    form[length++] = lettersOf[token][j];
+                    form[length++] = UNION;
+                }
+            }
+            forms[i] = form;
+        }
+
+        CompileMetrics.record(CompileStage.NORMALIZE, nanos, bytes);
+        return new Postfix(forms, letters);
+    }
+
+    /**
+     * Parses a regular expression into postfix form, with the operands as
+     * indices into a list.
+     *
+     * @param regex the input RegEx
+     * @param encoding the units the letters are made of
+     * @param operands the operands found so far
+     * @param index the index of every operand found so far
+     * @return the postfix form
+     * @throws IllegalArgumentException if the RegEx is malformed
+     */
+    private static int[] toPostfix(String regex, Encoding encoding,
+            ArrayList<int[]> operands, HashMap<List<Integer>, Integer> index) {
+
+        int[] output = new int[2 * regex.length()];
+        int[] operators = new int[regex.length() + 1];
+        int outputSize = 0;
+        int operatorSize = 0;
+
+        /** True right after an operand, a closing parenthesis or a star. */
+        boolean operandEnded = false;
+
+        for (int i = 0; i < regex.length(); i++) {
+
+            char ch = regex.charAt(i);
+
+            if (ch == Chars.kleene_star) {
+
+                RegExParser.expect(operandEnded, regex, i);
+                output[outputSize++] = STAR;
+                continue;
+            }
+
+            if (ch == Chars.union
+                    || (ch == Chars.concatenation && operandEnded)) {
+
+                RegExParser.expect(operandEnded, regex, i);
+
+                int operator = (ch == Chars.union) ? UNION : CONCAT;
+                while (operatorSize > 0 && operators[operatorSize - 1] != OPEN
+                        && RegExParser.precedence(operators[operatorSize - 1])
+                        >= RegExParser.precedence(operator))
+                    output[outputSize++] = operators[--operatorSize];
+
+                operators[operatorSize++] = operator;
+                operandEnded = false;
+                continue;
+            }
+
+            if (ch == Chars.close_parenthesis) {
+
+                RegExParser.expect(operandEnded, regex, i);
+
+                while (operatorSize > 0 && operators[operatorSize - 1] != OPEN)
+                    output[outputSize++] = operators[--operatorSize];
+
+                RegExParser.expect(operatorSize > 0, regex, i);
+                operatorSize--;
+                continue;
+            }
+
+            /** An operand starts here, the concatenation may be implicit. */
+            if (operandEnded) {
+
+                while (operatorSize > 0 && operators[operatorSize - 1] != OPEN
+                        && RegExParser.precedence(operators[operatorSize - 1])
+                        >= RegExParser.precedence(CONCAT))
+                    output[outputSize++] = operators[--operatorSize];
+
+                operators[operatorSize++] = CONCAT;
+            }
+
+            if (ch == Chars.open_parenthesis) {
+
+                operators[operatorSize++] = OPEN;
+                operandEnded = false;
+                continue;
+            }
+
+            int[] ranges;
+            if (ch == Chars.open_bracket) {
+
+                ArrayList<Integer> bounds = new ArrayList<Integer>();
+                i = RegExParser.parseClass(regex, i, encoding, bounds);
+                ranges = RegExParser.toRanges(bounds);
+                RegExParser.expect(ranges.length > 0, regex, i);
+            }
+            else if (ch == Chars.wildcard) {
+
+                ranges = new int[] { 0, RegExParser.maxSymbol(encoding) };
+            }
+            else {
+
+                if (ch == Chars.escape) {
+
+                    RegExParser.expect(i + 1 < regex.length(), regex, i);
+                    i++;
+                }
+                int symbol = RegExParser.symbolAt(regex, i, encoding);
+                i += RegExParser.width(symbol, encoding) - 1;
+                ranges = new int[] { symbol, symbol };
+            }
+
+            output[outputSize++] = RegExParser.operand(ranges, operands,
+                    index);
+            operandEnded = true;
+        }
+
+        RegExParser.expect(operandEnded, regex, regex.length());
+
+        while (operatorSize > 0) {
+
+            RegExParser.expect(operators[operatorSize - 1] != OPEN,
+                    regex, regex.length());
+            output[outputSize++] = operators[--operatorSize];
+        }
+
+        return Arrays.copyOf(output, outputSize);
+    }
+
+    /**
+     * Parses a character class.
+     *
+     * @param regex the input RegEx
+     * @param open the index of the open bracket
+     * @param encoding the units the letters are made of
+     * @param bounds receives the low and high symbol of every range, in
+     *        turn, negated if the class is
+     * @return the index of the close bracket
+     */
+    private static int parseClass(String regex, int open, Encoding encoding,
+            ArrayList<Integer> bounds) {
+
+        int i = open + 1;
+        boolean negated = i < regex.length()
+                && regex.charAt(i) == Chars.negation;
+        if (negated)
+            i++;
+
+        ArrayList<Integer> ranges = new ArrayList<Integer>();
+        while (true) {
+
+            RegExParser.expect(i < regex.length(), regex, i);
+            if (regex.charAt(i) == Chars.close_bracket)
+                break;
+
+            if (regex.charAt(i) == Chars.escape) {
+
+                RegExParser.expect(i + 1 < regex.length(), regex, i);
+                i++;
+            }
+            int low = RegExParser.symbolAt(regex, i, encoding);
+            int high = low;
+            i += RegExParser.width(low, encoding);
+
+            /** A range, unless the dash is the last char of the class. */
+            if (i + 1 < regex.length() && regex.charAt(i) == Chars.range
+                    && regex.charAt(i + 1) != Chars.close_bracket) {
+
+                i++;
+                if (regex.charAt(i) == Chars.escape) {
+
+                    RegExParser.expect(i + 1 < regex.length(), regex, i);
+                    i++;
+                }
+                high = RegExParser.symbolAt(regex, i, encoding);
+                RegExParser.expect(low <= high, regex, i);
+                i += RegExParser.width(high, encoding);
+            }
+
+            ranges.add(low);
+            ranges.add(high);
+        }
+
+        if (!negated) {
+
+            bounds.addAll(ranges);
+            return i;
+        }
+
+        /** The complement of the ranges. */
+        int[] sorted = RegExParser.toRanges(ranges);
+        int max = RegExParser.maxSymbol(encoding);
+        int low = 0;
+        for (int r = 0; r < sorted.length; r += 2) {
+
+            if (sorted[r] > low) {
+
+                bounds.add(low);
+                bounds.add(sorted[r] - 1);
+            }
+            low = sorted[r + 1] + 1;
+        }
+        if (low <= max) {
+
+            bounds.add(low);
+            bounds.add(max);
+        }
+        return i;
+    }
+
+    /**
+     * Reads a symbol: a char, or a code point with Encoding.UTF8.
+     *
+     * @param regex the input RegEx
+     * @param i the index of the symbol
+     * @param encoding the units the letters are made of
+     * @return the symbol
+     */
+    private static int symbolAt(String regex, int i, Encoding encoding) {
+
+        return (encoding == Encoding.UTF8) ? regex.codePointAt(i)
+                : regex.charAt(i);
+    }
+
+    /**
+     * Gets the number of chars of a symbol in the RegEx.
+     *
+     * @param symbol the symbol
+     * @param encoding the units the letters are made of
+     * @return the number of chars
+     */
+    private static int width(int symbol, Encoding encoding) {
+
+        return (encoding == Encoding.UTF8) ? Character.charCount(symbol) : 1;
+    }
+
+    /**
+     * Gets the largest symbol, for the wildcard and negated classes.
+     *
+     * @param encoding the units the letters are made of
+     * @return the largest char or code point
+     */
+    private static int maxSymbol(Encoding encoding) {
+
+        return (encoding == Encoding.UTF8) ? Character.MAX_CODE_POINT
+                : Character.MAX_VALUE;
+    }
+
+    /**
+     * Rewrites every code point operand as the union of its UTF-8 byte
+     * sequences, each one the concatenation of its byte ranges.
+     *
+     * @param forms the postfix forms, rewritten in place
+     * @param operands the code point ranges of every operand
+     * @return the byte ranges of every new operand
+     * @throws IllegalArgumentException if an operand has no UTF-8 form,
+     *         holding only surrogates
+     */
+    private static ArrayList<int[]> toBytes(int[][] forms,
+            ArrayList<int[]> operands) {
+
+        ArrayList<int[]> bytes = new ArrayList<int[]>();
+        HashMap<List<Integer>, Integer> index =
+                new HashMap<List<Integer>, Integer>();
+
+        /** The postfix fragment of every code point operand. */
+        ArrayList<ArrayList<Integer>> fragments =
+                new ArrayList<ArrayList<Integer>>();
+        for (int[] ranges : operands) {
+
+            ArrayList<int[]> sequences = new ArrayList<int[]>();
+            for (int r = 0; r < ranges.length; r += 2)
+                Utf8Sequences.add(ranges[r], ranges[r + 1], sequences);
+
+            if (sequences.isEmpty())
+                throw new IllegalArgumentException("Character class has no "
+                        + "UTF-8 form");
+
+            ArrayList<Integer> fragment = new ArrayList<Integer>();
+            for (int s = 0; s < sequences.size(); s++) {
+
+                int[] sequence = sequences.get(s);
+                for (int b = 0; b < sequence.length; b += 2) {
+
+                    fragment.add(RegExParser.operand(new int[] {
+                            sequence[b], sequence[b + 1] }, bytes, index));
+                    if (b > 0)
+                        fragment.add(CONCAT);
+                }
+                if (s > 0)
+                    fragment.add(UNION);
+            }
+            fragments.add(fragment);
+        }
+
+        for (int i = 0; i < forms.length; i++) {
+
+            ArrayList<Integer> form = new ArrayList<Integer>();
+            for (int token : forms[i]) {
+
+                if (token >= 0)
+                    form.addAll(fragments.get(token));
+                else
+                    form.add(token);
+            }
+
+            forms[i] = new int[form.size()];
+            for (int j = 0; j < forms[i].length; j++)
+                forms[i][j] = form.get(j);
+        }
+        return bytes;
+    }
+
+    /**
+     * Sorts ranges and merges the ones which overlap or touch.
+     *
+     * @param bounds the low and high char of every range, in turn
+     * @return the sorted ranges, low and high char in turn
+     */
+    private static int[] toRanges(ArrayList<Integer> bounds) {
+
+        Integer[] order = new Integer[bounds.size() / 2];
+        for (int r = 0; r < order.length; r++)
+            order[r] = r;
+        Arrays.sort(order, (x, y) -> Integer.compare(bounds.get(2 * x),
+                bounds.get(2 * y)));
+
+        int[] ranges = new int[bounds.size()];
+        int size = 0;
+        for (int r : order) {
+
+            int low = bounds.get(2 * r);
+            int high = bounds.get(2 * r + 1);
+
+            if (size > 0 && low <= ranges[size - 1] + 1)
+                ranges[size - 1] = Math.max(ranges[size - 1], high);
+            else {
+
+                ranges[size++] = low;
+                ranges[size++] = high;
+            }
+        }
+        return Arrays.copyOf(ranges, size);
+    }
+
+    /**
+     * Gets the index of an operand, adding it if it is new.
+     *
+     * @param ranges the sorted ranges of the operand
+     * @param operands the operands found so far
+     * @param index the index of every operand found so far
+     * @return the index of the operand
+     */
+    private static int operand(int[] ranges, ArrayList<int[]> operands,
+            HashMap<List<Integer>, Integer> index) {
+
+        ArrayList<Integer> key = new ArrayList<Integer>();
+        for (int bound : ranges)
+            key.add(bound);
+
+        Integer known = index.get(key);
+        if (known == null) {
+
+            known = operands.size();
+            index.put(key, known);
+            operands.add(ranges);
+        }
+        return known;
+    }
+
+    /**
+     * Splits the chars into the classes of chars which belong to the
+     * same operands. Every class becomes a letter, named after its
+     * smallest printable char, or its smallest char if none is, but
+     * never 0.
+     *
+     * @param operands the sorted ranges of every operand
+     * @param lettersOf receives the sorted letters of every operand
+     * @return the chars of every letter
+     */
+    private static LetterRanges partition(ArrayList<int[]> operands,
+            int[][] lettersOf) {
+
+        /** The elementary intervals, between two consecutive bounds. */
+        TreeSet<Integer> boundSet = new TreeSet<Integer>();
+        for (int[] ranges : operands) {
+
+            for (int r = 0; r < ranges.length; r += 2) {
+
+                boundSet.add(ranges[r]);
+                boundSet.add(ranges[r + 1] + 1);
+            }
+        }
+
+        int[] bounds = new int[boundSet.size()];
+        int n = 0;
+        for (int bound : boundSet)
+            bounds[n++] = bound;
+
+        /** The operands of every elementary interval. */
+        ArrayList<ArrayList<Integer>> members =
+                new ArrayList<ArrayList<Integer>>();
+        for (int k = 0; k < n; k++)
+            members.add(new ArrayList<Integer>());
+
+        for (int op = 0; op < operands.size(); op++) {
+
+            int[] ranges = operands.get(op);
+            for (int r = 0; r < ranges.length; r += 2) {
+
+                for (int k = Arrays.binarySearch(bounds, ranges[r]);
+                        bounds[k] <= ranges[r + 1]; k++)
+                    members.get(k).add(op);
+            }
+        }
+
+        /** Intervals with the same operands make a class. */
+        HashMap<List<Integer>, Integer> classes =
+                new HashMap<List<Integer>, Integer>();
+        int[] classOf = new int[n];
+        ArrayList<Integer> names = new ArrayList<Integer>();
+        for (int k = 0; k < n; k++) {
+
+            classOf[k] = -1;
+            if (members.get(k).isEmpty())
+                continue;
+
+            Integer cls = classes.get(members.get(k));
+            if (cls == null) {
+
+                cls = names.size();
+                classes.put(members.get(k), cls);
+                names.add(bounds[k]);
+            }
+            classOf[k] = cls;
+
+            /** Prefer a printable name, for the tables printed. */
+            if (names.get(cls) < PRINTABLE && bounds[k + 1] > PRINTABLE)
+                names.set(cls, Math.max(bounds[k], PRINTABLE));
+
+            /** 0 heads the alphabet of a matrix, so it names no class. */
+            int lowest = Math.max(bounds[k], 1);
+            if (names.get(cls) == 0 && lowest < bounds[k + 1])
+                names.set(cls, lowest);
+        }
+
+        /** A class of 0 alone is named after a char in no class. */
+        for (int cls = 0; cls < names.size(); cls++)
+            if (names.get(cls) == 0)
+                names.set(cls, bounds[n - 1]);
+
+        int[] letterOf = new int[n];
+        for (int k = 0; k < n; k++)
+            letterOf[k] = (classOf[k] < 0) ? LetterRanges.NONE
+                    : names.get(classOf[k]);
+
+        for (int op = 0; op < operands.size(); op++) {
+
+            TreeSet<Integer> letters = new TreeSet<Integer>();
+            int[] ranges = operands.get(op);
+            for (int r = 0; r < ranges.length; r += 2) {
+
+                for (int k = Arrays.binarySearch(bounds, ranges[r]);
+                        bounds[k] <= ranges[r + 1]; k++)
+                    letters.add(letterOf[k]);
+            }
+
+            lettersOf[op] = new int[letters.size()];
+            int j = 0;
+            for (int letter : letters)
+                lettersOf[op][j++] = letter;
+        }
+
+        /** One interval per run of chars of the same letter. */
+        ArrayList<Integer> starts = new ArrayList<Integer>();
+        ArrayList<Integer> letters = new ArrayList<Integer>();
+        starts.add(0);
+        letters.add(LetterRanges.NONE);
+
+        for (int k = 0; k < n; k++) {
+
+            int last = starts.size() - 1;
+            if (starts.get(last) == bounds[k])
+                letters.set(last, letterOf[k]);
+            else if (letters.get(last) != letterOf[k]) {
+
+                starts.add(bounds[k]);
+                letters.add(letterOf[k]);
+            }
+        }
+
+        int[] startArray = new int[starts.size()];
+        int[] letterArray = new int[letters.size()];
+        for (int i = 0; i < startArray.length; i++) {
+
+            startArray[i] = starts.get(i);
+            letterArray[i] = letters.get(i);
+        }
+        return new LetterRanges(startArray, letterArray);
+    }
+
+    /**
+     * Gets the precedence of a binary operator.
+     *
+     * @param operator the operator
+     * @return the precedence, higher binds tighter
+     */
+    private static int precedence(int operator) {
+
+        return (operator == CONCAT) ? 2 : 1;
+    }
+
+    /**
+     * Fails on a malformed RegEx.
+     *
+     * @param condition the condition which must hold
+     * @param regex the input RegEx
+     * @param index the index of the offending character
+     */
+    private static void expect(boolean condition, String regex, int index) {
+
+        if (!condition)
+            throw new IllegalArgumentException("Malformed regular expression "
+                    + regex + " at index " + index);
+    }
+}
@@ -0,0 +1,354 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The Class SymbolClasses.
+ * A partition of the symbols into equivalence classes, two symbols being
+ * equivalent if they have the same transitions from every state. Tables
+ * indexed by class instead of by letter have one column per class, which
+ * keeps them small when the alphabet is large.
+ *
+ * Class 0 holds every symbol without a transition, the other classes are
+ * numbered from 1 in the order of their smallest symbol. The map from
+ * symbol to class is kept as sorted intervals, with a direct lookup
+ * table for the symbols below LOW_SYMBOLS.
+ *
+ */
+public final class SymbolClasses {
+
+    /** The number of symbols with a direct lookup. */
+    static final int LOW_SYMBOLS = 256;
+
+    /** The first symbol of every interval, ascending, starting at 0. */
+    private final int[] starts;
+
+    /** The class of every interval. */
+    private final int[] ids;
+
+    /** The class of every symbol below LOW_SYMBOLS. */
+    private final int[] low;
+
+    /** The number of classes, class 0 included. */
+    private final int count;
+
+    /** A column of the matrix for every class, -1 for class 0, or null. */
+    private final int[] columns;
+
+    /**
+     * Instantiates new symbol classes.
+     *
+     * @param starts the first symbol of every interval, ascending,
+     *        starting at 0
+     * @param ids the class of every interval
+     * @param count the number of classes, class 0 included
+     * @param columns a column for every class, -1 for class 0, or null
+     */
+    SymbolClasses(int[] starts, int[] ids, int count, int[] columns) {
+
+        this.starts = starts;
+        this.ids = ids;
+        this.count = count;
+        this.columns = columns;
+
+        this.low = new int[LOW_SYMBOLS];
+        for (int symbol = 0; symbol < LOW_SYMBOLS; symbol++)
+            this.low[symbol] = this.lookup(symbol);
+    }
+
+    /**
+     * Computes the symbol classes of a transition matrix, epsilon
+     * excluded.
+     *
+     * @param stmat the compact transition matrix
+     * @return the symbol classes
+     */
+    public static SymbolClasses of(CompactTransitionMatrix stmat) {
+
+        return SymbolClasses.of(stmat, null);
+    }
+
+    /**
+     * Computes the classes of the chars of a transition matrix whose
+     * letters stand for ranges of chars, epsilon excluded.
+     *
+     * @param stmat the compact transition matrix
+     * @param letters the chars every letter stands for, null if every
+     *        letter is a char of its own
+     * @return the symbol classes
+     */
+    public static SymbolClasses of(CompactTransitionMatrix stmat,
+            LetterRanges letters) {
+
+        /** The columns of the letters, in ascending letter order. */
+        ArrayList<Integer> order = new ArrayList<Integer>();
+        for (int col = 0; col < stmat.symbolCount(); col++) {
+
+            if (stmat.letter(col) != FSM.epsilon)
+                order.add(col);
+        }
+        order.sort((x, y) -> Integer.compare(stmat.letter(x),
+                stmat.letter(y)));
+
+        /**
+         * Group the columns by their targets from every row. A column is
+         * hashed over the matrix, and only columns of equal hash are
+         * compared, target by target.
+         */
+        HashMap<Long, ArrayList<Integer>> buckets =
+                new HashMap<Long, ArrayList<Integer>>();
+        ArrayList<Integer> columns = new ArrayList<Integer>();
+        columns.add(-1);
+        int[] classOf = new int[stmat.symbolCount()];
+
+        for (int col : order) {
+
+            long hash = 1;
+            boolean empty = true;
+            for (int row = 0; row < stmat.stateCount(); row++) {
+
+                hash = 31 * hash + stmat.end(row, col) - stmat.start(row, col);
+                for (int e = stmat.start(row, col); e < stmat.end(row, col);
+                        e++) {
+
+                    hash = 31 * hash + stmat.target(e);
+                    empty = false;
+                }
+            }
+
+            if (empty)
+                continue;
+
+            ArrayList<Integer> bucket = buckets.get(hash);
+            if (bucket == null) {
+
+                bucket = new ArrayList<Integer>();
+                buckets.put(hash, bucket);
+            }
+
+            int known = -1;
+            for (int cls : bucket) {
+
+                if (SymbolClasses.sameTargets(stmat, columns.get(cls), col))
+                    known = cls;
+            }
+
+            if (known < 0) {
+
+                known = columns.size();
+                bucket.add(known);
+                columns.add(col);
+            }
+            classOf[col] = known;
+        }
+
+        int maxLetter = -1;
+        for (int col : order)
+            maxLetter = Math.max(maxLetter, stmat.letter(col));
+
+        int[] classOfLetter = new int[maxLetter + 1];
+        for (int col : order)
+            classOfLetter[stmat.letter(col)] = classOf[col];
+
+        return SymbolClasses.map(classOfLetter, columns.size(),
+                SymbolClasses.toArray(columns), letters);
+    }
+
+    /**
+     * Checks whether two columns have the same targets from every row.
+     *
+     * @param stmat the compact transition matrix
+     * @param col1 the column 1
+     * @param col2 the column 2
+     * @return true, if the columns have the same targets
+     */
+    private static boolean sameTargets(CompactTransitionMatrix stmat,
+            int col1, int col2) {
+
+        for (int row = 0; row < stmat.stateCount(); row++) {
+
+            int start1 = stmat.start(row, col1);
+            int start2 = stmat.start(row, col2);
+            int size = stmat.end(row, col1) - start1;
+
+            if (stmat.end(row, col2) - start2 != size)
+                return false;
+
+            for (int e = 0; e < size; e++)
+                if (stmat.target(start1 + e) != stmat.target(start2 + e))
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Maps the symbols to given classes of letters.
+     *
+     * @param classOfLetter the class of every letter, 0 for none
+     * @param count the number of classes, class 0 included
+     * @param columns a column for every class, -1 for class 0, or null
+     * @param letters the chars every letter stands for, null if every
+     *        letter is a char of its own
+     * @return the symbol classes
+     */
+    static SymbolClasses map(int[] classOfLetter, int count, int[] columns,
+            LetterRanges letters) {
+
+        /** One interval per run of symbols of the same class. */
+        ArrayList<Integer> starts = new ArrayList<Integer>();
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+        starts.add(0);
+        ids.add(0);
+
+        if (letters == null) {
+
+            for (int letter = 0; letter < classOfLetter.length; letter++) {
+
+                if (classOfLetter[letter] == 0)
+                    continue;
+
+                SymbolClasses.addInterval(starts, ids, letter,
+                        classOfLetter[letter]);
+                SymbolClasses.addInterval(starts, ids, letter + 1, 0);
+            }
+        }
+        else {
+
+            for (int i = 0; i < letters.intervalCount(); i++) {
+
+                int letter = letters.letter(i);
+                SymbolClasses.addInterval(starts, ids, letters.start(i),
+                        (letter >= 0 && letter < classOfLetter.length) ?
+                                classOfLetter[letter] : 0);
+            }
+        }
+
+        return new SymbolClasses(SymbolClasses.toArray(starts),
+                SymbolClasses.toArray(ids), count, columns);
+    }
+
+    /**
+     * Starts an interval, or merges it with the last one.
+     *
+     * @param starts the interval starts
+     * @param ids the interval classes
+     * @param start the first symbol of the interval
+     * @param id the class of the interval
+     */
+    private static void addInterval(ArrayList<Integer> starts,
+            ArrayList<Integer> ids, int start, int id) {
+
+        int last = starts.size() - 1;
+        if (starts.get(last) == start)
+            ids.set(last, id);
+        else if (ids.get(last) != id) {
+
+            starts.add(start);
+            ids.add(id);
+        }
+
+        /** Setting the last class may make it equal to the one before. */
+        last = starts.size() - 1;
+        if (last > 0 && ids.get(last).equals(ids.get(last - 1))) {
+
+            starts.remove(last);
+            ids.remove(last);
+        }
+    }
+
+    /**
+     * Converts a list to an array.
+     *
+     * @param list the list
+     * @return the array
+     */
+    private static int[] toArray(ArrayList<Integer> list) {
+
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+    /**
+     * Looks a symbol up in the intervals.
+     *
+     * @param symbol the symbol
+     * @return the class
+     */
+    private int lookup(int symbol) {
+
+        if (symbol < 0)
+            return 0;
+
+        int i = Arrays.binarySearch(this.starts, symbol);
+        return this.ids[(i >= 0) ? i : -i - 2];
+    }
+
+    /**
+     * Gets the class of a symbol.
+     *
+     * @param symbol the symbol
+     * @return the class, 0 if the symbol has no transition
+     */
+    public int classOf(int symbol) {
+
+        return (symbol >= 0 && symbol < LOW_SYMBOLS) ? this.low[symbol]
+                : this.lookup(symbol);
+    }
+
+    /**
+     * Gets the number of classes, class 0 included.
+     *
+     * @return the number of classes
+     */
+    public int count() {
+
+        return this.count;
+    }
+
+    /**
+     * Gets a column of the matrix which stands for a class.
+     *
+     * @param cls the class, at least 1
+     * @return the column
+     */
+    int column(int cls) {
+
+        return this.columns[cls];
+    }
+
+    /**
+     * Gets the first symbol of an interval.
+     *
+     * @param interval the interval
+     * @return the first symbol
+     */
+    int start(int interval) {
+
+        return this.starts[interval];
+    }
+
+    /**
+     * Gets the class of an interval.
+     *
+     * @param interval the interval
+     * @return the class
+     */
+    int id(int interval) {
+
+        return this.ids[interval];
+    }
+
+    /**
+     * Gets the number of intervals, the ones of class 0 included.
+     *
+     * @return the number of intervals
+     */
+    public int intervalCount() {
+
+        return this.starts.length;
+    }
+}
@@ -0,0 +1,563 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Class TableMatcher.
+ * The matching loops of a table driven DFA, shared by DFAMatcher, whose
+ * table is an array, and MappedDFAMatcher, whose table is a view of a
+ * file. A subclass only tells the target of a transition and whether a
+ * state is accepting.
+ *
+ * Chars and bytes are mapped to classes, class 0 standing for every
+ * symbol which is not in the alphabet, and state 0 is the dead state.
+ * Calls do not allocate. find works in a scratch kept per thread and
+ * shared by all the matchers, which only grows when a matcher with more
+ * states than any before runs in the thread.
+ *
+ * find runs in one pass over the input: every DFA state alive carries
+ * the earliest start which reaches it, runs from later starts which reach
+ * the same state being dropped, so a step costs at most one lookup per
+ * state whatever the number of starts.
+ *
+ */
+abstract class TableMatcher implements Matcher {
+
+    /** The dead state. */
+    static final int DEAD = 0;
+
+    /** The number of symbols whose classes find looks up at once. */
+    private static final int CHUNK = 1024;
+
+    /** The class of every symbol. */
+    final SymbolClasses symbols;
+
+    /** The class of every byte. */
+    final int[] byteClassOf;
+
+    /** The number of classes, the class of unknown symbols included. */
+    final int classes;
+
+    /** The start state. */
+    final int start;
+
+    /** The sorted pattern IDs of every state, empty if not accepting. */
+    private final ArrayList<List<Integer>> patterns;
+
+    /** The scratch of find, per thread. */
+    private static final ThreadLocal<Search> SEARCHES =
+            ThreadLocal.withInitial(Search::new);
+
+    /**
+     * The Class Search.
+     * The scratch of find: the states alive with the earliest start
+     * reaching each of them, in the order of their starts, and the input
+     * searched, one of chars, bytes and buffer.
+     */
+    private static final class Search {
+
+        /** The input, if it is made of chars. */
+        CharSequence chars;
+
+        /** The input, if it is a byte array. */
+        byte[] bytes;
+
+        /** The input, if it is a buffer without an array. */
+        ByteBuffer buffer;
+
+        /** The states alive. */
+        int[] states;
+
+        /** The start of every state alive. */
+        int[] starts;
+
+        /** The states alive after the next step. */
+        int[] nextStates;
+
+        /** The start of every state alive after the next step. */
+        int[] nextStarts;
+
+        /** The stamp of the step a state was last reached in. */
+        int[] marks;
+
+        /** The classes of the current chunk of symbols. */
+        final int[] classes = new int[CHUNK];
+
+        /** The stamp of the current step. */
+        int stamp;
+
+        /**
+         * Instantiates a new search.
+         */
+        Search() {
+
+            this.reserve(0);
+        }
+
+        /**
+         * Makes room for the states of a matcher.
+         *
+         * @param count the number of states, the dead state included
+         */
+        void reserve(int count) {
+
+            if (this.marks != null && this.marks.length >= count)
+                return;
+
+            this.states = new int[count];
+            this.starts = new int[count];
+            this.nextStates = new int[count];
+            this.nextStarts = new int[count];
+            this.marks = new int[count];
+        }
+
+        /**
+         * Lets go of the input.
+         */
+        void clear() {
+
+            this.chars = null;
+            this.bytes = null;
+            this.buffer = null;
+        }
+
+        /**
+         * Starts a new step.
+         *
+         * @return the stamp of the step
+         */
+        int nextStamp() {
+
+            if (++this.stamp == Integer.MAX_VALUE) {
+
+                Arrays.fill(this.marks, 0);
+                this.stamp = 1;
+            }
+            return this.stamp;
+        }
+    }
+
+    /**
+     * Instantiates a new table matcher.
+     *
+     * @param symbols the class of every symbol
+     * @param start the start state
+     * @param patterns the sorted pattern IDs of every state, empty if not
+     *        accepting, one list per state, the dead state included
+     */
+    TableMatcher(SymbolClasses symbols, int start,
+            ArrayList<List<Integer>> patterns) {
+
+        this.symbols = symbols;
+        this.classes = symbols.count();
+        this.start = start;
+        this.patterns = patterns;
+
+        this.byteClassOf = new int[256];
+        for (int b = 0; b < 256; b++)
+            this.byteClassOf[b] = symbols.classOf(b);
+    }
+
+    /**
+     * Gets the target of a transition.
+     *
+     * @param state the state
+     * @param cls the class
+     * @return the target, DEAD if there is none
+     */
+    abstract int target(int state, int cls);
+
+    /**
+     * Checks whether a state is accepting.
+     *
+     * @param state the state
+     * @return true, if the state is accepting
+     */
+    abstract boolean isAccepting(int state);
+
+    /**
+     * Gets the number of states, the dead state included.
+     *
+     * @return the number of states
+     */
+    public int stateCount() {
+
+        return this.patterns.size();
+    }
+
+    /**
+     * Gets the number of symbol classes, the class of unknown symbols
+     * included.
+     *
+     * @return the number of classes
+     */
+    public int classCount() {
+
+        return this.classes;
+    }
+
+    /**
+     * Gets the class of every symbol.
+     *
+     * @return the symbol classes
+     */
+    SymbolClasses symbols() {
+
+        return this.symbols;
+    }
+
+    /**
+     * Gets the start state.
+     *
+     * @return the start state
+     */
+    int start() {
+
+        return this.start;
+    }
+
+    /**
+     * Gets the patterns which match in a state.
+     *
+     * @param state the state
+     * @return the sorted pattern IDs, empty if the state is not accepting
+     */
+    List<Integer> patterns(int state) {
+
+        return this.patterns.get(state);
+    }
+
+    /**
+     * Gets the patterns which match the whole input.
+     *
+     * @param input the input
+     * @return the sorted IDs of the matching patterns, unmodifiable
+     */
+    public List<Integer> matchingPatterns(CharSequence input) {
+
+        int state = this.start;
+        for (int i = 0, n = input.length(); i < n && state != DEAD; i++)
+            state = this.target(state, this.symbols.classOf(input.charAt(i)));
+
+        return this.patterns.get(state);
+    }
+
+    @Override
+    public boolean matches(CharSequence input) {
+
+        int state = this.start;
+        for (int i = 0, n = input.length(); i < n; i++) {
+
+            state = this.target(state, this.symbols.classOf(input.charAt(i)));
+            if (state == DEAD)
+                return false;
+        }
+        return this.isAccepting(state);
+    }
+
+    @Override
+    public boolean lookingAt(CharSequence input, int from) {
+
+        int state = this.start;
+        if (this.isAccepting(state))
+            return true;
+
+        for (int i = from, n = input.length(); i < n; i++) {
+
+            state = this.target(state, this.symbols.classOf(input.charAt(i)));
+            if (state == DEAD)
+                return false;
+            if (this.isAccepting(state))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int find(CharSequence input, int from) {
+
+        Search search = this.search();
+        search.chars = input;
+        return this.search(search, from, input.length());
+    }
+
+    @Override
+    public int matchEnd(CharSequence input, int start) {
+
+        int state = this.start;
+        int end = this.isAccepting(state) ? start : -1;
+
+        for (int i = start, n = input.length(); i < n; i++) {
+
+            state = this.target(state, this.symbols.classOf(input.charAt(i)));
+            if (state == DEAD)
+                break;
+            if (this.isAccepting(state))
+                end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Gets the scratch of find of the current thread.
+     *
+     * @return the scratch, with room for the states of this matcher
+     */
+    private Search search() {
+
+        Search search = SEARCHES.get();
+        search.reserve(this.stateCount());
+        return search;
+    }
+
+    /**
+     * Gets the classes of a range of the input of a search.
+     *
+     * @param search the search, holding the input
+     * @param from the first symbol
+     * @param count the number of symbols
+     */
+    private void classes(Search search, int from, int count) {
+
+        int[] classes = search.classes;
+        if (search.chars != null) {
+
+            for (int k = 0; k < count; k++)
+                classes[k] = this.symbols.classOf(
+                        search.chars.charAt(from + k));
+        }
+        else if (search.bytes != null) {
+
+            for (int k = 0; k < count; k++)
+                classes[k] = this.byteClassOf[search.bytes[from + k] & 0xFF];
+        }
+        else {
+
+            for (int k = 0; k < count; k++)
+                classes[k] = this.byteClassOf[search.buffer.get(from + k)
+                        & 0xFF];
+        }
+    }
+
+    /**
+     * Finds the leftmost match in one pass. A start is alive while the
+     * run from it is; once a match is seen, only runs from earlier starts
+     * go on, since one of them may still match further on.
+     *
+     * @param search the scratch, holding the input
+     * @param from the symbol to start searching at
+     * @param to the symbol after the last one
+     * @return the start of the match, -1 if there is none
+     */
+    private int search(Search search, int from, int to) {
+
+        try {
+
+            return this.run(search, from, to);
+        }
+        finally {
+
+            search.clear();
+        }
+    }
+
+    /**
+     * Runs a search, see search.
+     *
+     * @param search the scratch, holding the input
+     * @param from the symbol to start searching at
+     * @param to the symbol after the last one
+     * @return the start of the match, -1 if there is none
+     */
+    private int run(Search search, int from, int to) {
+
+        int[] states = search.states;
+        int[] starts = search.starts;
+        int[] classes = search.classes;
+        int stamp = search.nextStamp();
+        int count = 0;
+        int best = -1;
+        int chunk = from;
+        int chunkEnd = from;
+
+        for (int i = from; i <= to; i++) {
+
+            /** A match may start here, unless one was found already. */
+            if (best < 0 && search.marks[this.start] != stamp) {
+
+                search.marks[this.start] = stamp;
+                states[count] = this.start;
+                starts[count++] = i;
+            }
+
+            for (int k = 0; k < count; k++) {
+
+                if (this.isAccepting(states[k])) {
+
+                    best = starts[k];
+                    count = k;
+                    break;
+                }
+            }
+
+            if (i == to || (best >= 0 && count == 0))
+                break;
+
+            if (i == chunkEnd) {
+
+                chunk = i;
+                chunkEnd = Math.min(to, i + CHUNK);
+                this.classes(search, chunk, chunkEnd - chunk);
+            }
+            int cls = classes[i - chunk];
+
+            /** Step, a state reached twice keeps its earlier start. */
+            int[] nextStates = search.nextStates;
+            int[] nextStarts = search.nextStarts;
+            stamp = search.nextStamp();
+            int next = 0;
+
+            for (int k = 0; k < count; k++) {
+
+                int target = this.target(states[k], cls);
+                if (target != DEAD && search.marks[target] != stamp) {
+
+                    search.marks[target] = stamp;
+                    nextStates[next] = target;
+                    nextStarts[next++] = starts[k];
+                }
+            }
+
+            search.nextStates = states;
+            search.nextStarts = starts;
+            search.states = states = nextStates;
+            search.starts = starts = nextStarts;
+            count = next;
+        }
+        return best;
+    }
+
+    /**
+     * Runs a range of bytes from the start state.
+     *
+     * @param input the input
+     * @param from the first byte
+     * @param to the byte after the last one
+     * @return the end of the longest match, -1 if there is none
+     */
+    private int scan(byte[] input, int from, int to) {
+
+        int state = this.start;
+        int end = this.isAccepting(state) ? from : -1;
+
+        for (int i = from; i < to; i++) {
+
+            state = this.target(state, this.byteClassOf[input[i] & 0xFF]);
+            if (state == DEAD)
+                break;
+            if (this.isAccepting(state))
+                end = i + 1;
+        }
+        return end;
+    }
+
+    /**
+     * Checks whether a range of bytes is in the language.
+     *
+     * @param input the input
+     * @param from the first byte
+     * @param to the byte after the last one
+     * @return true, if the whole range matches
+     */
+    public boolean matches(byte[] input, int from, int to) {
+
+        int state = this.start;
+        for (int i = from; i < to; i++) {
+
+            state = this.target(state, this.byteClassOf[input[i] & 0xFF]);
+            if (state == DEAD)
+                return false;
+        }
+        return this.isAccepting(state);
+    }
+
+    /**
+     * Checks whether the remaining bytes of a buffer are in the language,
+     * leaving its position as is.
+     *
+     * @param input the input
+     * @return true, if the remaining bytes match
+     */
+    public boolean matches(ByteBuffer input) {
+
+        if (input.hasArray())
+            return this.matches(input.array(),
+                    input.arrayOffset() + input.position(),
+                    input.arrayOffset() + input.limit());
+
+        int state = this.start;
+        for (int i = input.position(); i < input.limit(); i++) {
+
+            state = this.target(state, this.byteClassOf[input.get(i) & 0xFF]);
+            if (state == DEAD)
+                return false;
+        }
+        return this.isAccepting(state);
+    }
+
+    /**
+     * Finds the leftmost match in a range of bytes.
+     *
+     * @param input the input
+     * @param from the byte to start searching at
+     * @param to the byte after the last one
+     * @return the start of the match, -1 if there is none
+     */
+    public int find(byte[] input, int from, int to) {
+
+        Search search = this.search();
+        search.bytes = input;
+        return this.search(search, from, to);
+    }
+
+    /**
+     * Finds the leftmost match in the remaining bytes of a buffer,
+     * leaving its position as is.
+     *
+     * @param input the input
+     * @return the index of the start of the match in the buffer, -1 if
+     *         there is none
+     */
+    public int find(ByteBuffer input) {
+
+        if (input.hasArray()) {
+
+            int offset = input.arrayOffset();
+            int start = this.find(input.array(), offset + input.position(),
+                    offset + input.limit());
+            return (start < 0) ? -1 : start - offset;
+        }
+
+        /** Direct and mapped buffers are read in place, a chunk at a time. */
+        Search search = this.search();
+        search.buffer = input;
+        return this.search(search, input.position(), input.limit());
+    }
+
+    /**
+     * Gets the end of the longest match in a range of bytes starting at
+     * an index.
+     *
+     * @param input the input
+     * @param start the start of the match
+     * @param to the byte after the last one
+     * @return the end of the match, -1 if there is none
+     */
+    public int matchEnd(byte[] input, int start, int to) {
+
+        return this.scan(input, start, to);
+    }
+}
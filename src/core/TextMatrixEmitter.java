@@ -0,0 +1,148 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import utils.Chars;
+
+/**
+ * The Class TextMatrixEmitter.
+ * Writes a state transition matrix as the text the CLI prints: the start
+ * state, the final states, the alphabet, the states and a line of cells
+ * per state, states named q + number.
+ *
+ * The name of a state is encoded once and then copied into the buffer,
+ * so a large DFA is written without building a string per cell.
+ *
+ */
+public final class TextMatrixEmitter extends BufferedEmitter {
+
+    /** The first state number whose name is not cached. */
+    private static final int MAX_CACHED = 1 << 20;
+
+    /** The encoded state names, by state number, null if not used yet. */
+    private char[][] names = new char[64][];
+
+    /**
+     * Instantiates a new text matrix emitter.
+     *
+     * @param out the output, buffered by the emitter
+     */
+    public TextMatrixEmitter(Writer out) {
+
+        super(out);
+    }
+
+    /**
+     * Instantiates a new text matrix emitter, which writes in the default
+     * charset, as System.out does.
+     *
+     * @param out the output, buffered by the emitter
+     */
+    public TextMatrixEmitter(OutputStream out) {
+
+        super(new OutputStreamWriter(out, Charset.defaultCharset()));
+    }
+
+    @Override
+    public void startState(int state) throws IOException {
+
+        this.putName(state);
+        this.line();
+    }
+
+    @Override
+    public void finalState(int state) throws IOException {
+
+        this.putName(state);
+        this.line();
+    }
+
+    @Override
+    public void finalStates(ArrayList<Integer> states) throws IOException {
+
+        for (Integer state : states) {
+
+            this.putName(state);
+            this.put(Chars.space);
+        }
+        this.line();
+    }
+
+    @Override
+    public void alphabet(int[] letters) throws IOException {
+
+        for (int letter : letters) {
+
+            if (letter == 0 || letter == FSM.epsilon)
+                continue;
+
+            this.put((char) letter);
+            this.put(Chars.space);
+        }
+        this.line();
+    }
+
+    @Override
+    public void states(int[] states) throws IOException {
+
+        for (int state : states) {
+
+            this.putName(state);
+            this.put(Chars.space);
+        }
+        this.line();
+    }
+
+    @Override
+    public void row(ArrayList<ArrayList<Integer>> column) throws IOException {
+
+        for (int i = 1; i < column.size(); i++) {
+
+            ArrayList<Integer> cell = column.get(i);
+            if (cell.isEmpty())
+                this.put(Chars.none);
+
+            for (int k = 0; k < cell.size(); k++) {
+
+                if (k > 0)
+                    this.put(Chars.comma);
+                this.putName(cell.get(k));
+            }
+            this.put(Chars.space);
+        }
+        this.line();
+    }
+
+    /**
+     * Appends the name of a state, q + number.
+     *
+     * @param state the state number
+     * @throws IOException if the output fails
+     */
+    private void putName(int state) throws IOException {
+
+        if (state < 0 || state >= MAX_CACHED) {
+
+            this.put("q" + state);
+            return;
+        }
+
+        if (state >= this.names.length)
+            this.names = Arrays.copyOf(this.names,
+                    Math.max(state + 1, this.names.length * 2));
+
+        char[] name = this.names[state];
+        if (name == null) {
+
+            name = ("q" + state).toCharArray();
+            this.names[state] = name;
+        }
+        this.put(name);
+    }
+}
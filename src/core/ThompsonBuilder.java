@@ -0,0 +1,282 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * The Class ThompsonBuilder.
+ * This class builds an NFA from the postfix form of a RegEx in a single
+ * pass, following the Thompson rules of the former StateTransitionMatrix
+ * concat, union and star.
+ *
+ * Transitions go to a growable edge arena. Each fragment also keeps its
+ * states as a linked list, so the final numbering (start state first,
+ * end state last, every fragment in the order of the RegEx) costs
+ * O(1) per operator and the whole build is O(|regex|). No fragment is
+ * ever renumbered, so this also replaces the per-fragment relocation
+ * offsets that concat and union used before.
+ *
+ */
+final class ThompsonBuilder {
+
+    /** The source state of every edge. */
+    private int[] edgeFrom;
+
+    /** The letter of every edge, epsilon for epsilon edges. */
+    private int[] edgeLetter;
+
+    /** The target state of every edge. */
+    private int[] edgeTo;
+
+    /** The number of edges. */
+    private int edges;
+
+    /** The next state of every state in its fragment layout. */
+    private int[] next;
+
+    /** The number of states. */
+    private int states;
+
+    /**
+     * Instantiates a new Thompson builder.
+     *
+     * @param expectedStates the expected number of states
+     */
+    private ThompsonBuilder(int expectedStates) {
+
+        int capacity = Math.max(expectedStates, 2);
+
+        this.edgeFrom = new int[2 * capacity];
+        this.edgeLetter = new int[2 * capacity];
+        this.edgeTo = new int[2 * capacity];
+        this.next = new int[capacity];
+    }
+
+    /**
+     * Builds the NFA of a RegEx in postfix form.
+     *
+     * @param postfix the postfix form of the RegEx
+     * @return the compact transition matrix of the NFA
+     */
+    static CompactTransitionMatrix build(int[] postfix) {
+
+        ThompsonBuilder builder = new ThompsonBuilder(2 * postfix.length);
+        int[] fragment = builder.fragment(postfix);
+
+        return builder.toCompact(fragment[0], new int[0]);
+    }
+
+    /**
+     * Builds the tagged union of the NFAs of several RegExes.
+     * A new start state has an epsilon transition to the start state of
+     * every RegEx, but every RegEx keeps its own end state, so a final
+     * state tells which RegEx matched.
+     *
+     * @param postfixes the postfix forms of the RegExes
+     * @param ends receives the row of the end state of every RegEx
+     * @return the compact transition matrix of the NFA
+     */
+    static CompactTransitionMatrix build(int[][] postfixes, int[] ends) {
+
+        int expectedStates = 1;
+        for (int[] postfix : postfixes)
+            expectedStates += 2 * postfix.length;
+
+        ThompsonBuilder builder = new ThompsonBuilder(expectedStates);
+        int start = builder.newState();
+        int tail = start;
+
+        for (int i = 0; i < postfixes.length; i++) {
+
+            int[] fragment = builder.fragment(postfixes[i]);
+            builder.addEdge(start, FSM.epsilon, fragment[0]);
+            builder.next[tail] = fragment[0];
+
+            tail = fragment[1];
+            ends[i] = fragment[1];
+        }
+
+        return builder.toCompact(start, ends);
+    }
+
+    /**
+     * Builds the fragment of a RegEx in postfix form.
+     *
+     * @param postfix the postfix form of the RegEx
+     * @return the start and the end state of the fragment
+     */
+    private int[] fragment(int[] postfix) {
+
+        /** The stack of fragments, as start and end states. */
+        int[] starts = new int[postfix.length];
+        int[] ends = new int[postfix.length];
+        int size = 0;
+
+        for (int token : postfix) {
+
+            if (token == RegExParser.STAR) {
+
+                int start = this.newState();
+                int end = this.newState();
+                int innerStart = starts[size - 1];
+                int innerEnd = ends[size - 1];
+
+                this.addEdge(innerEnd, FSM.epsilon, innerStart);
+                this.addEdge(innerEnd, FSM.epsilon, end);
+                this.addEdge(start, FSM.epsilon, innerStart);
+                this.addEdge(start, FSM.epsilon, end);
+
+                this.next[start] = innerStart;
+                this.next[innerEnd] = end;
+
+                starts[size - 1] = start;
+                ends[size - 1] = end;
+            }
+            else if (token == RegExParser.CONCAT) {
+
+                size--;
+                this.addEdge(ends[size - 1], FSM.epsilon, starts[size]);
+                this.next[ends[size - 1]] = starts[size];
+
+                ends[size - 1] = ends[size];
+            }
+            else if (token == RegExParser.UNION) {
+
+                size--;
+                int start = this.newState();
+                int end = this.newState();
+
+                this.addEdge(start, FSM.epsilon, starts[size - 1]);
+                this.addEdge(start, FSM.epsilon, starts[size]);
+                this.addEdge(ends[size - 1], FSM.epsilon, end);
+                this.addEdge(ends[size], FSM.epsilon, end);
+
+                this.next[start] = starts[size - 1];
+                this.next[ends[size - 1]] = starts[size];
+                this.next[ends[size]] = end;
+
+                starts[size - 1] = start;
+                ends[size - 1] = end;
+            }
+            else {
+
+                int start = this.newState();
+                int end = this.newState();
+
+                this.addEdge(start, token, end);
+                this.next[start] = end;
+
+                starts[size] = start;
+                ends[size] = end;
+                size++;
+            }
+        }
+
+        return new int[] { starts[0], ends[0] };
+    }
+
+    /**
+     * Allocates a new state.
+     *
+     * @return the new state
+     */
+    private int newState() {
+
+        if (this.states == this.next.length)
+            this.next = Arrays.copyOf(this.next, 2 * this.states);
+
+        return this.states++;
+    }
+
+    /**
+     * Adds an edge to the arena.
+     *
+     * @param from the source state
+     * @param letter the letter
+     * @param to the target state
+     */
+    private void addEdge(int from, int letter, int to) {
+
+        if (this.edges == this.edgeFrom.length) {
+
+            this.edgeFrom = Arrays.copyOf(this.edgeFrom, 2 * this.edges);
+            this.edgeLetter = Arrays.copyOf(this.edgeLetter, 2 * this.edges);
+            this.edgeTo = Arrays.copyOf(this.edgeTo, 2 * this.edges);
+        }
+
+        this.edgeFrom[this.edges] = from;
+        this.edgeLetter[this.edges] = letter;
+        this.edgeTo[this.edges] = to;
+        this.edges++;
+    }
+
+    /**
+     * Converts the arena to a compact transition matrix.
+     * States are named 1..n in layout order, letters keep the order of
+     * their first appearance and epsilon comes last.
+     *
+     * @param start the start state of the whole NFA
+     * @param states the states to convert to rows, in place
+     * @return the compact transition matrix
+     */
+    private CompactTransitionMatrix toCompact(int start, int[] states) {
+
+        /** Name the states by walking the layout list. */
+        int[] rowOf = new int[this.states];
+        int[] stateIds = new int[this.states];
+        int state = start;
+        for (int row = 0; row < this.states; row++) {
+
+            rowOf[state] = row;
+            stateIds[row] = row + 1;
+            state = this.next[state];
+        }
+
+        for (int i = 0; i < states.length; i++)
+            states[i] = rowOf[states[i]];
+
+        /** Number the letters by first appearance, epsilon last. */
+        int maxLetter = 0;
+        for (int i = 0; i < this.edges; i++)
+            maxLetter = Math.max(maxLetter, this.edgeLetter[i]);
+
+        int[] columnOf = new int[maxLetter + 1];
+        Arrays.fill(columnOf, -1);
+        int[] alphabet = new int[maxLetter + 2];
+        int letters = 0;
+        for (int i = 0; i < this.edges; i++) {
+
+            int letter = this.edgeLetter[i];
+            if (letter != FSM.epsilon && columnOf[letter] < 0) {
+
+                columnOf[letter] = letters;
+                alphabet[letters++] = letter;
+            }
+        }
+        alphabet[letters++] = FSM.epsilon;
+        alphabet = Arrays.copyOf(alphabet, letters);
+
+        /** Counting sort of the edges into CSR, stable in edge order. */
+        int[] offsets = new int[this.states * letters + 1];
+        int[] cells = new int[this.edges];
+        for (int i = 0; i < this.edges; i++) {
+
+            int letter = this.edgeLetter[i];
+            int column = (letter == FSM.epsilon) ?
+                    letters - 1 : columnOf[letter];
+
+            cells[i] = rowOf[this.edgeFrom[i]] * letters + column;
+            offsets[cells[i] + 1]++;
+        }
+
+        for (int i = 0; i < this.states * letters; i++)
+            offsets[i + 1] += offsets[i];
+
+        int[] fill = Arrays.copyOf(offsets, offsets.length - 1);
+        int[] targets = new int[this.edges];
+        for (int i = 0; i < this.edges; i++)
+            targets[fill[cells[i]]++] = rowOf[this.edgeTo[i]];
+
+        return new CompactTransitionMatrix(alphabet, stateIds,
+                offsets, targets);
+    }
+}
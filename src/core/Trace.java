@@ -0,0 +1,110 @@
+package core;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The Class Trace.
+ * The debugging output of the compilation. Every event is logged at INFO
+ * and handed to the trace sink, if one is set. The text of an event,
+ * which dumps whole transition matrices, is only built if INFO is
+ * enabled or the sink asks for it, so a compilation with logging off
+ * pays a level check per event.
+ *
+ */
+public final class Trace {
+
+    /** Logger is initiated. */
+    private static final Logger LOGGER =
+            Logger.getLogger(RegEx.class.getName());
+
+    /** The trace sink, null if there is none. */
+    private static volatile TraceSink sink;
+
+    /**
+     * Instantiates a new trace.
+     */
+    private Trace() {
+
+    }
+
+    /**
+     * Gets the trace sink.
+     *
+     * @return the sink, null if there is none
+     */
+    public static TraceSink getSink() {
+
+        return Trace.sink;
+    }
+
+    /**
+     * Sets the trace sink.
+     *
+     * @param sink the sink, null for none
+     */
+    public static void setSink(TraceSink sink) {
+
+        Trace.sink = sink;
+    }
+
+    /**
+     * Traces an event. The text is logged with the class and method which
+     * raised the event as its source, and built at most once.
+     *
+     * @param source the class which raises the event
+     * @param method the method which raises the event
+     * @param event the event
+     * @param first the first count of the event
+     * @param second the second count of the event
+     * @param detail builds the text of the event
+     */
+    static void event(Class<?> source, String method, TraceEvent event,
+            long first, long second, Supplier<String> detail) {
+
+        TraceSink current = Trace.sink;
+        boolean logged = LOGGER.isLoggable(Level.INFO);
+
+        if (current != null && logged)
+            detail = new Detail(detail);
+
+        if (current != null)
+            current.record(event, first, second, detail);
+
+        if (logged)
+            LOGGER.logp(Level.INFO, source.getName(), method, detail);
+    }
+
+    /**
+     * The Class Detail.
+     * The text of an event both logged and handed to a sink, built the
+     * first time it is asked for.
+     */
+    private static final class Detail implements Supplier<String> {
+
+        /** Builds the text. */
+        private final Supplier<String> builder;
+
+        /** The text, null until built. */
+        private String text;
+
+        /**
+         * Instantiates a new detail.
+         *
+         * @param builder builds the text
+         */
+        Detail(Supplier<String> builder) {
+
+            this.builder = builder;
+        }
+
+        @Override
+        public String get() {
+
+            if (this.text == null)
+                this.text = this.builder.get();
+            return this.text;
+        }
+    }
+}
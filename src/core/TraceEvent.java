@@ -0,0 +1,59 @@
+package core;
+
+/**
+ * The Enum TraceEvent.
+ * This Enum lists the events traced while compiling a RegEx, see Trace.
+ * Every event carries two counts, named by its fields.
+ */
+public enum TraceEvent {
+
+    /** The Thompson NFA is built. */
+    NFA_BUILT("states", "finals"),
+
+    /** The subset construction is done. */
+    SUBSETS_BUILT("states", "finals"),
+
+    /** The final partition of the minimization is found. */
+    PARTITION_FOUND("blocks", "rounds"),
+
+    /** The minimum DFA is built. */
+    MIN_DFA_BUILT("states", "finals");
+
+    /** The name of the first count. */
+    private final String first;
+
+    /** The name of the second count. */
+    private final String second;
+
+    /**
+     * Instantiates a new trace event.
+     *
+     * @param first the name of the first count
+     * @param second the name of the second count
+     */
+    TraceEvent(String first, String second) {
+
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Gets the name of the first count.
+     *
+     * @return the name
+     */
+    public String getFirst() {
+
+        return this.first;
+    }
+
+    /**
+     * Gets the name of the second count.
+     *
+     * @return the name
+     */
+    public String getSecond() {
+
+        return this.second;
+    }
+}
@@ -0,0 +1,23 @@
+package core;
+
+import java.util.function.Supplier;
+
+/**
+ * The Interface TraceSink.
+ * Receives the trace events of the compilations, see Trace.setSink.
+ * Sinks are called from the compiling threads and must be thread safe.
+ */
+public interface TraceSink {
+
+    /**
+     * Records an event.
+     *
+     * @param event the event
+     * @param first the first count of the event
+     * @param second the second count of the event
+     * @param detail builds the text of the automaton, only called if the
+     *        sink needs it, and only during this call
+     */
+    void record(TraceEvent event, long first, long second,
+            Supplier<String> detail);
+}
@@ -0,0 +1,118 @@
+package core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * The Class TsvMatrixEmitter.
+ * Writes a state transition matrix as tab separated values, meant to be
+ * read by other programs rather than by people. States and letters are
+ * plain numbers, a letter being its char code and epsilon -1, so no
+ * letter can clash with the separators.
+ *
+ * The lines are:
+ * start, then the start state;
+ * final, then the final states;
+ * state, then the letters, which head the columns of the rows;
+ * then a row per state: its number, then a cell per letter, holding the
+ * target states separated by commas, empty if there is none.
+ *
+ */
+public final class TsvMatrixEmitter extends BufferedEmitter {
+
+    /** The separator of the fields. */
+    private static final char TAB = '\t';
+
+    /** The separator of the states in a cell. */
+    private static final char COMMA = ',';
+
+    /**
+     * Instantiates a new TSV matrix emitter.
+     *
+     * @param out the output, buffered by the emitter
+     */
+    public TsvMatrixEmitter(Writer out) {
+
+        super(out);
+    }
+
+    /**
+     * Instantiates a new TSV matrix emitter, which writes ASCII.
+     *
+     * @param out the output, buffered by the emitter
+     */
+    public TsvMatrixEmitter(OutputStream out) {
+
+        super(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void startState(int state) throws IOException {
+
+        this.put("start");
+        this.put(TAB);
+        this.put(state);
+        this.line();
+    }
+
+    @Override
+    public void finalState(int state) throws IOException {
+
+        this.put("final");
+        this.put(TAB);
+        this.put(state);
+        this.line();
+    }
+
+    @Override
+    public void finalStates(ArrayList<Integer> states) throws IOException {
+
+        this.put("final");
+        for (Integer state : states) {
+
+            this.put(TAB);
+            this.put(state.intValue());
+        }
+        this.line();
+    }
+
+    @Override
+    public void alphabet(int[] letters) throws IOException {
+
+        this.put("state");
+        for (int letter : letters) {
+
+            this.put(TAB);
+            this.put(letter);
+        }
+        this.line();
+    }
+
+    @Override
+    public void states(int[] states) throws IOException {
+
+        /** The rows name their states. */
+    }
+
+    @Override
+    public void row(ArrayList<ArrayList<Integer>> column) throws IOException {
+
+        this.put(column.get(0).get(0).intValue());
+        for (int i = 1; i < column.size(); i++) {
+
+            ArrayList<Integer> cell = column.get(i);
+            this.put(TAB);
+            for (int k = 0; k < cell.size(); k++) {
+
+                if (k > 0)
+                    this.put(COMMA);
+                this.put(cell.get(k).intValue());
+            }
+        }
+        this.line();
+    }
+}
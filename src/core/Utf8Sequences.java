@@ -0,0 +1,172 @@
+package core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * The Class Utf8Sequences.
+ * This class turns a range of code points into the UTF-8 byte sequences
+ * of its code points, each sequence being a list of byte ranges such as
+ * [C2-DF][80-BF].
+ *
+ * The range is split where the encoded length changes and then where a
+ * continuation byte would not run over its full 80-BF range, so that
+ * every piece is the product of its byte ranges. Surrogates have no
+ * UTF-8 form and are left out.
+ *
+ */
+final class Utf8Sequences {
+
+    /** The largest code point of every encoded length. */
+    private static final int[] MAX_OF_LENGTH = { 0x7F, 0x7FF, 0xFFFF };
+
+    /** The first surrogate. */
+    private static final int MIN_SURROGATE = 0xD800;
+
+    /** The last surrogate. */
+    private static final int MAX_SURROGATE = 0xDFFF;
+
+    /**
+     * Instantiates a new UTF-8 sequences.
+     */
+    private Utf8Sequences() {
+
+    }
+
+    /**
+     * Adds the byte sequences of a range of code points.
+     *
+     * @param low the first code point
+     * @param high the last code point
+     * @param sequences receives every sequence, as the low and high byte
+     *        of every position in turn
+     */
+    static void add(int low, int high, ArrayList<int[]> sequences) {
+
+        ArrayDeque<int[]> pending = new ArrayDeque<int[]>();
+        pending.push(new int[] { low, high });
+
+        while (!pending.isEmpty()) {
+
+            int[] range = pending.pop();
+            int lo = range[0];
+            int hi = range[1];
+
+            if (lo > hi)
+                continue;
+
+            if (lo <= MAX_SURROGATE && hi >= MIN_SURROGATE) {
+
+                pending.push(new int[] { MAX_SURROGATE + 1, hi });
+                pending.push(new int[] { lo, MIN_SURROGATE - 1 });
+                continue;
+            }
+
+            if (!Utf8Sequences.split(lo, hi, pending))
+                sequences.add(Utf8Sequences.sequence(lo, hi));
+        }
+    }
+
+    /**
+     * Splits a range which is not the product of byte ranges.
+     *
+     * @param lo the first code point
+     * @param hi the last code point
+     * @param pending receives the pieces
+     * @return true, if the range was split
+     */
+    private static boolean split(int lo, int hi, ArrayDeque<int[]> pending) {
+
+        for (int max : MAX_OF_LENGTH) {
+
+            if (lo <= max && hi > max) {
+
+                pending.push(new int[] { max + 1, hi });
+                pending.push(new int[] { lo, max });
+                return true;
+            }
+        }
+
+        for (int i = 1; i < Utf8Sequences.length(lo); i++) {
+
+            int mask = (1 << (6 * i)) - 1;
+            if ((lo & ~mask) == (hi & ~mask))
+                continue;
+
+            if ((lo & mask) != 0) {
+
+                pending.push(new int[] { (lo | mask) + 1, hi });
+                pending.push(new int[] { lo, lo | mask });
+                return true;
+            }
+            if ((hi & mask) != mask) {
+
+                pending.push(new int[] { hi & ~mask, hi });
+                pending.push(new int[] { lo, (hi & ~mask) - 1 });
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the byte ranges of a range of code points of the same length
+     * which is the product of its byte ranges.
+     *
+     * @param lo the first code point
+     * @param hi the last code point
+     * @return the low and high byte of every position in turn
+     */
+    private static int[] sequence(int lo, int hi) {
+
+        int[] low = Utf8Sequences.encode(lo);
+        int[] high = Utf8Sequences.encode(hi);
+
+        int[] sequence = new int[2 * low.length];
+        for (int i = 0; i < low.length; i++) {
+
+            sequence[2 * i] = low[i];
+            sequence[2 * i + 1] = high[i];
+        }
+        return sequence;
+    }
+
+    /**
+     * Gets the length of the UTF-8 form of a code point.
+     *
+     * @param cp the code point
+     * @return the number of bytes
+     */
+    private static int length(int cp) {
+
+        int length = 1;
+        while (length <= MAX_OF_LENGTH.length
+                && cp > MAX_OF_LENGTH[length - 1])
+            length++;
+        return length;
+    }
+
+    /**
+     * Encodes a code point in UTF-8.
+     *
+     * @param cp the code point
+     * @return the bytes, from 0 to 255
+     */
+    private static int[] encode(int cp) {
+
+        int length = Utf8Sequences.length(cp);
+        if (length == 1)
+            return new int[] { cp };
+
+        int[] bytes = new int[length];
+        for (int i = length - 1; i > 0; i--) {
+
+            bytes[i] = 0x80 | (cp & 0x3F);
+            cp >>>= 6;
+        }
+
+        /** The lead byte, its length in high bits. */
+        bytes[0] = ((0xFF00 >> length) & 0xFF) | cp;
+        return bytes;
+    }
+}
@@ -13,6 +13,13 @@ public abstract class Entry {
     /** The task. */
     protected Tasks task;
 
+    /**
+     * Instantiates a new entry.
+     */
+    protected Entry() {
+
+    }
+
     /**
      * Gets the task.
      *
@@ -10,6 +10,13 @@ public class RegExEntry extends Entry {
     /** The String. */
     private String input;
 
+    /**
+     * Instantiates a new RegEx entry.
+     */
+    public RegExEntry() {
+
+    }
+
     /**
      * Gets the input of regular expression.
      *
@@ -0,0 +1,310 @@
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import utils.DataType;
+import utils.IO;
+
+/**
+ * The Class Batch.
+ * The batch mode of the command line, which handles a whole stream of
+ * RegEx, NFA and CFG blocks in one JVM. The blocks are in the format of a
+ * single input, read from stdin or from a file, see IO.read.
+ *
+ * The outputs are written in the order of the blocks and flushed after
+ * every block, so they stream. With more than one thread the blocks are
+ * handled by a pool of workers, a bounded number of blocks ahead of the
+ * output. A block which fails is reported on stderr and skipped.
+ *
+ * Usage: --batch [--threads N] [file]
+ *
+ */
+public final class Batch {
+
+    /** The flag of the batch mode. */
+    static final String FLAG = "--batch";
+
+    /** The option of the number of worker threads. */
+    static final String THREADS = "--threads";
+
+    /** The usage line, printed on a bad option. */
+    static final String USAGE = "usage: " + FLAG + " [" + THREADS
+            + " N] [file]";
+
+    /** The number of blocks in flight per worker thread. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /** The size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The Class Output.
+     * The output of a block handled by a worker.
+     */
+    private static final class Output {
+
+        /** The printed bytes. */
+        final byte[] bytes;
+
+        /** The failure of the block, null if there is none. */
+        final RuntimeException error;
+
+        /**
+         * Instantiates a new output.
+         *
+         * @param bytes the printed bytes
+         * @param error the failure of the block, null if there is none
+         */
+        Output(byte[] bytes, RuntimeException error) {
+
+            this.bytes = bytes;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Instantiates a new batch.
+     */
+    private Batch() {
+
+    }
+
+    /**
+     * Runs the batch mode. Prints the usage line on stderr instead if the
+     * options are bad.
+     *
+     * @param args the options, see the class comment
+     */
+    public static void main(String[] args) {
+
+        int threads = 1;
+        String file = null;
+
+        for (int i = 0; i < args.length; i++) {
+
+            if (args[i].equals(THREADS)) {
+
+                threads = (i + 1 < args.length) ? Batch.threads(args[++i])
+                        : 0;
+                if (threads < 1) {
+
+                    System.err.println(USAGE);
+                    return;
+                }
+            }
+            else if (file == null) {
+
+                file = args[i];
+            }
+            else {
+
+                System.err.println(USAGE);
+                return;
+            }
+        }
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(FileDescriptor.out), BUFFER_SIZE), false);
+
+        try (Scanner sc = (file == null) ? new Scanner(System.in)
+                : new Scanner(Paths.get(file))) {
+
+            Batch.run(sc, out, threads);
+        }
+        catch (IOException e) {
+
+            System.err.println(file + ": " + e.getMessage());
+        }
+        finally {
+
+            out.flush();
+        }
+    }
+
+    /**
+     * Parses the number of worker threads.
+     *
+     * @param value the value of the option
+     * @return the number of threads, 0 if the value is not a positive
+     *         number
+     */
+    private static int threads(String value) {
+
+        try {
+
+            return Math.max(Integer.parseInt(value), 0);
+        }
+        catch (NumberFormatException e) {
+
+            return 0;
+        }
+    }
+
+    /**
+     * Handles every block of an input.
+     *
+     * @param sc the scanner of the input
+     * @param out the output
+     * @param threads the number of worker threads, 1 to handle the blocks
+     *        in the calling thread
+     * @return the number of blocks read
+     */
+    public static int run(Scanner sc, PrintStream out, int threads) {
+
+        if (threads <= 1) {
+
+            int blocks = 0;
+            IO block;
+            while ((block = Batch.next(sc, blocks + 1)) != null) {
+
+                blocks++;
+                try {
+
+                    Main.handle(block, out);
+                }
+                catch (RuntimeException e) {
+
+                    Batch.report(blocks, e);
+                }
+                out.flush();
+            }
+            return blocks;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Output>> pending = new ArrayDeque<Future<Output>>();
+        int blocks = 0;
+        int written = 0;
+
+        try {
+
+            IO block;
+            while ((block = Batch.next(sc, blocks + 1)) != null) {
+
+                blocks++;
+                IO input = block;
+                pending.add(pool.submit(() -> Batch.handle(input)));
+
+                /** Keep the workers busy, but the output not too far behind. */
+                if (pending.size() >= threads * BLOCKS_PER_THREAD)
+                    Batch.write(pending.poll(), ++written, out);
+            }
+
+            while (!pending.isEmpty())
+                Batch.write(pending.poll(), ++written, out);
+        }
+        finally {
+
+            pool.shutdownNow();
+        }
+        return blocks;
+    }
+
+    /**
+     * Reads the next block.
+     *
+     * @param sc the scanner of the input
+     * @param number the number of the block
+     * @return the block, null at the end of the input or if the input ends
+     *         inside the block
+     */
+    private static IO next(Scanner sc, int number) {
+
+        try {
+
+            IO block = IO.read(sc);
+            if (block != null && block.getDataType() == DataType.Unknown)
+                System.err.println("block " + number + ": unknown input type");
+            return block;
+        }
+        catch (NoSuchElementException e) {
+
+            System.err.println("block " + number + ": input ends inside "
+                    + "the block");
+            return null;
+        }
+    }
+
+    /**
+     * Handles a block in a worker.
+     *
+     * @param block the block
+     * @return the output of the block
+     */
+    private static Output handle(IO block) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        RuntimeException error = null;
+
+        try {
+
+            Main.handle(block, out);
+        }
+        catch (RuntimeException e) {
+
+            error = e;
+        }
+        out.flush();
+        return new Output(bytes.toByteArray(), error);
+    }
+
+    /**
+     * Waits for the output of a block and writes it.
+     *
+     * @param future the output of the block
+     * @param number the number of the block
+     * @param out the output
+     */
+    private static void write(Future<Output> future, int number,
+            PrintStream out) {
+
+        Output output;
+        try {
+
+            output = future.get();
+        }
+        catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted at block "
+                    + number, e);
+        }
+        catch (ExecutionException e) {
+
+            /** Only errors get here, the block caught its exceptions. */
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+
+        out.write(output.bytes, 0, output.bytes.length);
+        out.flush();
+        if (output.error != null)
+            Batch.report(number, output.error);
+    }
+
+    /**
+     * Reports a failed block.
+     *
+     * @param number the number of the block
+     * @param e the failure
+     */
+    private static void report(int number, RuntimeException e) {
+
+        System.err.println("block " + number + ": " + e);
+    }
+}
@@ -1,5 +1,6 @@
 package main;
 
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -15,6 +16,12 @@ public class Main {
 
     public static void main(String []argc) {
 
+        if (argc.length > 0 && argc[0].equals(Batch.FLAG)) {
+
+            Batch.main(Arrays.copyOfRange(argc, 1, argc.length));
+            return;
+        }
+
         automata();
         //        test();
     }
@@ -25,23 +32,32 @@ public class Main {
      */
     private static void automata() {
 
-        IO ioHandler = new IO();
+        Main.handle(new IO(), System.out);
+    }
+
+    /**
+     * Handles one input.
+     *
+     * @param ioHandler the input
+     * @param out the output
+     */
+    static void handle(IO ioHandler, PrintStream out) {
 
         switch (ioHandler.getDataType()) {
 
         case RegEx:
             RegEx regEx = new RegEx((RegExEntry)ioHandler.getData());
-            regEx.taskHandler();
+            regEx.taskHandler(out);
             break;
 
         case NFA:
             NFA nfa = new NFA((NFAEntry)ioHandler.getData());
-            nfa.taskHandler();
+            nfa.taskHandler(out);
             break;
 
         case CFG:
             CFG cfg = new CFG((CFGEntry)ioHandler.getData());
-            cfg.taskHandler();
+            cfg.taskHandler(out);
             break;
 
         default:
@@ -1,3 +1,9 @@
 module automata_theory {
     requires java.logging;
-}
\ No newline at end of file
+    requires transitive java.management;
+    requires jdk.management;
+
+    exports core;
+    exports entries;
+    exports utils;
+}
@@ -25,6 +25,24 @@ public class Chars {
     /** The concatenation. */
     public static Character concatenation = '.';
 
+    /** The wildcard, a dot where an operand is expected. */
+    public static Character wildcard = '.';
+
+    /** The open bracket of a character class. */
+    public static Character open_bracket = '[';
+
+    /** The close bracket of a character class. */
+    public static Character close_bracket = ']';
+
+    /** The negation of a character class. */
+    public static Character negation = '^';
+
+    /** The range of a character class. */
+    public static Character range = '-';
+
+    /** The escape. */
+    public static Character escape = '\\';
+
     /** The none. */
     public static Character none = '-';
 
@@ -36,4 +54,11 @@ public class Chars {
 
     /** The empty. */
     public static String empty = "";
+
+    /**
+     * Instantiates a new chars, which is never done.
+     */
+    private Chars() {
+
+    }
 }
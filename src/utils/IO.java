@@ -31,7 +31,50 @@ public class IO {
         /** Initiate scanner object. */
         this.sc = new Scanner(System.in);
 
-        this.dataType = readDataType();
+        this.dataType = this.toDataType(this.sc.nextLine());
+        this.readData();
+
+        this.sc.close();
+    }
+
+    /**
+     * Instantiates a new IO interface on the next block of an input.
+     *
+     * @param sc the scanner of the input
+     * @param type the first line of the block
+     */
+    private IO(Scanner sc, String type) {
+
+        this.sc = sc;
+        this.dataType = this.toDataType(type);
+        this.readData();
+    }
+
+    /**
+     * Reads the next block of an input of many blocks, in the format of
+     * a single input. Blank lines and lines starting with # between the
+     * blocks are skipped, so files like docs/test_1.txt can be read.
+     *
+     * @param sc the scanner of the input, left open
+     * @return the block, null at the end of the input
+     * @throws java.util.NoSuchElementException if the input ends inside
+     *         a block
+     */
+    public static IO read(Scanner sc) {
+
+        while (sc.hasNextLine()) {
+
+            String line = sc.nextLine();
+            if (!line.isBlank() && !line.startsWith("#"))
+                return new IO(sc, line);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the data of the block.
+     */
+    private void readData() {
 
         /** check the output for next action. */
         switch (this.dataType) {
@@ -64,13 +107,12 @@ public class IO {
     }
 
     /**
-     * Read the first line of input and return the function.
+     * Maps the first line of input to the function.
      *
+     * @param input the first line
      * @return the functions
      */
-    private DataType readDataType() {
-
-        String input = this.sc.nextLine();
+    private DataType toDataType(String input) {
 
         /** map strings to corresponding enumerations. */
         switch (input) {
@@ -179,8 +221,6 @@ public class IO {
         inputRegEx.setInput(sc.nextLine());
         inputRegEx.setTask(taskToTasks(sc.nextLine()));
 
-        sc.close();
-
         return inputRegEx;
     }
 